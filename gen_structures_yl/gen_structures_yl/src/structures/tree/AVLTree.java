@@ -1,8 +1,44 @@
 package structures.tree;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
 public class AVLTree<T extends Comparable<T>> {
 	private Node<T> root;
 	private int count;
+	// orders the values, null for their natural order
+	private final Comparator<? super T> comparator;
+	private final TreeStats.Recorder recorder = new TreeStats.Recorder();
+
+	public AVLTree() {
+		this(null);
+	}
+
+	/**
+	 * @param comparator
+	 *            orders the values, null for their natural order
+	 */
+	public AVLTree(Comparator<? super T> comparator) {
+		this.comparator = comparator;
+	}
+
+	/**
+	 * @return the comparator ordering the values, null for their natural
+	 *         order
+	 */
+	public Comparator<? super T> comparator() {
+		return this.comparator;
+	}
+
+	private int compare(T a, T b) {
+		return this.comparator == null ? a.compareTo(b) : this.comparator
+				.compare(a, b);
+	}
 
 	/**
 	 * searches the tree for a value takes O(log(n))
@@ -12,20 +48,23 @@ public class AVLTree<T extends Comparable<T>> {
 	 * @return boolean indicating whether the target was found
 	 */
 	public boolean search(T target) {
-		return searchRecurse(target, this.root);
+		return searchRecurse(target, this.root, 0);
 	}
 
-	private boolean searchRecurse(T target, Node<T> cur) {
+	// path: the number of nodes compared with target so far
+	private boolean searchRecurse(T target, Node<T> cur, int path) {
 		if (cur == null) {
+			recorder.operation(TreeStats.Operation.SEARCH, path);
 			return false;
 		}
-		int c = target.compareTo(cur.getValue());
+		int c = compare(target, cur.getValue());
 		if (c == 0) {
+			recorder.operation(TreeStats.Operation.SEARCH, path + 1);
 			return true;
 		} else if (c < 0) {
-			return searchRecurse(target, cur.getLeft());
+			return searchRecurse(target, cur.getLeft(), path + 1);
 		} else {
-			return searchRecurse(target, cur.getRight());
+			return searchRecurse(target, cur.getRight(), path + 1);
 		}
 	}
 
@@ -36,15 +75,18 @@ public class AVLTree<T extends Comparable<T>> {
 	 */
 	public void insert(T value) {
 		if (this.root == null) {
+			recorder.operation(TreeStats.Operation.INSERT, 0);
 			this.root = new Node<T>(value);
 			count++;
+			return;
 		}
-		insertRecurse(value, root);
+		insertRecurse(value, root, 0);
 	}
 
-	private void insertRecurse(T value, Node<T> cur) {
-		int c = value.compareTo(cur.getValue());
+	private void insertRecurse(T value, Node<T> cur, int path) {
+		int c = compare(value, cur.getValue());
 		if (c == 0) {
+			recorder.operation(TreeStats.Operation.INSERT, path + 1);
 			return;
 		}
 		if (c < 0) {
@@ -52,21 +94,23 @@ public class AVLTree<T extends Comparable<T>> {
 				Node<T> newNode = new Node<T>(value);
 				newNode.setParent(cur);
 				cur.setLeft(newNode);
+				recorder.operation(TreeStats.Operation.INSERT, path + 1);
 				balance(cur);
 				count++;
 
 			} else {
-				insertRecurse(value, cur.getLeft());
+				insertRecurse(value, cur.getLeft(), path + 1);
 			}
 		} else if (c > 0) {
 			if (cur.getRight() == null) {
 				Node<T> newNode = new Node<T>(value);
 				newNode.setParent(cur);
 				cur.setRight(newNode);
+				recorder.operation(TreeStats.Operation.INSERT, path + 1);
 				balance(cur);
 				count++;
 			} else {
-				insertRecurse(value, cur.getRight());
+				insertRecurse(value, cur.getRight(), path + 1);
 			}
 		}
 	}
@@ -83,6 +127,10 @@ public class AVLTree<T extends Comparable<T>> {
 		 * the rules of AVL.
 		 */
 		if (node != null) {
+			// refresh the heights cached for the children, which may have
+			// changed below
+			node.setLeft(node.getLeft());
+			node.setRight(node.getRight());
 			int balance = node.getBalanceFactor();
 			if (balance == -2) {
 				// if the balance factor of P is -2 then the right subtree
@@ -134,6 +182,7 @@ public class AVLTree<T extends Comparable<T>> {
 	}
 
 	private void rightRotate(Node<T> root) {
+		recorder.rotation();
 		Node<T> parent = root.getParent();
 		boolean isLeftChild = false;
 
@@ -169,6 +218,7 @@ public class AVLTree<T extends Comparable<T>> {
 	}
 
 	private void leftRotate(Node<T> root) {
+		recorder.rotation();
 		Node<T> parent = root.getParent();
 		boolean isLeftChild = false;
 
@@ -211,102 +261,281 @@ public class AVLTree<T extends Comparable<T>> {
 	 */
 	public void delete(T value) {
 		if (this.root != null) {
-			deleteRecurse(value, root);
+			deleteRecurse(value, root, 0);
 		}
 		return;
 	}
 
-	private void deleteRecurse(T value, Node<T> cur) {
-		int c = value.compareTo(cur.getValue());
+	private void deleteRecurse(T value, Node<T> cur, int path) {
+		if (cur == null) {
+			recorder.operation(TreeStats.Operation.DELETE, path);
+			return;
+		}
+		int c = compare(value, cur.getValue());
 		if (c == 0) {
-			Node<T> parent = cur.getParent();
-
-			// If the node is a leaf or has only one child, remove it.
-			if (cur.getLeft() == null && cur.getRight() == null) {
-				if (this.root == cur) {
-					this.root = null;
-				} else if (cur.isLeftChild()) {
-					parent.setLeft(null);
-				} else {
-					parent.setRight(null);
-				}
-			} else if (cur.getLeft() == null) {
-				if (this.root == cur) {
-					this.root = cur.getRight();
-				} else if (cur.isLeftChild()) {
-					parent.setLeft(cur.getRight());
-				} else {
-					parent.setRight(cur.getRight());
-				}
-			} else if (cur.getRight() == null) {
-				if (this.root == cur) {
-					this.root = cur.getLeft();
-				} else if (cur.isLeftChild()) {
-					parent.setLeft(cur.getLeft());
-				} else {
-					parent.setRight(cur.getLeft());
-				}
-			} else {
-				// Otherwise, replace it with either the largest in its left sub
-				// tree (in order predecessor)
-				// or the smallest in its right sub tree (in order successor),
-				// and remove that node.
+			recorder.operation(TreeStats.Operation.DELETE, path + 1);
+			if (cur.getLeft() != null && cur.getRight() != null) {
+				// A node with two children takes the value of the largest in
+				// its left sub tree (in order predecessor), which has no right
+				// sub tree and is removed instead.
 				Node<T> temp = cur.getLeft();
 				while (temp.getRight() != null) {
 					temp = temp.getRight();
 				}
 				// swap the value
 				cur.setValue(temp.getValue());
-				// delete the old node
-				temp.getParent().setRight(null);
-
-				// The node that was found as a replacement has at most one sub
-				// tree.
-				// After deletion, retrace the path back up the tree (parent of
-				// the replacement) to the root, adjusting the balance factors
-				// as needed.
-				cur = temp.getParent();
+				cur = temp;
 			}
+			// The node now has at most one child, which takes its place.
+			Node<T> parent = cur.getParent();
+			Node<T> child = cur.getLeft() != null ? cur.getLeft() : cur
+					.getRight();
+			if (child != null) {
+				child.setParent(parent);
+			}
+			if (parent == null) {
+				this.root = child;
+			} else if (cur.isLeftChild()) {
+				parent.setLeft(child);
+			} else {
+				parent.setRight(child);
+			}
+			// After deletion, retrace the path back up the tree (parent of
+			// the removed node) to the root, adjusting the balance factors as
+			// needed.
+			cur = parent;
 			count--;
 			balance(cur);
 		} else if (c < 0) {
-			deleteRecurse(value, cur.getLeft());
+			deleteRecurse(value, cur.getLeft(), path + 1);
 		} else {
-			deleteRecurse(value, cur.getRight());
+			deleteRecurse(value, cur.getRight(), path + 1);
+		}
+	}
+
+	/**
+	 * returns a new tree with the values that are in this tree or in other
+	 * takes O(n + m). Both trees are left unchanged: they are read in order,
+	 * merged, and the result is built balanced without rotations.
+	 * 
+	 * @param other
+	 * @return the union of the two trees
+	 */
+	public AVLTree<T> union(AVLTree<T> other) {
+		return combine(SetOperation.UNION, other);
+	}
+
+	/**
+	 * returns a new tree with the values that are in both this tree and other
+	 * takes O(n + m)
+	 * 
+	 * @param other
+	 * @return the intersection of the two trees
+	 */
+	public AVLTree<T> intersection(AVLTree<T> other) {
+		return combine(SetOperation.INTERSECTION, other);
+	}
+
+	/**
+	 * returns a new tree with the values of this tree that are not in other
+	 * takes O(n + m)
+	 * 
+	 * @param other
+	 * @return the difference of the two trees
+	 */
+	public AVLTree<T> difference(AVLTree<T> other) {
+		return combine(SetOperation.DIFFERENCE, other);
+	}
+
+	@SuppressWarnings("unchecked")
+	private AVLTree<T> combine(SetOperation op, AVLTree<T> other) {
+		if (!Objects.equals(this.comparator, other.comparator)) {
+			throw new IllegalArgumentException(
+					"the trees are ordered by different comparators");
+		}
+		T[] a = this.values();
+		T[] b = other.values();
+		T[] merged = (T[]) new Comparable<?>[a.length + b.length];
+		int m = op.merge(a, a.length, b, b.length, merged, this.comparator);
+		AVLTree<T> result = new AVLTree<T>(this.comparator);
+		result.root = build(merged, 0, m - 1);
+		result.count = m;
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	private T[] values() {
+		List<T> values = new ArrayList<T>(count);
+		Traversal.IN_ORDER.forEach(this.root, values::add);
+		return values.toArray((T[]) new Comparable<?>[values.size()]);
+	}
+
+	/**
+	 * writes the values to file in sorted order, see load takes O(n)
+	 * 
+	 * @param codec
+	 *            writes a value as bytes
+	 */
+	public void save(Path file, KeyCodec<? super T> codec) throws IOException {
+		TreeFile.write(file, TreeFile.AVL,
+				TreeFile.values(Traversal.IN_ORDER.iterator(this.root)), codec);
+	}
+
+	/**
+	 * reads a tree written by save takes O(n): the file is memory-mapped and
+	 * the sorted values built straight into a balanced tree, with no
+	 * rotations
+	 * 
+	 * @param codec
+	 *            reads a value from bytes
+	 * @return the tree
+	 */
+	public static <T extends Comparable<T>> AVLTree<T> load(Path file,
+			KeyCodec<T> codec) throws IOException {
+		return load(file, codec, null);
+	}
+
+	/**
+	 * reads a tree written by save from a tree with the given comparator
+	 * 
+	 * @param comparator
+	 *            orders the values, null for their natural order
+	 */
+	public static <T extends Comparable<T>> AVLTree<T> load(Path file,
+			KeyCodec<T> codec, Comparator<? super T> comparator)
+			throws IOException {
+		T[] values = TreeFile.read(file, TreeFile.AVL, codec, comparator, true);
+		AVLTree<T> tree = new AVLTree<T>(comparator);
+		tree.root = tree.build(values, 0, values.length - 1);
+		tree.count = values.length;
+		return tree;
+	}
+
+	// builds a tree of minimum height from the sorted values[lo..hi]; the
+	// heights of the two sides of every node differ by at most one
+	private Node<T> build(T[] values, int lo, int hi) {
+		if (lo > hi) {
+			return null;
 		}
+		int mid = (lo + hi) >>> 1;
+		Node<T> node = new Node<T>(values[mid]);
+		Node<T> left = build(values, lo, mid - 1);
+		Node<T> right = build(values, mid + 1, hi);
+		node.setLeft(left);
+		node.setRight(right);
+		if (left != null) {
+			left.setParent(node);
+		}
+		if (right != null) {
+			right.setParent(node);
+		}
+		return node;
 	}
 
+	/**
+	 * O(n)
+	 * 
+	 * @return the values in sorted order: [1,2,3]
+	 */
 	public String toString() {
 		if (this.root == null) {
 			return "[]";
 		}
-		// String recStr = this.toStringPreOrder(this.root);
-		// String recStr = this.toStringPostOrder(this.root);
-		String recStr = this.toStringInOrder(this.root);
+		String recStr = Traversal.IN_ORDER.format(this.root);
 		return "[" + recStr.substring(0, recStr.length() - 1) + "]";
 	}
 
 	public String toStringInOrder(Node<T> current) {
-		if (current == null)
-			return "";
-		return this.toStringInOrder(current.left) + current.value.toString()
-				+ "," + this.toStringInOrder(current.right);
-
+		return Traversal.IN_ORDER.format(current);
 	}
 
 	public String toStringPostOrder(Node<T> current) {
-		if (current == null)
-			return "";
-		return toStringPostOrder(current.left)
-				+ toStringPostOrder(current.right) + current.value.toString()
-				+ ",";
+		return Traversal.POST_ORDER.format(current);
 	}
 
 	public String toStringPreOrder(Node<T> current) {
-		if (current == null)
-			return "";
-		return current.value.toString() + "," + toStringPreOrder(current.left)
-				+ toStringPreOrder(current.right);
+		return Traversal.PRE_ORDER.format(current);
+	}
+
+	/**
+	 * Passes the values to action in the given order. O(n)
+	 */
+	public void traverse(Traversal order, Consumer<? super T> action) {
+		order.forEach(this.root, action);
+	}
+
+	/**
+	 * Streams the values to out in the given order, each followed by a
+	 * comma. O(n)
+	 */
+	public void appendTo(Traversal order, Appendable out) throws IOException {
+		order.appendTo(this.root, out);
+	}
+
+	/**
+	 * O(1)
+	 * 
+	 * @return the number of levels, 0 if the tree is empty
+	 */
+	public int height() {
+		return this.root == null ? 0 : this.root.getHeight() + 1;
+	}
+
+	/**
+	 * Measures the shape of the tree and reports it with the costs of the
+	 * operations since the last reset. O(n)
+	 */
+	public TreeStats stats() {
+		return new TreeStats(TreeStats.histogram(this.root), recorder);
+	}
+
+	/**
+	 * Zeroes the operation costs reported by stats.
+	 */
+	public void resetStats() {
+		recorder.reset();
+	}
+
+	/**
+	 * Walks the whole tree and checks the order of the values, the parent
+	 * links, the cached heights and the AVL balance. Takes O(n), for test
+	 * purposes.
+	 * 
+	 * @throws IllegalStateException
+	 *             describing the first violation found
+	 */
+	public void checkInvariants() {
+		if (this.root != null && this.root.getParent() != null)
+			throw new IllegalStateException("root has a parent");
+		int[] nodes = new int[1];
+		checkSubtree(this.root, null, null, nodes);
+		if (nodes[0] != count)
+			throw new IllegalStateException("count is " + count + " but "
+					+ nodes[0] + " values are in the tree");
+	}
+
+	// @return: the height of the subtree, -1 for an empty one
+	private int checkSubtree(Node<T> node, T lo, T hi, int[] nodes) {
+		if (node == null)
+			return -1;
+		nodes[0]++;
+		T value = node.getValue();
+		if ((lo != null && compare(value, lo) <= 0)
+				|| (hi != null && compare(value, hi) >= 0))
+			throw new IllegalStateException("value out of order: " + value);
+		if ((node.getLeft() != null && node.getLeft().getParent() != node)
+				|| (node.getRight() != null && node.getRight().getParent() != node))
+			throw new IllegalStateException("broken parent link below "
+					+ value);
+		int left = checkSubtree(node.getLeft(), lo, value, nodes) + 1;
+		int right = checkSubtree(node.getRight(), value, hi, nodes) + 1;
+		if (node.getLeftHeight() != left || node.getRightHeight() != right)
+			throw new IllegalStateException("stale heights at " + value
+					+ ": " + node.getLeftHeight() + "/" + node.getRightHeight()
+					+ " instead of " + left + "/" + right);
+		if (Math.abs(left - right) > 1)
+			throw new IllegalStateException("unbalanced at " + value);
+		return Math.max(left, right);
 	}
 
 	/**
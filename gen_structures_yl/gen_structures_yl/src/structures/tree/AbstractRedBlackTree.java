@@ -0,0 +1,442 @@
+package structures.tree;
+
+import java.util.Comparator;
+
+/**
+ * The red-black balancing shared by the trees that keep extra data in their
+ * nodes. Nodes are {@link RedBlackNode}s (or subclasses carrying more fields)
+ * and every node's numLeft and numRight are kept exact, which gives rank
+ * queries in O(log(n)).
+ *
+ * Subclasses that store more per-node data override {@link #update}, which is
+ * called bottom-up on every node whose subtree changes.
+ *
+ * insertNode keeps keys unique: it hands back the node already holding a key
+ * instead of adding a second one. {@link RedBlackTree}, which holds duplicate
+ * keys, links its nodes itself and calls insertFixup.
+ *
+ * @param <K>
+ */
+abstract class AbstractRedBlackTree<K extends Comparable<K>> {
+	final RedBlackNode<K> nil = new RedBlackNode<K>();
+	RedBlackNode<K> root = nil;
+	// orders the keys, null for their natural order
+	final Comparator<? super K> comparator;
+	// the costs of the operations, see stats()
+	final TreeStats.Recorder recorder = new TreeStats.Recorder();
+
+	AbstractRedBlackTree(Comparator<? super K> comparator) {
+		nil.left = nil;
+		nil.right = nil;
+		nil.parent = nil;
+		this.comparator = comparator;
+	}
+
+	final int compare(K a, K b) {
+		return comparator == null ? a.compareTo(b) : comparator.compare(a, b);
+	}
+
+	final boolean isNil(RedBlackNode<K> node) {
+		return node == nil;
+	}
+
+	// number of nodes in the subtree rooted at node
+	final int size(RedBlackNode<K> node) {
+		return isNil(node) ? 0 : node.numLeft + node.numRight + 1;
+	}
+
+	/**
+	 * Recomputes the data node keeps about its subtree from its children.
+	 * Overrides must call super.
+	 */
+	void update(RedBlackNode<K> node) {
+		node.numLeft = size(node.left);
+		node.numRight = size(node.right);
+	}
+
+	// updates every node from node up to the root
+	final void updateUpward(RedBlackNode<K> node) {
+		for (; !isNil(node); node = node.parent) {
+			update(node);
+		}
+	}
+
+	final void leftRotate(RedBlackNode<K> x) {
+		recorder.rotation();
+		RedBlackNode<K> y = x.right;
+		x.right = y.left;
+		if (!isNil(y.left))
+			y.left.parent = x;
+		y.parent = x.parent;
+		if (isNil(x.parent))
+			root = y;
+		else if (x.parent.left == x)
+			x.parent.left = y;
+		else
+			x.parent.right = y;
+		y.left = x;
+		x.parent = y;
+		// x is now below y
+		update(x);
+		update(y);
+	}
+
+	final void rightRotate(RedBlackNode<K> y) {
+		recorder.rotation();
+		RedBlackNode<K> x = y.left;
+		y.left = x.right;
+		if (!isNil(x.right))
+			x.right.parent = y;
+		x.parent = y.parent;
+		if (isNil(y.parent))
+			root = x;
+		else if (y.parent.right == y)
+			y.parent.right = x;
+		else
+			y.parent.left = x;
+		x.right = y;
+		y.parent = x;
+		update(y);
+		update(x);
+	}
+
+	/**
+	 * @param op
+	 *            the kind of operation the search is counted as
+	 * @return the node holding key, nil if there is none
+	 */
+	final RedBlackNode<K> find(K key, TreeStats.Operation op) {
+		RedBlackNode<K> current = root;
+		int path = 0;
+		while (!isNil(current)) {
+			int c = compare(key, current.key);
+			path++;
+			if (c == 0)
+				break;
+			current = c < 0 ? current.left : current.right;
+		}
+		recorder.operation(op, path);
+		return current;
+	}
+
+	/**
+	 * Links z into the tree and restores the red-black properties, unless
+	 * z.key is in the tree already. Looking for the key and linking z take a
+	 * single descent.
+	 *
+	 * @return the node already holding z.key, or z if it was linked
+	 */
+	final RedBlackNode<K> insertNode(RedBlackNode<K> z) {
+		RedBlackNode<K> y = nil;
+		RedBlackNode<K> x = root;
+		int c = 0;
+		int path = 0;
+		while (!isNil(x)) {
+			y = x;
+			c = compare(z.key, x.key);
+			path++;
+			if (c == 0)
+				break;
+			x = c < 0 ? x.left : x.right;
+		}
+		recorder.operation(TreeStats.Operation.INSERT, path);
+		if (c == 0 && !isNil(x))
+			return x;
+		z.parent = y;
+		if (isNil(y))
+			root = z;
+		else if (c < 0)
+			y.left = z;
+		else
+			y.right = z;
+		z.left = nil;
+		z.right = nil;
+		z.color = RedBlackNode.RED;
+		update(z);
+		updateUpward(y);
+		insertFixup(z);
+		return z;
+	}
+
+	// restores the red-black properties after z was linked in red
+	final void insertFixup(RedBlackNode<K> z) {
+		while (z.parent.color == RedBlackNode.RED) {
+			if (z.parent == z.parent.parent.left) {
+				RedBlackNode<K> y = z.parent.parent.right;
+				// Case 1: z's uncle is red, recolor
+				if (y.color == RedBlackNode.RED) {
+					z.parent.color = RedBlackNode.BLACK;
+					y.color = RedBlackNode.BLACK;
+					z.parent.parent.color = RedBlackNode.RED;
+					z = z.parent.parent;
+				} else {
+					// Case 2: z is a right child
+					if (z == z.parent.right) {
+						z = z.parent;
+						leftRotate(z);
+					}
+					// Case 3: z is a left child
+					z.parent.color = RedBlackNode.BLACK;
+					z.parent.parent.color = RedBlackNode.RED;
+					rightRotate(z.parent.parent);
+				}
+			} else {
+				RedBlackNode<K> y = z.parent.parent.left;
+				if (y.color == RedBlackNode.RED) {
+					z.parent.color = RedBlackNode.BLACK;
+					y.color = RedBlackNode.BLACK;
+					z.parent.parent.color = RedBlackNode.RED;
+					z = z.parent.parent;
+				} else {
+					if (z == z.parent.left) {
+						z = z.parent;
+						rightRotate(z);
+					}
+					z.parent.color = RedBlackNode.BLACK;
+					z.parent.parent.color = RedBlackNode.RED;
+					leftRotate(z.parent.parent);
+				}
+			}
+		}
+		root.color = RedBlackNode.BLACK;
+	}
+
+	/**
+	 * Unlinks z from the tree and restores the red-black properties. No key
+	 * is moved between nodes, so every other node keeps its key.
+	 */
+	final void removeNode(RedBlackNode<K> z) {
+		RedBlackNode<K> y = z;
+		int yColor = y.color;
+		RedBlackNode<K> x;
+		// lowest node whose subtree loses a node
+		RedBlackNode<K> changed;
+		if (isNil(z.left)) {
+			x = z.right;
+			changed = z.parent;
+			transplant(z, z.right);
+		} else if (isNil(z.right)) {
+			x = z.left;
+			changed = z.parent;
+			transplant(z, z.left);
+		} else {
+			// z's successor takes its place
+			y = minimum(z.right);
+			yColor = y.color;
+			x = y.right;
+			if (y.parent == z) {
+				x.parent = y;
+				changed = y;
+			} else {
+				changed = y.parent;
+				transplant(y, y.right);
+				y.right = z.right;
+				y.right.parent = y;
+			}
+			transplant(z, y);
+			y.left = z.left;
+			y.left.parent = y;
+			y.color = z.color;
+		}
+		updateUpward(changed);
+		if (yColor == RedBlackNode.BLACK)
+			removeFixup(x);
+		z.parent = null;
+		z.left = null;
+		z.right = null;
+	}
+
+	// replaces the subtree rooted at u with the one rooted at v
+	private void transplant(RedBlackNode<K> u, RedBlackNode<K> v) {
+		if (isNil(u.parent))
+			root = v;
+		else if (u == u.parent.left)
+			u.parent.left = v;
+		else
+			u.parent.right = v;
+		v.parent = u.parent;
+	}
+
+	private void removeFixup(RedBlackNode<K> x) {
+		RedBlackNode<K> w;
+		while (x != root && x.color == RedBlackNode.BLACK) {
+			if (x == x.parent.left) {
+				w = x.parent.right;
+				// Case 1, w's color is red
+				if (w.color == RedBlackNode.RED) {
+					w.color = RedBlackNode.BLACK;
+					x.parent.color = RedBlackNode.RED;
+					leftRotate(x.parent);
+					w = x.parent.right;
+				}
+				// Case 2, both of w's children are black
+				if (w.left.color == RedBlackNode.BLACK
+						&& w.right.color == RedBlackNode.BLACK) {
+					w.color = RedBlackNode.RED;
+					x = x.parent;
+				} else {
+					// Case 3, w's right child is black
+					if (w.right.color == RedBlackNode.BLACK) {
+						w.left.color = RedBlackNode.BLACK;
+						w.color = RedBlackNode.RED;
+						rightRotate(w);
+						w = x.parent.right;
+					}
+					// Case 4, w's right child is red
+					w.color = x.parent.color;
+					x.parent.color = RedBlackNode.BLACK;
+					w.right.color = RedBlackNode.BLACK;
+					leftRotate(x.parent);
+					x = root;
+				}
+			} else {
+				w = x.parent.left;
+				if (w.color == RedBlackNode.RED) {
+					w.color = RedBlackNode.BLACK;
+					x.parent.color = RedBlackNode.RED;
+					rightRotate(x.parent);
+					w = x.parent.left;
+				}
+				if (w.right.color == RedBlackNode.BLACK
+						&& w.left.color == RedBlackNode.BLACK) {
+					w.color = RedBlackNode.RED;
+					x = x.parent;
+				} else {
+					if (w.left.color == RedBlackNode.BLACK) {
+						w.right.color = RedBlackNode.BLACK;
+						w.color = RedBlackNode.RED;
+						leftRotate(w);
+						w = x.parent.left;
+					}
+					w.color = x.parent.color;
+					x.parent.color = RedBlackNode.BLACK;
+					w.left.color = RedBlackNode.BLACK;
+					rightRotate(x.parent);
+					x = root;
+				}
+			}
+		}
+		x.color = RedBlackNode.BLACK;
+	}
+
+	final RedBlackNode<K> minimum(RedBlackNode<K> node) {
+		while (!isNil(node.left))
+			node = node.left;
+		return node;
+	}
+
+	final RedBlackNode<K> maximum(RedBlackNode<K> node) {
+		while (!isNil(node.right))
+			node = node.right;
+		return node;
+	}
+
+	final RedBlackNode<K> successor(RedBlackNode<K> x) {
+		if (!isNil(x.right))
+			return minimum(x.right);
+		RedBlackNode<K> y = x.parent;
+		while (!isNil(y) && x == y.right) {
+			x = y;
+			y = y.parent;
+		}
+		return y;
+	}
+
+	final RedBlackNode<K> predecessor(RedBlackNode<K> x) {
+		if (!isNil(x.left))
+			return maximum(x.left);
+		RedBlackNode<K> y = x.parent;
+		while (!isNil(y) && x == y.left) {
+			x = y;
+			y = y.parent;
+		}
+		return y;
+	}
+
+	/**
+	 * @return the number of keys smaller than key, or not greater than key
+	 *         if inclusive
+	 */
+	final int rank(K key, boolean inclusive) {
+		int count = 0;
+		RedBlackNode<K> current = root;
+		while (!isNil(current)) {
+			int c = compare(key, current.key);
+			if (c < 0 || (c == 0 && !inclusive)) {
+				current = current.left;
+			} else {
+				count += current.numLeft + 1;
+				current = current.right;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return the node with the index-th smallest key, counting from 0
+	 */
+	final RedBlackNode<K> select(int index) {
+		RedBlackNode<K> current = root;
+		while (!isNil(current)) {
+			if (index < current.numLeft) {
+				current = current.left;
+			} else if (index > current.numLeft) {
+				index -= current.numLeft + 1;
+				current = current.right;
+			} else {
+				return current;
+			}
+		}
+		return nil;
+	}
+
+	/**
+	 * @return the node with the largest key that is smaller than key (or equal
+	 *         to it if inclusive), nil if there is none
+	 */
+	final RedBlackNode<K> lowerNode(K key, boolean inclusive) {
+		RedBlackNode<K> best = nil;
+		RedBlackNode<K> current = root;
+		while (!isNil(current)) {
+			int c = compare(key, current.key);
+			if (c > 0 || (c == 0 && inclusive)) {
+				best = current;
+				if (c == 0)
+					break;
+				current = current.right;
+			} else {
+				current = current.left;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @return the node with the smallest key that is greater than key (or
+	 *         equal to it if inclusive), nil if there is none
+	 */
+	final RedBlackNode<K> higherNode(K key, boolean inclusive) {
+		RedBlackNode<K> best = nil;
+		RedBlackNode<K> current = root;
+		while (!isNil(current)) {
+			int c = compare(key, current.key);
+			if (c < 0 || (c == 0 && inclusive)) {
+				best = current;
+				if (c == 0)
+					break;
+				current = current.left;
+			} else {
+				current = current.right;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @return the shape of the tree, measured in O(n), and the costs of the
+	 *         operations since the recorder was last reset
+	 */
+	TreeStats stats() {
+		return new TreeStats(TreeStats.histogram(root, nil), recorder);
+	}
+}
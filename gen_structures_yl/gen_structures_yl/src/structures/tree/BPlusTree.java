@@ -0,0 +1,459 @@
+package structures.tree;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A B+ tree map. Every node holds up to order - 1 keys in a sorted array, so
+ * a lookup touches about log_order(n) nodes instead of log_2(n) and does a
+ * binary search over contiguous keys inside each one. Values only live in the
+ * leaves, which are linked left to right for range scans.
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class BPlusTree<K extends Comparable<K>, V> {
+	public static final int DEFAULT_ORDER = 64;
+
+	// maximum and minimum number of keys of a non-root node
+	private final int maxKeys;
+	private final int minKeys;
+	private BNode root;
+	private int count;
+	// orders the keys, null for their natural order
+	private final Comparator<? super K> comparator;
+
+	public BPlusTree() {
+		this(DEFAULT_ORDER, null);
+	}
+
+	/**
+	 * @param order
+	 *            the maximum number of children of an inner node, at least 3
+	 */
+	public BPlusTree(int order) {
+		this(order, null);
+	}
+
+	/**
+	 * @param order
+	 *            the maximum number of children of an inner node, at least 3
+	 * @param comparator
+	 *            orders the keys, null for their natural order
+	 */
+	public BPlusTree(int order, Comparator<? super K> comparator) {
+		if (order < 3) {
+			throw new IllegalArgumentException("order should be at least 3, but "
+					+ order);
+		}
+		maxKeys = order - 1;
+		minKeys = maxKeys / 2;
+		root = new Leaf(maxKeys);
+		this.comparator = comparator;
+	}
+
+	/**
+	 * @return the comparator ordering the keys, null for their natural order
+	 */
+	public Comparator<? super K> comparator() {
+		return comparator;
+	}
+
+	private int compare(K a, K b) {
+		return comparator == null ? a.compareTo(b) : comparator.compare(a, b);
+	}
+
+	private static abstract class BNode {
+		// one spare slot so a node can overflow before it is split
+		final Object[] keys;
+		int n;
+
+		BNode(int maxKeys) {
+			keys = new Object[maxKeys + 1];
+		}
+	}
+
+	private static final class Leaf extends BNode {
+		final Object[] values;
+		Leaf next;
+
+		Leaf(int maxKeys) {
+			super(maxKeys);
+			values = new Object[maxKeys + 1];
+		}
+	}
+
+	private static final class Inner extends BNode {
+		// children[i] holds the keys k with keys[i - 1] <= k < keys[i]
+		final BNode[] children;
+
+		Inner(int maxKeys) {
+			super(maxKeys);
+			children = new BNode[maxKeys + 2];
+		}
+	}
+
+	// filled in by insert when a node splits
+	private Object splitKey;
+	private BNode splitNode;
+
+	public int size() {
+		return count;
+	}
+
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	/**
+	 * searches the tree for a key takes O(log(n))
+	 *
+	 * @param key
+	 *            key to find
+	 * @return the value stored for key, null if key is not present
+	 */
+	@SuppressWarnings("unchecked")
+	public V search(K key) {
+		Leaf leaf = findLeaf(key);
+		int i = indexOf(leaf, key);
+		return i >= 0 ? (V) leaf.values[i] : null;
+	}
+
+	public boolean containsKey(K key) {
+		return indexOf(findLeaf(key), key) >= 0;
+	}
+
+	/**
+	 * inserts a key into the tree takes O(log(n)). If the key is already
+	 * present its value is replaced.
+	 *
+	 * @param key
+	 * @param value
+	 */
+	public void insert(K key, V value) {
+		if (insert(root, key, value)) {
+			Inner newRoot = new Inner(maxKeys);
+			newRoot.keys[0] = splitKey;
+			newRoot.children[0] = root;
+			newRoot.children[1] = splitNode;
+			newRoot.n = 1;
+			root = newRoot;
+			splitKey = null;
+			splitNode = null;
+		}
+	}
+
+	// returns true if node was split, the new right sibling and its separator
+	// are left in splitNode and splitKey
+	private boolean insert(BNode node, K key, V value) {
+		if (node instanceof Leaf) {
+			Leaf leaf = (Leaf) node;
+			int i = indexOf(leaf, key);
+			if (i >= 0) {
+				leaf.values[i] = value;
+				return false;
+			}
+			i = -i - 1;
+			System.arraycopy(leaf.keys, i, leaf.keys, i + 1, leaf.n - i);
+			System.arraycopy(leaf.values, i, leaf.values, i + 1, leaf.n - i);
+			leaf.keys[i] = key;
+			leaf.values[i] = value;
+			leaf.n++;
+			count++;
+			if (leaf.n <= maxKeys)
+				return false;
+			splitLeaf(leaf);
+			return true;
+		}
+		Inner inner = (Inner) node;
+		int i = childIndex(inner, key);
+		if (!insert(inner.children[i], key, value))
+			return false;
+		// place the split child's right half after it
+		System.arraycopy(inner.keys, i, inner.keys, i + 1, inner.n - i);
+		System.arraycopy(inner.children, i + 1, inner.children, i + 2,
+				inner.n - i);
+		inner.keys[i] = splitKey;
+		inner.children[i + 1] = splitNode;
+		inner.n++;
+		if (inner.n <= maxKeys)
+			return false;
+		splitInner(inner);
+		return true;
+	}
+
+	private void splitLeaf(Leaf leaf) {
+		Leaf right = new Leaf(maxKeys);
+		int mid = leaf.n / 2;
+		right.n = leaf.n - mid;
+		System.arraycopy(leaf.keys, mid, right.keys, 0, right.n);
+		System.arraycopy(leaf.values, mid, right.values, 0, right.n);
+		clear(leaf.keys, mid, leaf.n);
+		clear(leaf.values, mid, leaf.n);
+		leaf.n = mid;
+		right.next = leaf.next;
+		leaf.next = right;
+		splitKey = right.keys[0];
+		splitNode = right;
+	}
+
+	private void splitInner(Inner inner) {
+		Inner right = new Inner(maxKeys);
+		int mid = inner.n / 2;
+		right.n = inner.n - mid - 1;
+		System.arraycopy(inner.keys, mid + 1, right.keys, 0, right.n);
+		System.arraycopy(inner.children, mid + 1, right.children, 0,
+				right.n + 1);
+		splitKey = inner.keys[mid];
+		clear(inner.keys, mid, inner.n);
+		clear(inner.children, mid + 1, inner.n + 1);
+		inner.n = mid;
+		splitNode = right;
+	}
+
+	/**
+	 * deletes a key from the tree takes O(log(n))
+	 *
+	 * @param key
+	 *            to delete
+	 * @return true if the key was present
+	 */
+	public boolean delete(K key) {
+		boolean removed = delete(root, key);
+		if (root instanceof Inner && root.n == 0) {
+			root = ((Inner) root).children[0];
+		}
+		return removed;
+	}
+
+	private boolean delete(BNode node, K key) {
+		if (node instanceof Leaf) {
+			Leaf leaf = (Leaf) node;
+			int i = indexOf(leaf, key);
+			if (i < 0)
+				return false;
+			System.arraycopy(leaf.keys, i + 1, leaf.keys, i, leaf.n - i - 1);
+			System.arraycopy(leaf.values, i + 1, leaf.values, i, leaf.n - i
+					- 1);
+			leaf.n--;
+			leaf.keys[leaf.n] = null;
+			leaf.values[leaf.n] = null;
+			count--;
+			return true;
+		}
+		Inner inner = (Inner) node;
+		int i = childIndex(inner, key);
+		if (!delete(inner.children[i], key))
+			return false;
+		if (inner.children[i].n < minKeys)
+			rebalance(inner, i);
+		return true;
+	}
+
+	// children[i] of parent has underflowed: borrow from a sibling or merge
+	private void rebalance(Inner parent, int i) {
+		BNode child = parent.children[i];
+		BNode left = i > 0 ? parent.children[i - 1] : null;
+		BNode right = i < parent.n ? parent.children[i + 1] : null;
+		if (left != null && left.n > minKeys) {
+			borrowFromLeft(parent, i, left, child);
+		} else if (right != null && right.n > minKeys) {
+			borrowFromRight(parent, i, child, right);
+		} else if (left != null) {
+			merge(parent, i - 1, left, child);
+		} else {
+			merge(parent, i, child, right);
+		}
+	}
+
+	private void borrowFromLeft(Inner parent, int i, BNode left, BNode child) {
+		System.arraycopy(child.keys, 0, child.keys, 1, child.n);
+		if (child instanceof Leaf) {
+			Leaf l = (Leaf) left;
+			Leaf c = (Leaf) child;
+			System.arraycopy(c.values, 0, c.values, 1, c.n);
+			c.keys[0] = l.keys[l.n - 1];
+			c.values[0] = l.values[l.n - 1];
+			l.values[l.n - 1] = null;
+			parent.keys[i - 1] = c.keys[0];
+		} else {
+			Inner l = (Inner) left;
+			Inner c = (Inner) child;
+			System.arraycopy(c.children, 0, c.children, 1, c.n + 1);
+			c.keys[0] = parent.keys[i - 1];
+			c.children[0] = l.children[l.n];
+			l.children[l.n] = null;
+			parent.keys[i - 1] = l.keys[l.n - 1];
+		}
+		left.keys[left.n - 1] = null;
+		left.n--;
+		child.n++;
+	}
+
+	private void borrowFromRight(Inner parent, int i, BNode child, BNode right) {
+		if (child instanceof Leaf) {
+			Leaf r = (Leaf) right;
+			Leaf c = (Leaf) child;
+			c.keys[c.n] = r.keys[0];
+			c.values[c.n] = r.values[0];
+			System.arraycopy(r.values, 1, r.values, 0, r.n - 1);
+			r.values[r.n - 1] = null;
+			System.arraycopy(r.keys, 1, r.keys, 0, r.n - 1);
+			parent.keys[i] = r.keys[0];
+		} else {
+			Inner r = (Inner) right;
+			Inner c = (Inner) child;
+			c.keys[c.n] = parent.keys[i];
+			c.children[c.n + 1] = r.children[0];
+			parent.keys[i] = r.keys[0];
+			System.arraycopy(r.keys, 1, r.keys, 0, r.n - 1);
+			System.arraycopy(r.children, 1, r.children, 0, r.n);
+			r.children[r.n] = null;
+		}
+		right.keys[right.n - 1] = null;
+		right.n--;
+		child.n++;
+	}
+
+	// moves everything of right into left and drops parent.keys[i]
+	private void merge(Inner parent, int i, BNode left, BNode right) {
+		if (left instanceof Leaf) {
+			Leaf l = (Leaf) left;
+			Leaf r = (Leaf) right;
+			System.arraycopy(r.keys, 0, l.keys, l.n, r.n);
+			System.arraycopy(r.values, 0, l.values, l.n, r.n);
+			l.n += r.n;
+			l.next = r.next;
+		} else {
+			Inner l = (Inner) left;
+			Inner r = (Inner) right;
+			l.keys[l.n] = parent.keys[i];
+			System.arraycopy(r.keys, 0, l.keys, l.n + 1, r.n);
+			System.arraycopy(r.children, 0, l.children, l.n + 1, r.n + 1);
+			l.n += r.n + 1;
+		}
+		System.arraycopy(parent.keys, i + 1, parent.keys, i, parent.n - i - 1);
+		System.arraycopy(parent.children, i + 2, parent.children, i + 1,
+				parent.n - i - 1);
+		parent.n--;
+		parent.keys[parent.n] = null;
+		parent.children[parent.n + 1] = null;
+	}
+
+	/**
+	 * Returns sorted list of keys greater than key. Size of list will not
+	 * exceed maxReturned
+	 *
+	 * @param key
+	 *            Key to search for
+	 * @param maxReturned
+	 *            Maximum number of results to return
+	 * @return List of keys greater than key. List may not exceed maxReturned
+	 */
+	@SuppressWarnings("unchecked")
+	public List<K> getGreaterThan(K key, int maxReturned) {
+		List<K> list = new ArrayList<K>();
+		Leaf leaf = findLeaf(key);
+		int i = indexOf(leaf, key);
+		i = i >= 0 ? i + 1 : -i - 1;
+		while (leaf != null && list.size() < maxReturned) {
+			for (; i < leaf.n && list.size() < maxReturned; i++) {
+				list.add((K) leaf.keys[i]);
+			}
+			leaf = leaf.next;
+			i = 0;
+		}
+		return list;
+	}
+
+	/**
+	 * @param lo
+	 *            smallest key to return, inclusive
+	 * @param hi
+	 *            largest key to return, inclusive
+	 * @return the values of the keys in [lo, hi] in key order
+	 */
+	@SuppressWarnings("unchecked")
+	public List<V> getRange(K lo, K hi) {
+		List<V> list = new ArrayList<V>();
+		Leaf leaf = findLeaf(lo);
+		int i = indexOf(leaf, lo);
+		i = i >= 0 ? i : -i - 1;
+		while (leaf != null) {
+			for (; i < leaf.n; i++) {
+				if (compare((K) leaf.keys[i], hi) > 0)
+					return list;
+				list.add((V) leaf.values[i]);
+			}
+			leaf = leaf.next;
+			i = 0;
+		}
+		return list;
+	}
+
+	/**
+	 * @return the number of levels, 1 for a tree that is a single leaf
+	 */
+	public int height() {
+		int height = 1;
+		for (BNode node = root; node instanceof Inner; node = ((Inner) node).children[0]) {
+			height++;
+		}
+		return height;
+	}
+
+	private Leaf findLeaf(K key) {
+		BNode node = root;
+		while (node instanceof Inner) {
+			Inner inner = (Inner) node;
+			node = inner.children[childIndex(inner, key)];
+		}
+		return (Leaf) node;
+	}
+
+	private int childIndex(Inner inner, K key) {
+		int i = indexOf(inner, key);
+		return i >= 0 ? i + 1 : -i - 1;
+	}
+
+	// binary search, returns -(insertion point) - 1 if key is absent
+	@SuppressWarnings("unchecked")
+	private int indexOf(BNode node, K key) {
+		int lo = 0;
+		int hi = node.n - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int c = compare((K) node.keys[mid], key);
+			if (c < 0)
+				lo = mid + 1;
+			else if (c > 0)
+				hi = mid - 1;
+			else
+				return mid;
+		}
+		return -(lo + 1);
+	}
+
+	private static void clear(Object[] array, int from, int to) {
+		for (int i = from; i < to; i++) {
+			array[i] = null;
+		}
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		BNode node = root;
+		while (node instanceof Inner) {
+			node = ((Inner) node).children[0];
+		}
+		for (Leaf leaf = (Leaf) node; leaf != null; leaf = leaf.next) {
+			for (int i = 0; i < leaf.n; i++) {
+				sb.append(leaf.keys[i]).append(',');
+			}
+		}
+		if (sb.length() > 1)
+			sb.setLength(sb.length() - 1);
+		return sb.append(']').toString();
+	}
+}
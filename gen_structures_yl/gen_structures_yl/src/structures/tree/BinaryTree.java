@@ -1,6 +1,8 @@
 package structures.tree;
 
-import structures.linear.Queue;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.function.Consumer;
 
 /**
  * A binary tree implementation
@@ -11,11 +13,50 @@ import structures.linear.Queue;
  */
 public class BinaryTree<E extends Comparable<? super E>> {
 	protected Node<E> root;
-	protected Queue<Node<E>> queue;
+	// the number of nodes under root, kept by addNode and removeNode
+	protected int size;
+	// whether addNode and removeNode keep the tree AVL-balanced
+	protected final boolean balanced;
+	// orders the values, null for their natural order
+	protected final Comparator<? super E> comparator;
+	private final TreeStats.Recorder recorder = new TreeStats.Recorder();
 
 	public BinaryTree() {
+		this(false, null);
+	}
+
+	/**
+	 * @param balanced
+	 *            true to keep the tree AVL-balanced, so that it stays
+	 *            O(log n) high, false for a plain binary search tree
+	 */
+	public BinaryTree(boolean balanced) {
+		this(balanced, null);
+	}
+
+	/**
+	 * @param balanced
+	 *            true to keep the tree AVL-balanced
+	 * @param comparator
+	 *            orders the values, null for their natural order
+	 */
+	public BinaryTree(boolean balanced, Comparator<? super E> comparator) {
 		root = null;
-		queue = new Queue<>();
+		this.balanced = balanced;
+		this.comparator = comparator;
+	}
+
+	/**
+	 * @return the comparator ordering the values, null for their natural
+	 *         order
+	 */
+	public Comparator<? super E> comparator() {
+		return this.comparator;
+	}
+
+	private int compare(E a, E b) {
+		return this.comparator == null ? a.compareTo(b) : this.comparator
+				.compare(a, b);
 	}
 
 	public Node<E> root() {
@@ -30,21 +71,12 @@ public class BinaryTree<E extends Comparable<? super E>> {
 	}
 
 	/**
-	 * worst case O(n)
+	 * O(1)
 	 * 
 	 * @return how many nodes are in the tree
 	 */
 	public int size() {
-		return this.size(this.root);
-	}
-
-	private int size(Node<E> current) {
-		if (current == null) {
-			return 0;
-		} else {
-			return this.size(current.getLeft()) + this.size(current.getRight())
-					+ 1;
-		}
+		return this.size;
 	}
 
 	public boolean isRoot(Node<E> v) {
@@ -98,160 +130,213 @@ public class BinaryTree<E extends Comparable<? super E>> {
 		return (hasLeft(v) && hasRight(v));
 	}
 
+	/**
+	 * Adds value as a new leaf, then rebalances on the way back up if the
+	 * tree is balanced. O(height)
+	 */
 	public void addNode(E value) {
-		this.root = insert(this.root, value);
-	}
-
-	private Node<E> insert(Node<E> current, E value) {
-		if (current == null) {
-			current = new Node<E>(value);
-		} else if (value.compareTo(current.value) < 0) {
-			current.left = insert(current.left, value);
-			current.left.setParent(current);
-		} else if (value.compareTo(current.value) > 0) {
-			current.right = insert(current.right, value);
-			current.right.setParent(current);
-			// ***** If equal keys are NOT allowed, ERROR *****
-		} else {
-			System.err.println(value + " is already in.");
-		}
-		return current;
-	}
-
-	private Node<E> remove(E value) {
-		Node<E> temp = locate(value);
-		// check if it is root
-		if (temp.equals(this.root)) {
-			this.root = null;
-			return temp;
+		if (this.root == null) {
+			recorder.operation(TreeStats.Operation.INSERT, 0);
+			this.root = new Node<E>(value);
+			this.size = 1;
+			return;
 		}
-		// if not not root check if left
-		if (temp.parent.left != null && temp.parent.left.equals(temp)) {
-			temp.parent.left = null;
-			temp.parent = null;
-		} else if (temp.parent.right != null && temp.parent.right.equals(temp)) {
-			temp.parent.right = null;
-			temp.parent = null;
-
+		Node<E> current = this.root;
+		int c;
+		int path = 0;
+		while (true) {
+			c = compare(value, current.value);
+			path++;
+			if (c == 0) {
+				recorder.operation(TreeStats.Operation.INSERT, path);
+				// ***** If equal keys are NOT allowed, ERROR *****
+				System.err.println(value + " is already in.");
+				return;
+			}
+			Node<E> next = c < 0 ? current.left : current.right;
+			if (next == null)
+				break;
+			current = next;
 		}
-		return temp;
+		recorder.operation(TreeStats.Operation.INSERT, path);
+		Node<E> node = new Node<E>(value);
+		node.parent = current;
+		// linked without setLeft/setRight, retrace sees the height change
+		if (c < 0)
+			current.left = node;
+		else
+			current.right = node;
+		this.size++;
+		retrace(current);
 	}
 
-	private Node<E> findTheFutherestLeftNode(Node<E> current) {
-		if (current.left == null)
-			return current;
-		else
-			return findTheFutherestLeftNode(current.left);
+	/**
+	 * Removes the node holding value. A node with two children takes the
+	 * value of its successor, whose node is unlinked instead. O(height)
+	 * 
+	 * @return true if value was in the tree
+	 */
+	public boolean removeNode(E value) {
+		Node<E> node = find(value, TreeStats.Operation.DELETE);
+		if (node == null)
+			return false;
+		if (node.left != null && node.right != null) {
+			Node<E> successor = node.right;
+			while (successor.left != null)
+				successor = successor.left;
+			node.value = successor.value;
+			node = successor;
+		}
+		Node<E> parent = node.parent;
+		replace(node, node.left != null ? node.left : node.right);
+		node.parent = node.left = node.right = null;
+		this.size--;
+		retrace(parent);
+		return true;
 	}
 
-	private Node<E> findTheFutherestRightNode(Node<E> current) {
-		if (current.right == null)
-			return current;
+	// puts node (which may be null) in the place of child, under child's
+	// parent or at the root
+	private void replace(Node<E> child, Node<E> node) {
+		Node<E> parent = child.parent;
+		if (node != null)
+			node.parent = parent;
+		if (parent == null)
+			this.root = node;
+		else if (parent.left == child)
+			parent.left = node;
 		else
-			return findTheFutherestRightNode(current.right);
+			parent.right = node;
 	}
 
-	private void collectAllRightChildren(Node<E> current) {
-		this.queue.clear();
-		while (current.right != null && !current.right.equals(current)) {
-			Node<E> temp = findTheFutherestRightNode(current);
-			if (!current.right.equals(current)) {
-				remove(temp.value);
-				this.queue.enqueue(temp);
-			}
+	// Refreshes the heights from node up to the root, rotating wherever a
+	// balanced tree came out of balance. Stops at the first subtree whose
+	// height did not change, nothing above it changed either.
+	private void retrace(Node<E> node) {
+		while (node != null) {
+			int before = node.getHeight();
+			node.setLeft(node.left);
+			node.setRight(node.right);
+			if (this.balanced)
+				node = rebalance(node);
+			if (node.getHeight() == before)
+				return;
+			node = node.parent;
 		}
 	}
 
-	private void collectAllLeftChildren(Node<E> current) {
-		this.queue.clear();
-		while (current.left != null && !current.left.equals(current)) {
-			Node<E> temp = findTheFutherestLeftNode(current);
-			if (!current.left.equals(current)) {
-				remove(temp.value);
-				this.queue.enqueue(temp);
+	// @return: the root of node's subtree after the AVL rotations, if any
+	private Node<E> rebalance(Node<E> node) {
+		int balance = node.leftHeight - node.rightHeight;
+		if (balance > 1) {
+			if (node.left.rightHeight > node.left.leftHeight) {
+				leftRotate(node.left.right);
+				recorder.rotation();
+			}
+			rightRotate(node.left);
+			recorder.rotation();
+			return node.parent;
+		} else if (balance < -1) {
+			if (node.right.leftHeight > node.right.rightHeight) {
+				rightRotate(node.right.left);
+				recorder.rotation();
 			}
+			leftRotate(node.right);
+			recorder.rotation();
+			return node.parent;
 		}
+		return node;
 	}
 
+	/**
+	 * Rotates current, a left child, above its parent in O(1): the parent
+	 * becomes current's right child and takes current's right subtree as its
+	 * left. The heights of the nodes above are not refreshed, so rotating a
+	 * balanced tree by hand may leave it unbalanced.
+	 */
 	public void rightRotate(Node<E> current) {
-		// all the right children of the node are collected
-		collectAllRightChildren(current);
-		// parent is root
-		if (current.parent == null) {
+		Node<E> wasParent = current.parent;
+		if (wasParent == null) {
 			System.err.println("root cannot be rotated");
+		} else if (wasParent.left != current) {
+			System.err.println("current is not the left child");
 		} else {
-			// child must be the left child of the parent
-			if (current.parent.left.equals(current)) {
-				boolean toRoot = false;
-				Node<E> wasParent = current.parent;
-				current.parent = wasParent.parent;
-				if (current.parent == null) {
-					toRoot = true;
-				} else {
-					current.parent.left = current;
-				}
-				wasParent.parent = current;
-				current.right = wasParent;
-				wasParent.left = null;
-				while (this.queue.size() > 0) {
-					addNode(this.queue.dequeue().value);
-				}
-				if (toRoot) {
-					this.root = current;
-				}
-			} else {
-				System.err.println("current is not the left child");
-			}
+			wasParent.setLeft(current.right);
+			if (current.right != null)
+				current.right.parent = wasParent;
+			replace(wasParent, current);
+			current.setRight(wasParent);
+			wasParent.parent = current;
 		}
 	}
 
+	/**
+	 * Rotates current, a right child, above its parent in O(1): the mirror
+	 * image of rightRotate.
+	 */
 	public void leftRotate(Node<E> current) {
-		// all the left children of the node are collected
-		collectAllLeftChildren(current);
-		// parent is root
-		if (current.parent == null) {
+		Node<E> wasParent = current.parent;
+		if (wasParent == null) {
 			System.err.println("root cannot be rotated");
-			// height 2
+		} else if (wasParent.right != current) {
+			System.err.println("current is not the right child");
 		} else {
-			// child must be the left child of the parent
-			if (current.parent.right.equals(current)) {
-				boolean toRoot = false;
-				Node<E> wasParent = current.parent;
-				current.parent = wasParent.parent;
-				if (current.parent == null) {
-					toRoot = true;
-				} else {
-					current.parent.right = current;
-				}
-				wasParent.parent = current;
-				current.left = wasParent;
-				wasParent.right = null;
-				while (this.queue.size() > 0) {
-					addNode(this.queue.dequeue().value);
-				}
-				if (toRoot) {
-					this.root = current;
-				}
-
-			} else {
-				System.err.println("current is not the left child");
-			}
+			wasParent.setRight(current.left);
+			if (current.left != null)
+				current.left.parent = wasParent;
+			replace(wasParent, current);
+			current.setLeft(wasParent);
+			wasParent.parent = current;
 		}
 	}
 
+	/**
+	 * O(height), one comparison per node on the way
+	 * 
+	 * @return the node holding value, null if there is none
+	 */
 	public Node<E> locate(E value) {
+		return find(value, TreeStats.Operation.SEARCH);
+	}
+
+	// locate, counted as an operation of kind op
+	private Node<E> find(E value, TreeStats.Operation op) {
 		Node<E> finger = root;
-		while (finger != null && !finger.value.equals(value)) {
-			if (value.compareTo(finger.value) < 0)
-				finger = finger.left;
-			else
-				finger = finger.right;
-		}
-		if (finger == null) {
-			return null;
-		} else {
-			return finger;
+		int path = 0;
+		while (finger != null) {
+			int c = compare(value, finger.value);
+			path++;
+			if (c == 0)
+				break;
+			finger = c < 0 ? finger.left : finger.right;
 		}
+		recorder.operation(op, path);
+		return finger;
+	}
+
+	/**
+	 * O(1), from the heights addNode and removeNode keep; rotating by hand
+	 * may leave them stale
+	 * 
+	 * @return the number of levels, 0 if the tree is empty
+	 */
+	public int height() {
+		return height(this.root) + 1;
+	}
+
+	/**
+	 * Measures the shape of the tree and reports it with the costs of the
+	 * operations since the last reset. O(n)
+	 */
+	public TreeStats stats() {
+		return new TreeStats(TreeStats.histogram(this.root), recorder);
+	}
+
+	/**
+	 * Zeroes the operation costs reported by stats.
+	 */
+	public void resetStats() {
+		recorder.reset();
 	}
 
 	// private int updateHeight(Node<E> node) {
@@ -280,40 +365,47 @@ public class BinaryTree<E extends Comparable<? super E>> {
 		if (p == null)
 			return -1;
 		else
-			return 1 + Math.max(height(p.left), height(p.right));
+			return p.getHeight();
 	}
 
+	/**
+	 * O(n)
+	 * 
+	 * @return the values in sorted order: [1,2,3]
+	 */
 	public String toString() {
 		if (this.root == null) {
 			return "[]";
 		}
-		// String recStr = this.toStringPreOrder(this.root);
-		// String recStr = this.toStringPostOrder(this.root);
-		String recStr = this.toStringInOrder(this.root);
+		String recStr = Traversal.IN_ORDER.format(this.root);
 		return "[" + recStr.substring(0, recStr.length() - 1) + "]";
 	}
 
 	public String toStringInOrder(Node<E> current) {
-		if (current == null)
-			return "";
-		return this.toStringInOrder(current.left) + current.value.toString()
-				+ "," + this.toStringInOrder(current.right);
-
+		return Traversal.IN_ORDER.format(current);
 	}
 
 	public String toStringPostOrder(Node<E> current) {
-		if (current == null)
-			return "";
-		return toStringPostOrder(current.left)
-				+ toStringPostOrder(current.right) + current.value.toString()
-				+ ",";
+		return Traversal.POST_ORDER.format(current);
 	}
 
 	public String toStringPreOrder(Node<E> current) {
-		if (current == null)
-			return "";
-		return current.value.toString() + "," + toStringPreOrder(current.left)
-				+ toStringPreOrder(current.right);
+		return Traversal.PRE_ORDER.format(current);
+	}
+
+	/**
+	 * Passes the values to action in the given order. O(n)
+	 */
+	public void traverse(Traversal order, Consumer<? super E> action) {
+		order.forEach(this.root, action);
+	}
+
+	/**
+	 * Streams the values to out in the given order, each followed by a
+	 * comma. O(n)
+	 */
+	public void appendTo(Traversal order, Appendable out) throws IOException {
+		order.appendTo(this.root, out);
 	}
 
 	public static void main(String[] args) {
@@ -332,12 +424,7 @@ public class BinaryTree<E extends Comparable<? super E>> {
 		// bt.addNode(i);
 		// }
 		System.out.println(bt.root().value);
-		// bt.remove(15);
-		// bt.collectAllRightChildren(bt.locate(0));
-		// bt.collectAllLeftChildren(bt.locate(17));
-		// while (bt.queue.size() > 0) {
-		// bt.addNode(bt.queue.dequeue().value);
-		// }
+		// bt.removeNode(15);
 		// bt.rightRotate(bt.locate(2));
 		bt.leftRotate(bt.locate(17));
 		// System.out.println(bt.height(bt.locate(19)));
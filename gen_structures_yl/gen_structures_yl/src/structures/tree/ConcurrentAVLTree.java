@@ -0,0 +1,373 @@
+package structures.tree;
+
+import java.util.Comparator;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An AVL tree that any number of threads may search while others insert and
+ * delete, after Bronson, Casper, Chafi and Olukotun, "A Practical Concurrent
+ * Binary Search Tree" (PPoPP 2010).
+ *
+ * search takes no lock and writes nothing. It goes down the tree optimistically
+ * and checks that no rotation moved keys out of the subtree it was entering
+ * while it read the link: every node has a version that a rotation marks as
+ * shrinking while it moves the node down and bumps when it is done. When the
+ * check fails the search retries from the node above, not from the root.
+ *
+ * Writers take a single lock, which suits a tree searched far more often than
+ * it changes. Under it they insert and unlink leaves and rotate as in
+ * {@link AVLTree}, but they never move a key from one node to another, which
+ * would make a concurrent search miss it. A key deleted from a node with two
+ * children stays in place as a routing node that only guides searches. It is
+ * unlinked when a later rebalance passes it with at most one child left, or
+ * revived if the key is inserted again. Rebalancing is relaxed in the same way:
+ * heights are exact, but routing nodes still count in them until they go.
+ *
+ * Like {@link AVLTree} a value is stored at most once.
+ *
+ * @param <T>
+ */
+public class ConcurrentAVLTree<T extends Comparable<T>> {
+	// version bits: the node is off the tree for good, or a rotation is
+	// moving it down
+	private static final long UNLINKED = 1;
+	private static final long SHRINKING = 2;
+	// what a finished rotation adds to the version
+	private static final long SHRINK_COUNT = 4;
+	// how long a search spins on a shrinking node before waiting for the
+	// writer lock
+	private static final int SPINS = 100;
+
+	// search results
+	private static final int ABSENT = 0;
+	private static final int PRESENT = 1;
+	private static final int RETRY = 2;
+
+	private static final class Node<T> {
+		final T value;
+		// false in a routing node, whose value was deleted
+		volatile boolean present = true;
+		volatile long version;
+		volatile Node<T> left;
+		volatile Node<T> right;
+		// read and written under the writer lock only
+		Node<T> parent;
+		int height = 1;
+
+		Node(T value, Node<T> parent) {
+			this.value = value;
+			this.parent = parent;
+		}
+
+		Node<T> child(int c) {
+			return c < 0 ? left : right;
+		}
+	}
+
+	// the root is its right child; it never moves, so it is never shrinking
+	private final Node<T> holder = new Node<T>(null, null);
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private volatile int count;
+	// orders the values, null for their natural order
+	private final Comparator<? super T> comparator;
+
+	public ConcurrentAVLTree() {
+		this(null);
+	}
+
+	/**
+	 * @param comparator
+	 *            orders the values, null for their natural order
+	 */
+	public ConcurrentAVLTree(Comparator<? super T> comparator) {
+		this.comparator = comparator;
+	}
+
+	/**
+	 * @return the comparator ordering the values, null for their natural
+	 *         order
+	 */
+	public Comparator<? super T> comparator() {
+		return comparator;
+	}
+
+	private int compare(T a, T b) {
+		return comparator == null ? a.compareTo(b) : comparator.compare(a, b);
+	}
+
+	/**
+	 * searches the tree for a value without locking, O(log(n)) unless
+	 * rotations keep getting in the way
+	 *
+	 * @param target
+	 * @return true if target is in the tree
+	 */
+	public boolean search(T target) {
+		int result;
+		do {
+			result = attemptSearch(target, holder, 1, holder.version);
+		} while (result == RETRY);
+		return result == PRESENT;
+	}
+
+	// Searches the subtree of node's child on the side of c for target,
+	// node having had version nodeVersion when the search reached it.
+	// @return: RETRY if node changed since, the search must then go back to
+	// its parent
+	private int attemptSearch(T target, Node<T> node, int c, long nodeVersion) {
+		while (true) {
+			Node<T> child = node.child(c);
+			if (child == null)
+				return node.version != nodeVersion ? RETRY : ABSENT;
+			int childC = compare(target, child.value);
+			if (childC == 0)
+				return child.present ? PRESENT : ABSENT;
+			long childVersion = child.version;
+			if ((childVersion & (SHRINKING | UNLINKED)) != 0) {
+				awaitRotation(child, childVersion);
+			} else if (child == node.child(c)) {
+				// child was below node when its version was read
+				if (node.version != nodeVersion)
+					return RETRY;
+				int result = attemptSearch(target, child, childC, childVersion);
+				if (result != RETRY)
+					return result;
+			}
+			// something moved: try again from node if it is still valid
+			if (node.version != nodeVersion)
+				return RETRY;
+		}
+	}
+
+	// waits for the rotation moving node, if it is shrinking, to finish
+	private void awaitRotation(Node<T> node, long version) {
+		if ((version & SHRINKING) == 0)
+			return;
+		for (int i = 0; i < SPINS; i++) {
+			if (node.version != version)
+				return;
+		}
+		// the writer was descheduled mid-rotation
+		writeLock.lock();
+		writeLock.unlock();
+	}
+
+	/**
+	 * inserts a value takes O(log(n)), excluding other writers
+	 *
+	 * @param value
+	 * @return false if value was already present
+	 */
+	public boolean insert(T value) {
+		writeLock.lock();
+		try {
+			Node<T> parent = holder;
+			Node<T> node = holder.right;
+			int c = 1;
+			while (node != null) {
+				c = compare(value, node.value);
+				if (c == 0) {
+					if (node.present)
+						return false;
+					node.present = true;
+					count++;
+					return true;
+				}
+				parent = node;
+				node = node.child(c);
+			}
+			node = new Node<T>(value, parent);
+			if (c < 0)
+				parent.left = node;
+			else
+				parent.right = node;
+			count++;
+			rebalance(parent);
+			return true;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * deletes a value takes O(log(n)), excluding other writers
+	 *
+	 * @param value
+	 * @return true if value was present
+	 */
+	public boolean delete(T value) {
+		writeLock.lock();
+		try {
+			Node<T> node = holder.right;
+			while (node != null) {
+				int c = compare(value, node.value);
+				if (c == 0)
+					break;
+				node = node.child(c);
+			}
+			if (node == null || !node.present)
+				return false;
+			node.present = false;
+			count--;
+			if (node.left == null || node.right == null) {
+				Node<T> parent = node.parent;
+				unlink(node);
+				rebalance(parent);
+			}
+			return true;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	// Splices node, which has at most one child, out of the tree. Its
+	// parent's range does not shrink, so only node's version changes.
+	private void unlink(Node<T> node) {
+		Node<T> parent = node.parent;
+		Node<T> child = node.left != null ? node.left : node.right;
+		if (parent.left == node)
+			parent.left = child;
+		else
+			parent.right = child;
+		if (child != null)
+			child.parent = parent;
+		node.version = UNLINKED;
+	}
+
+	private static int height(Node<?> node) {
+		return node == null ? 0 : node.height;
+	}
+
+	// Restores heights and balance from node up, and unlinks the routing
+	// nodes met with a missing child.
+	private void rebalance(Node<T> node) {
+		while (node != null)
+			node = fixUp(node);
+	}
+
+	// Goes up from node until a subtree keeps its height. A routing node
+	// whose height is right loses exactly one level when it is unlinked,
+	// which the nodes above can absorb; one whose height is still changing
+	// is fixed like any node and only unlinked by the next pass.
+	// @return: a routing node left for that pass, null if there is none
+	private Node<T> fixUp(Node<T> node) {
+		Node<T> pending = null;
+		while (node != holder) {
+			Node<T> parent = node.parent;
+			int oldHeight = node.height;
+			int leftHeight = height(node.left);
+			int rightHeight = height(node.right);
+			if (!node.present && (node.left == null || node.right == null)) {
+				if (1 + Math.max(leftHeight, rightHeight) == oldHeight) {
+					unlink(node);
+					node = parent;
+					continue;
+				}
+				pending = node;
+			}
+			if (leftHeight - rightHeight > 1) {
+				if (height(node.left.left) < height(node.left.right))
+					rotateLeft(node.left);
+				node = rotateRight(node);
+			} else if (rightHeight - leftHeight > 1) {
+				if (height(node.right.right) < height(node.right.left))
+					rotateRight(node.right);
+				node = rotateLeft(node);
+			} else {
+				node.height = 1 + Math.max(leftHeight, rightHeight);
+			}
+			if (node.height == oldHeight)
+				break;
+			node = parent;
+		}
+		if (pending == null || pending.version == UNLINKED || pending.present
+				|| (pending.left != null && pending.right != null))
+			return null;
+		return pending;
+	}
+
+	// The rotations below move node down and its child up. node's range
+	// shrinks, so it is marked while the links change; the child's grows.
+	// @return: the child, now in node's place
+
+	private Node<T> rotateRight(Node<T> node) {
+		Node<T> parent = node.parent;
+		Node<T> left = node.left;
+		Node<T> leftRight = left.right;
+		long version = node.version;
+		node.version = version | SHRINKING;
+		node.left = leftRight;
+		if (leftRight != null)
+			leftRight.parent = node;
+		left.right = node;
+		node.parent = left;
+		if (parent.left == node)
+			parent.left = left;
+		else
+			parent.right = left;
+		left.parent = parent;
+		node.height = 1 + Math.max(height(leftRight), height(node.right));
+		left.height = 1 + Math.max(height(left.left), node.height);
+		node.version = version + SHRINK_COUNT;
+		return left;
+	}
+
+	private Node<T> rotateLeft(Node<T> node) {
+		Node<T> parent = node.parent;
+		Node<T> right = node.right;
+		Node<T> rightLeft = right.left;
+		long version = node.version;
+		node.version = version | SHRINKING;
+		node.right = rightLeft;
+		if (rightLeft != null)
+			rightLeft.parent = node;
+		right.left = node;
+		node.parent = right;
+		if (parent.left == node)
+			parent.left = right;
+		else
+			parent.right = right;
+		right.parent = parent;
+		node.height = 1 + Math.max(height(node.left), height(rightLeft));
+		right.height = 1 + Math.max(node.height, height(right.right));
+		node.version = version + SHRINK_COUNT;
+		return right;
+	}
+
+	/**
+	 * @return the number of values in the tree
+	 */
+	public int size() {
+		return count;
+	}
+
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	/**
+	 * O(n), holds off writers while it runs
+	 *
+	 * @return the values in sorted order: [1,2,3]
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		writeLock.lock();
+		try {
+			appendInOrder(holder.right, sb);
+		} finally {
+			writeLock.unlock();
+		}
+		if (sb.length() > 1)
+			sb.setLength(sb.length() - 1);
+		return sb.append(']').toString();
+	}
+
+	private static void appendInOrder(Node<?> node, StringBuilder sb) {
+		for (; node != null; node = node.right) {
+			appendInOrder(node.left, sb);
+			if (node.present)
+				sb.append(node.value).append(',');
+		}
+	}
+}
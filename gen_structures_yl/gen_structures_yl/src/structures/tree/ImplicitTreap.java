@@ -0,0 +1,171 @@
+package structures.tree;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * A list kept in a treap keyed by position: a node's index is the number of
+ * nodes before it, found from the subtree sizes, so no keys are stored and
+ * inserting in the middle shifts nothing. get, set, add and remove at any
+ * index take O(log(n)) expected, and so do the operations on whole runs:
+ *
+ * <ul>
+ * <li>split(index) cuts off the elements from index on into a new list</li>
+ * <li>merge(other) appends the elements of another list and empties it</li>
+ * <li>removeRange(from, to), and with it subList(from, to).clear()</li>
+ * </ul>
+ *
+ * Iteration goes through get, so it is O(n log(n)); forEach is O(n).
+ *
+ * @param <E>
+ */
+public class ImplicitTreap<E> extends AbstractList<E> {
+	private TreapNode<E> root;
+	// the two halves handed back by TreapNode.splitAt
+	private final TreapNode<E>[] parts = TreapNode.newParts();
+
+	public ImplicitTreap() {
+	}
+
+	public ImplicitTreap(Collection<? extends E> elements) {
+		addAll(elements);
+	}
+
+	private void checkIndex(int index, int size) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(
+					"index should be in the range, but " + index);
+		}
+	}
+
+	public int size() {
+		return TreapNode.size(root);
+	}
+
+	public E get(int index) {
+		checkIndex(index, size());
+		return TreapNode.select(root, index).value;
+	}
+
+	public E set(int index, E element) {
+		checkIndex(index, size());
+		TreapNode<E> node = TreapNode.select(root, index);
+		E old = node.value;
+		node.value = element;
+		return old;
+	}
+
+	/**
+	 * Inserts element at index, shifting the elements from there on by one.
+	 * O(log(n)) expected
+	 */
+	public void add(int index, E element) {
+		checkIndex(index, size() + 1);
+		TreapNode<E> node = new TreapNode<E>(element);
+		if (index == size()) {
+			root = TreapNode.merge(root, node);
+		} else {
+			TreapNode.splitAt(root, index, parts);
+			root = TreapNode.merge(TreapNode.merge(parts[0], node), parts[1]);
+			parts[0] = parts[1] = null;
+		}
+		modCount++;
+	}
+
+	/**
+	 * Removes the element at index, O(log(n)) expected.
+	 */
+	public E remove(int index) {
+		checkIndex(index, size());
+		root = remove(root, index);
+		modCount++;
+		E removed = parts[0].value;
+		parts[0] = null;
+		return removed;
+	}
+
+	// @return: the root of t without its index-th node, which is left in
+	// parts[0]
+	private TreapNode<E> remove(TreapNode<E> t, int index) {
+		int leftSize = TreapNode.size(t.left);
+		if (index == leftSize) {
+			parts[0] = t;
+			return TreapNode.merge(t.left, t.right);
+		}
+		if (index < leftSize)
+			t.left = remove(t.left, index);
+		else
+			t.right = remove(t.right, index - leftSize - 1);
+		t.update();
+		return t;
+	}
+
+	/**
+	 * Removes the elements from index fromIndex, inclusive, to toIndex,
+	 * exclusive, in O(log(n)) expected however many there are.
+	 */
+	public void removeRange(int fromIndex, int toIndex) {
+		if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex)
+			throw new IndexOutOfBoundsException("range [" + fromIndex + ", "
+					+ toIndex + ") of a list of " + size());
+		if (fromIndex == toIndex)
+			return;
+		TreapNode.splitAt(root, fromIndex, parts);
+		TreapNode<E> lower = parts[0];
+		TreapNode.splitAt(parts[1], toIndex - fromIndex, parts);
+		root = TreapNode.merge(lower, parts[1]);
+		parts[0] = parts[1] = null;
+		modCount++;
+	}
+
+	public void clear() {
+		root = null;
+		modCount++;
+	}
+
+	/**
+	 * Moves the elements from index on into a new list, leaving the first
+	 * index elements in this one. O(log(n)) expected
+	 *
+	 * @return the list of the elements from index on
+	 */
+	public ImplicitTreap<E> split(int index) {
+		checkIndex(index, size() + 1);
+		TreapNode.splitAt(root, index, parts);
+		root = parts[0];
+		ImplicitTreap<E> tail = new ImplicitTreap<E>();
+		tail.root = parts[1];
+		parts[0] = parts[1] = null;
+		modCount++;
+		return tail;
+	}
+
+	/**
+	 * Appends the elements of other to this list and leaves other empty.
+	 * O(log(n)) expected
+	 */
+	public void merge(ImplicitTreap<E> other) {
+		if (other == this)
+			throw new IllegalArgumentException("a list cannot merge itself");
+		root = TreapNode.merge(root, other.root);
+		other.root = null;
+		modCount++;
+		other.modCount++;
+	}
+
+	/**
+	 * Passes the elements to action in order. O(n)
+	 */
+	public void forEach(Consumer<? super E> action) {
+		forEach(root, action);
+	}
+
+	private static <E> void forEach(TreapNode<E> node,
+			Consumer<? super E> action) {
+		for (; node != null; node = node.right) {
+			forEach(node.left, action);
+			action.accept(node.value);
+		}
+	}
+}
@@ -0,0 +1,336 @@
+package structures.tree;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A map from closed intervals [low, high] to values that finds the intervals
+ * overlapping a point or another interval without scanning them all.
+ *
+ * The intervals are kept in a red-black tree ordered by low end, then high
+ * end, and every node also keeps the greatest high end in its subtree (the
+ * augmentation of Cormen et al., chapter 14). A query skips every subtree
+ * whose greatest high end lies before it and every right subtree whose
+ * lowest low end lies after it. The nodes it visits are the paths to the k
+ * intervals it reports plus one path to where the low ends pass the query:
+ * O(log(n)) when nothing overlaps and at most O((k + 1) log(n)) when k
+ * intervals do, less when they are close together in low-end order. Results
+ * are streamed to a Consumer as they are found.
+ *
+ * Like a map it holds one value per distinct interval: putting an interval
+ * that is already there replaces its value.
+ *
+ * @param <T>
+ *            the type of the interval ends
+ * @param <V>
+ */
+public class IntervalTree<T extends Comparable<T>, V> {
+	private final Tree tree;
+	// orders the ends, null for their natural order
+	private final Comparator<? super T> comparator;
+
+	/**
+	 * A closed interval [low, high], ordered by low end, then high end.
+	 */
+	public static final class Interval<T extends Comparable<T>> implements
+			Comparable<Interval<T>> {
+		public final T low;
+		public final T high;
+
+		Interval(T low, T high) {
+			this.low = low;
+			this.high = high;
+		}
+
+		public int compareTo(Interval<T> other) {
+			int c = low.compareTo(other.low);
+			return c != 0 ? c : high.compareTo(other.high);
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Interval))
+				return false;
+			Interval<?> other = (Interval<?>) o;
+			return low.equals(other.low) && high.equals(other.high);
+		}
+
+		public int hashCode() {
+			return 31 * low.hashCode() + high.hashCode();
+		}
+
+		public String toString() {
+			return "[" + low + ", " + high + "]";
+		}
+	}
+
+	static final class IntervalNode<T extends Comparable<T>, V> extends
+			RedBlackNode<Interval<T>> implements Map.Entry<Interval<T>, V> {
+		V value;
+		// the greatest high end in the subtree rooted here
+		T max;
+
+		IntervalNode(Interval<T> key, V value) {
+			super(key);
+			this.value = value;
+			this.max = key.high;
+		}
+
+		public Interval<T> getKey() {
+			return key;
+		}
+
+		public V getValue() {
+			return value;
+		}
+
+		public V setValue(V value) {
+			V old = this.value;
+			this.value = value;
+			return old;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Map.Entry))
+				return false;
+			Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+			return key.equals(e.getKey())
+					&& (value == null ? e.getValue() == null : value.equals(e
+							.getValue()));
+		}
+
+		public int hashCode() {
+			return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+		}
+
+		public String toString() {
+			return key + "=" + value;
+		}
+	}
+
+	private final class Tree extends AbstractRedBlackTree<Interval<T>> {
+		Tree(Comparator<? super Interval<T>> comparator) {
+			super(comparator);
+		}
+
+		@Override
+		void update(RedBlackNode<Interval<T>> node) {
+			super.update(node);
+			IntervalNode<T, V> n = node(node);
+			T max = n.key.high;
+			if (!isNil(n.left) && compareEnds(node(n.left).max, max) > 0)
+				max = node(n.left).max;
+			if (!isNil(n.right) && compareEnds(node(n.right).max, max) > 0)
+				max = node(n.right).max;
+			n.max = max;
+		}
+	}
+
+	public IntervalTree() {
+		this(null);
+	}
+
+	/**
+	 * @param comparator
+	 *            orders the interval ends, null for their natural order
+	 */
+	public IntervalTree(final Comparator<? super T> comparator) {
+		this.comparator = comparator;
+		this.tree = new Tree(comparator == null ? null
+				: new Comparator<Interval<T>>() {
+					public int compare(Interval<T> a, Interval<T> b) {
+						int c = comparator.compare(a.low, b.low);
+						return c != 0 ? c : comparator.compare(a.high, b.high);
+					}
+				});
+	}
+
+	/**
+	 * @return the comparator ordering the interval ends, null for their
+	 *         natural order
+	 */
+	public Comparator<? super T> comparator() {
+		return comparator;
+	}
+
+	private int compareEnds(T a, T b) {
+		return comparator == null ? a.compareTo(b) : comparator.compare(a, b);
+	}
+
+	@SuppressWarnings("unchecked")
+	private IntervalNode<T, V> node(RedBlackNode<Interval<T>> node) {
+		return (IntervalNode<T, V>) node;
+	}
+
+	private IntervalNode<T, V> entry(RedBlackNode<Interval<T>> node) {
+		return tree.isNil(node) ? null : node(node);
+	}
+
+	private Interval<T> interval(T low, T high) {
+		if (low == null || high == null)
+			throw new NullPointerException();
+		if (compareEnds(low, high) > 0)
+			throw new IllegalArgumentException("interval [" + low + ", "
+					+ high + "] ends before it starts");
+		return new Interval<T>(low, high);
+	}
+
+	/**
+	 * Maps [low, high] to value, O(log(n)).
+	 *
+	 * @return the previous value of [low, high], null if there was none
+	 * @throws IllegalArgumentException
+	 *             if high is smaller than low
+	 */
+	public V put(T low, T high, V value) {
+		IntervalNode<T, V> e = new IntervalNode<T, V>(interval(low, high),
+				value);
+		RedBlackNode<Interval<T>> found = tree.insertNode(e);
+		if (found != e)
+			return node(found).setValue(value);
+		return null;
+	}
+
+	/**
+	 * @return the value of [low, high], null if it is not in the tree
+	 */
+	public V get(T low, T high) {
+		IntervalNode<T, V> e = entry(tree.find(interval(low, high),
+				TreeStats.Operation.SEARCH));
+		return e == null ? null : e.value;
+	}
+
+	public boolean contains(T low, T high) {
+		return entry(tree.find(interval(low, high),
+				TreeStats.Operation.SEARCH)) != null;
+	}
+
+	/**
+	 * Removes [low, high], O(log(n)).
+	 *
+	 * @return the value it had, null if it was not in the tree
+	 */
+	public V remove(T low, T high) {
+		IntervalNode<T, V> e = entry(tree.find(interval(low, high),
+				TreeStats.Operation.DELETE));
+		if (e == null)
+			return null;
+		tree.removeNode(e);
+		return e.value;
+	}
+
+	/**
+	 * @return the number of intervals in the tree
+	 */
+	public int size() {
+		return tree.size(tree.root);
+	}
+
+	public boolean isEmpty() {
+		return tree.isNil(tree.root);
+	}
+
+	public void clear() {
+		tree.root = tree.nil;
+	}
+
+	/**
+	 * Passes every interval containing point to action, in interval order.
+	 */
+	public void overlapping(T point,
+			Consumer<? super Map.Entry<Interval<T>, V>> action) {
+		overlapping(point, point, action);
+	}
+
+	/**
+	 * Passes every interval that shares a point with [low, high] to action,
+	 * in interval order. O(log(n)) if there is none, see the class comment.
+	 */
+	public void overlapping(T low, T high,
+			Consumer<? super Map.Entry<Interval<T>, V>> action) {
+		interval(low, high);
+		overlapping(tree.root, low, high, action);
+	}
+
+	private void overlapping(RedBlackNode<Interval<T>> node, T low, T high,
+			Consumer<? super Map.Entry<Interval<T>, V>> action) {
+		// nothing below a node whose greatest high end is before low overlaps
+		while (!tree.isNil(node) && compareEnds(node(node).max, low) >= 0) {
+			overlapping(node.left, low, high, action);
+			// neither does this node nor anything right of it, if it starts
+			// after high
+			if (compareEnds(node.key.low, high) > 0)
+				return;
+			if (compareEnds(node.key.high, low) >= 0)
+				action.accept(node(node));
+			node = node.right;
+		}
+	}
+
+	/**
+	 * Finds some interval that shares a point with [low, high], in a single
+	 * descent: O(log(n)). Enough to tell whether [low, high] is free.
+	 *
+	 * @return an overlapping interval and its value, null if there is none
+	 */
+	public Map.Entry<Interval<T>, V> findOverlapping(T low, T high) {
+		interval(low, high);
+		RedBlackNode<Interval<T>> node = tree.root;
+		while (!tree.isNil(node)) {
+			if (compareEnds(node.key.low, high) <= 0
+					&& compareEnds(node.key.high, low) >= 0)
+				return node(node);
+			// if the left subtree reaches low, it holds an overlap or none
+			// of the right one can: their low ends are greater still
+			if (!tree.isNil(node.left)
+					&& compareEnds(node(node.left).max, low) >= 0)
+				node = node.left;
+			else
+				node = node.right;
+		}
+		return null;
+	}
+
+	/**
+	 * Passes every interval to action, in interval order. O(n)
+	 */
+	public void forEach(Consumer<? super Map.Entry<Interval<T>, V>> action) {
+		forEach(tree.root, action);
+	}
+
+	private void forEach(RedBlackNode<Interval<T>> node,
+			Consumer<? super Map.Entry<Interval<T>, V>> action) {
+		for (; !tree.isNil(node); node = node.right) {
+			forEach(node.left, action);
+			action.accept(node(node));
+		}
+	}
+
+	/**
+	 * Measures the shape of the tree and reports it with the costs of the
+	 * operations since the last reset. O(n)
+	 */
+	public TreeStats stats() {
+		return tree.stats();
+	}
+
+	/**
+	 * Zeroes the operation costs reported by stats.
+	 */
+	public void resetStats() {
+		tree.recorder.reset();
+	}
+
+	/**
+	 * O(n)
+	 *
+	 * @return the intervals and their values in order: {[1, 3]=a, [2, 5]=b}
+	 */
+	public String toString() {
+		final StringBuilder sb = new StringBuilder("{");
+		forEach(e -> sb.append(e).append(", "));
+		if (sb.length() > 1)
+			sb.setLength(sb.length() - 2);
+		return sb.append('}').toString();
+	}
+}
@@ -0,0 +1,112 @@
+package structures.tree;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts tree keys to and from bytes for the on-disk tree formats.
+ *
+ * @param <T>
+ *            the key type
+ */
+public interface KeyCodec<T> {
+
+	/**
+	 * @return the number of bytes encode will write for key
+	 */
+	int encodedSize(T key);
+
+	/**
+	 * writes key at the buffer's position and advances it
+	 */
+	void encode(T key, ByteBuffer buffer);
+
+	/**
+	 * reads a key at the buffer's position and advances it
+	 */
+	T decode(ByteBuffer buffer);
+
+	KeyCodec<Integer> INTEGER = new KeyCodec<Integer>() {
+		public int encodedSize(Integer key) {
+			return 4;
+		}
+
+		public void encode(Integer key, ByteBuffer buffer) {
+			buffer.putInt(key);
+		}
+
+		public Integer decode(ByteBuffer buffer) {
+			return buffer.getInt();
+		}
+	};
+
+	KeyCodec<Long> LONG = new KeyCodec<Long>() {
+		public int encodedSize(Long key) {
+			return 8;
+		}
+
+		public void encode(Long key, ByteBuffer buffer) {
+			buffer.putLong(key);
+		}
+
+		public Long decode(ByteBuffer buffer) {
+			return buffer.getLong();
+		}
+	};
+
+	/**
+	 * UTF-8 bytes preceded by their length. A key with an unpaired surrogate
+	 * has no UTF-8 form and is rejected with an IllegalArgumentException.
+	 */
+	KeyCodec<String> STRING = new KeyCodec<String>() {
+		public int encodedSize(String key) {
+			int size = 4;
+			for (int i = 0; i < key.length(); i++) {
+				char c = key.charAt(i);
+				if (c < 0x80) {
+					size += 1;
+				} else if (c < 0x800) {
+					size += 2;
+				} else if (Character.isHighSurrogate(c)
+						&& i + 1 < key.length()
+						&& Character.isLowSurrogate(key.charAt(i + 1))) {
+					size += 4;
+					i++;
+				} else if (Character.isSurrogate(c)) {
+					throw unpaired(key, i);
+				} else {
+					size += 3;
+				}
+			}
+			return size;
+		}
+
+		public void encode(String key, ByteBuffer buffer) {
+			ByteBuffer bytes;
+			try {
+				// getBytes would store '?' for an unpaired surrogate, a
+				// different key
+				bytes = StandardCharsets.UTF_8.newEncoder().encode(
+						CharBuffer.wrap(key));
+			} catch (CharacterCodingException e) {
+				throw new IllegalArgumentException(
+						"unpaired surrogate in key " + key, e);
+			}
+			buffer.putInt(bytes.remaining());
+			buffer.put(bytes);
+		}
+
+		private IllegalArgumentException unpaired(String key, int index) {
+			return new IllegalArgumentException("unpaired surrogate at "
+					+ index + " in key " + key);
+		}
+
+		public String decode(ByteBuffer buffer) {
+			byte[] bytes = new byte[buffer.getInt()];
+			buffer.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+	};
+}
@@ -0,0 +1,316 @@
+package structures.tree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicMarkableReference;
+
+/**
+ * A lock-free ordered set (Herlihy and Shavit, The Art of Multiprocessor
+ * Programming, ch. 14). It offers the same search/insert/remove/range
+ * operations as the tree classes, but any number of threads may call them at
+ * the same time.
+ *
+ * search never writes to shared memory and never retries. insert and remove
+ * use compareAndSet on the bottom level link; the bottom level defines
+ * membership and the upper levels are only shortcuts. A node is removed
+ * logically by marking its next references, after which searches physically
+ * unlink it.
+ *
+ * Range results are weakly consistent: they reflect the state of the list at
+ * some point during the traversal and never throw on concurrent updates.
+ *
+ * @param <T>
+ */
+public class LockFreeSkipList<T extends Comparable<T>> {
+	// enough for 2^32 keys with p = 1/2
+	static final int MAX_LEVEL = 31;
+
+	private final SkipNode<T> head;
+	private final SkipNode<T> tail;
+	private final AtomicInteger count = new AtomicInteger();
+
+	public LockFreeSkipList() {
+		head = new SkipNode<T>(null, MAX_LEVEL);
+		tail = new SkipNode<T>(null, MAX_LEVEL);
+		for (int i = 0; i <= MAX_LEVEL; i++) {
+			head.next[i] = new AtomicMarkableReference<SkipNode<T>>(tail,
+					false);
+		}
+	}
+
+	static final class SkipNode<T> {
+		final T key;
+		final int topLevel;
+		final AtomicMarkableReference<SkipNode<T>>[] next;
+
+		@SuppressWarnings("unchecked")
+		SkipNode(T key, int topLevel) {
+			this.key = key;
+			this.topLevel = topLevel;
+			this.next = (AtomicMarkableReference<SkipNode<T>>[])
+					new AtomicMarkableReference<?>[topLevel + 1];
+			for (int i = 0; i <= topLevel; i++) {
+				next[i] = new AtomicMarkableReference<SkipNode<T>>(null, false);
+			}
+		}
+	}
+
+	/**
+	 * @return true if node's key is smaller than key; head is smaller and tail
+	 *         is greater than every key
+	 */
+	private boolean less(SkipNode<T> node, T key) {
+		if (node == head)
+			return true;
+		if (node == tail)
+			return false;
+		return node.key.compareTo(key) < 0;
+	}
+
+	private boolean matches(SkipNode<T> node, T key) {
+		return node != tail && node.key.compareTo(key) == 0;
+	}
+
+	/**
+	 * Fills preds and succs with the nodes around key on every level and
+	 * unlinks any marked node met on the way.
+	 *
+	 * @return true if key is in the list
+	 */
+	private boolean find(T key, SkipNode<T>[] preds, SkipNode<T>[] succs) {
+		boolean[] marked = { false };
+		retry: while (true) {
+			SkipNode<T> pred = head;
+			SkipNode<T> curr = null;
+			for (int level = MAX_LEVEL; level >= 0; level--) {
+				curr = pred.next[level].getReference();
+				while (true) {
+					SkipNode<T> succ = curr.next[level].get(marked);
+					while (marked[0]) {
+						// curr is being removed, try to unlink it
+						if (!pred.next[level].compareAndSet(curr, succ, false,
+								false))
+							continue retry;
+						curr = pred.next[level].getReference();
+						succ = curr.next[level].get(marked);
+					}
+					if (less(curr, key)) {
+						pred = curr;
+						curr = succ;
+					} else {
+						break;
+					}
+				}
+				preds[level] = pred;
+				succs[level] = curr;
+			}
+			return matches(curr, key);
+		}
+	}
+
+	/**
+	 * searches the list for a key, wait-free
+	 *
+	 * @param key
+	 *            key to find
+	 * @return true if the key is in the list
+	 */
+	public boolean search(T key) {
+		boolean[] marked = { false };
+		SkipNode<T> pred = head;
+		SkipNode<T> curr = null;
+		for (int level = MAX_LEVEL; level >= 0; level--) {
+			curr = pred.next[level].getReference();
+			while (true) {
+				SkipNode<T> succ = curr.next[level].get(marked);
+				while (marked[0]) {
+					curr = succ;
+					succ = curr.next[level].get(marked);
+				}
+				if (less(curr, key)) {
+					pred = curr;
+					curr = succ;
+				} else {
+					break;
+				}
+			}
+		}
+		return matches(curr, key);
+	}
+
+	/**
+	 * inserts a key into the list, expected O(log(n))
+	 *
+	 * @param key
+	 *            key to add
+	 * @return false if the key was already present
+	 */
+	public boolean insert(T key) {
+		int topLevel = randomLevel();
+		SkipNode<T>[] preds = newArray();
+		SkipNode<T>[] succs = newArray();
+		while (true) {
+			if (find(key, preds, succs))
+				return false;
+			SkipNode<T> node = new SkipNode<T>(key, topLevel);
+			for (int level = 0; level <= topLevel; level++) {
+				node.next[level].set(succs[level], false);
+			}
+			// linking the bottom level makes the key visible
+			if (!preds[0].next[0].compareAndSet(succs[0], node, false, false))
+				continue;
+			count.incrementAndGet();
+			for (int level = 1; level <= topLevel; level++) {
+				while (true) {
+					SkipNode<T> succ = succs[level];
+					SkipNode<T> old = node.next[level].getReference();
+					// the node is already being removed, stop linking it
+					if (old != succ
+							&& !node.next[level].compareAndSet(old, succ,
+									false, false))
+						return true;
+					if (preds[level].next[level].compareAndSet(succ, node,
+							false, false))
+						break;
+					if (!find(key, preds, succs) || succs[0] != node)
+						return true;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * removes a key from the list, expected O(log(n))
+	 *
+	 * @param key
+	 *            key to remove
+	 * @return true if this call removed the key
+	 */
+	public boolean remove(T key) {
+		SkipNode<T>[] preds = newArray();
+		SkipNode<T>[] succs = newArray();
+		boolean[] marked = { false };
+		if (!find(key, preds, succs))
+			return false;
+		SkipNode<T> victim = succs[0];
+		// mark the upper levels top down
+		for (int level = victim.topLevel; level >= 1; level--) {
+			SkipNode<T> succ = victim.next[level].get(marked);
+			while (!marked[0]) {
+				victim.next[level].compareAndSet(succ, succ, false, true);
+				succ = victim.next[level].get(marked);
+			}
+		}
+		// marking the bottom level decides which thread removed the key
+		SkipNode<T> succ = victim.next[0].get(marked);
+		while (true) {
+			boolean iMarkedIt = victim.next[0].compareAndSet(succ, succ,
+					false, true);
+			succ = victim.next[0].get(marked);
+			if (iMarkedIt) {
+				count.decrementAndGet();
+				// unlink it
+				find(key, preds, succs);
+				return true;
+			} else if (marked[0]) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Returns sorted list of keys greater than key. Size of list will not
+	 * exceed maxReturned
+	 *
+	 * @param key
+	 *            Key to search for
+	 * @param maxReturned
+	 *            Maximum number of results to return
+	 * @return List of keys greater than key. List may not exceed maxReturned
+	 */
+	public List<T> getGreaterThan(T key, int maxReturned) {
+		List<T> list = new ArrayList<T>();
+		SkipNode<T> curr = firstNotLess(key);
+		while (curr != tail && list.size() < maxReturned) {
+			if (!isRemoved(curr) && curr.key.compareTo(key) > 0)
+				list.add(curr.key);
+			curr = curr.next[0].getReference();
+		}
+		return list;
+	}
+
+	/**
+	 * @param lo
+	 *            smallest key to return, inclusive
+	 * @param hi
+	 *            largest key to return, inclusive
+	 * @return sorted list of the keys in [lo, hi]
+	 */
+	public List<T> getRange(T lo, T hi) {
+		List<T> list = new ArrayList<T>();
+		SkipNode<T> curr = firstNotLess(lo);
+		while (curr != tail && curr.key.compareTo(hi) <= 0) {
+			if (!isRemoved(curr))
+				list.add(curr.key);
+			curr = curr.next[0].getReference();
+		}
+		return list;
+	}
+
+	// The first bottom level node whose key is >= key, possibly marked.
+	private SkipNode<T> firstNotLess(T key) {
+		SkipNode<T> pred = head;
+		SkipNode<T> curr = null;
+		for (int level = MAX_LEVEL; level >= 0; level--) {
+			curr = pred.next[level].getReference();
+			while (less(curr, key)) {
+				pred = curr;
+				curr = curr.next[level].getReference();
+			}
+		}
+		return curr;
+	}
+
+	private boolean isRemoved(SkipNode<T> node) {
+		return node.next[0].isMarked();
+	}
+
+	/**
+	 * @return the number of keys, exact when no update is in flight
+	 */
+	public int size() {
+		return count.get();
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		SkipNode<T> curr = head.next[0].getReference();
+		while (curr != tail) {
+			if (!isRemoved(curr))
+				sb.append(curr.key).append(',');
+			curr = curr.next[0].getReference();
+		}
+		if (sb.length() > 1)
+			sb.setLength(sb.length() - 1);
+		return sb.append(']').toString();
+	}
+
+	// geometric distribution with p = 1/2
+	private static int randomLevel() {
+		int r = ThreadLocalRandom.current().nextInt();
+		return Math.min(Integer.numberOfTrailingZeros(r | (1 << MAX_LEVEL)),
+				MAX_LEVEL);
+	}
+
+	@SuppressWarnings("unchecked")
+	private SkipNode<T>[] newArray() {
+		return (SkipNode<T>[]) new SkipNode<?>[MAX_LEVEL + 1];
+	}
+}
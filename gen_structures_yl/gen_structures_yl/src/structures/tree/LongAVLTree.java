@@ -0,0 +1,262 @@
+package structures.tree;
+
+import java.util.Arrays;
+
+/**
+ * An AVL tree of primitive long keys with the operations of {@link AVLTree}.
+ * As in {@link LongRedBlackTree}, node i is the i-th slot of a few parallel
+ * arrays and links are int indexes into them, so there is no boxing and no
+ * object per node. There are no parent links: insert and delete remember the
+ * path they walked down and retrace it. Per key that is 17 bytes (key, two
+ * links and the height). Slots of deleted keys are kept on a free list and
+ * reused.
+ *
+ * Like {@link AVLTree} a key is stored at most once.
+ */
+public class LongAVLTree {
+	// slot 0 is the nil sentinel, of height 0
+	private static final int NIL = 0;
+	// an AVL tree of 2^31 keys is less than 46 high
+	private static final int MAX_HEIGHT = 64;
+
+	private long[] keys;
+	private int[] left;
+	private int[] right;
+	// a leaf has height 1
+	private byte[] height;
+
+	private int root = NIL;
+	// head of the free slots, chained through left
+	private int free = NIL;
+	// slots ever handed out, including nil
+	private int used = 1;
+	private int size;
+	// the nodes insert and delete walked through, root first
+	private final int[] path = new int[MAX_HEIGHT];
+
+	public LongAVLTree() {
+		this(16);
+	}
+
+	/**
+	 * @param capacity
+	 *            number of keys the tree can hold before its arrays grow
+	 */
+	public LongAVLTree(int capacity) {
+		int length = Math.max(capacity, 1) + 1;
+		keys = new long[length];
+		left = new int[length];
+		right = new int[length];
+		height = new byte[length];
+	}
+
+	private int allocate(long key) {
+		int node;
+		if (free != NIL) {
+			node = free;
+			free = left[node];
+		} else {
+			if (used == keys.length)
+				grow();
+			node = used++;
+		}
+		keys[node] = key;
+		left[node] = NIL;
+		right[node] = NIL;
+		height[node] = 1;
+		return node;
+	}
+
+	private void release(int node) {
+		left[node] = free;
+		right[node] = NIL;
+		height[node] = 0;
+		free = node;
+	}
+
+	private void grow() {
+		int length = keys.length + (keys.length >> 1) + 1;
+		keys = Arrays.copyOf(keys, length);
+		left = Arrays.copyOf(left, length);
+		right = Arrays.copyOf(right, length);
+		height = Arrays.copyOf(height, length);
+	}
+
+	private void updateHeight(int node) {
+		height[node] = (byte) (Math.max(height[left[node]], height[right[node]]) + 1);
+	}
+
+	// @return: the new root of the subtree
+	private int rotateRight(int node) {
+		int top = left[node];
+		left[node] = right[top];
+		right[top] = node;
+		updateHeight(node);
+		updateHeight(top);
+		return top;
+	}
+
+	// @return: the new root of the subtree
+	private int rotateLeft(int node) {
+		int top = right[node];
+		right[node] = left[top];
+		left[top] = node;
+		updateHeight(node);
+		updateHeight(top);
+		return top;
+	}
+
+	// @return: the root of node's subtree once it is balanced again
+	private int rebalance(int node) {
+		int balance = height[left[node]] - height[right[node]];
+		if (balance > 1) {
+			if (height[right[left[node]]] > height[left[left[node]]])
+				left[node] = rotateLeft(left[node]);
+			return rotateRight(node);
+		} else if (balance < -1) {
+			if (height[left[right[node]]] > height[right[right[node]]])
+				right[node] = rotateRight(right[node]);
+			return rotateLeft(node);
+		}
+		updateHeight(node);
+		return node;
+	}
+
+	// Rebalances the nodes path[depth - 1] up to the root. Stops at the first
+	// subtree whose height did not change, nothing above it changed either.
+	private void retrace(int depth) {
+		for (int i = depth - 1; i >= 0; i--) {
+			int node = path[i];
+			int before = height[node];
+			int top = rebalance(node);
+			if (top != node) {
+				if (i == 0)
+					root = top;
+				else if (left[path[i - 1]] == node)
+					left[path[i - 1]] = top;
+				else
+					right[path[i - 1]] = top;
+			}
+			if (height[top] == before)
+				return;
+		}
+	}
+
+	/**
+	 * inserts a key takes O(log(n))
+	 *
+	 * @param key
+	 * @return false if key was already present
+	 */
+	public boolean insert(long key) {
+		int depth = 0;
+		int current = root;
+		while (current != NIL) {
+			if (key == keys[current])
+				return false;
+			path[depth++] = current;
+			current = key < keys[current] ? left[current] : right[current];
+		}
+		int node = allocate(key);
+		if (depth == 0)
+			root = node;
+		else if (key < keys[path[depth - 1]])
+			left[path[depth - 1]] = node;
+		else
+			right[path[depth - 1]] = node;
+		size++;
+		retrace(depth);
+		return true;
+	}
+
+	/**
+	 * deletes a key takes O(log(n))
+	 *
+	 * @param key
+	 * @return true if key was present
+	 */
+	public boolean delete(long key) {
+		int depth = 0;
+		int node = root;
+		while (node != NIL && keys[node] != key) {
+			path[depth++] = node;
+			node = key < keys[node] ? left[node] : right[node];
+		}
+		if (node == NIL)
+			return false;
+		if (left[node] != NIL && right[node] != NIL) {
+			// the successor's key moves up and its slot is unlinked instead
+			path[depth++] = node;
+			int successor = right[node];
+			while (left[successor] != NIL) {
+				path[depth++] = successor;
+				successor = left[successor];
+			}
+			keys[node] = keys[successor];
+			node = successor;
+		}
+		int child = left[node] != NIL ? left[node] : right[node];
+		if (depth == 0)
+			root = child;
+		else if (left[path[depth - 1]] == node)
+			left[path[depth - 1]] = child;
+		else
+			right[path[depth - 1]] = child;
+		release(node);
+		size--;
+		retrace(depth);
+		return true;
+	}
+
+	/**
+	 * searches the tree for a key takes O(log(n))
+	 *
+	 * @param key
+	 * @return true if key is in the tree
+	 */
+	public boolean search(long key) {
+		int current = root;
+		while (current != NIL) {
+			if (key == keys[current])
+				return true;
+			current = key < keys[current] ? left[current] : right[current];
+		}
+		return false;
+	}
+
+	/**
+	 * @return the number of keys in the tree
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return root == NIL;
+	}
+
+	/**
+	 * @return the number of keys the tree can hold before its arrays grow;
+	 *         slots freed by delete count, as insert reuses them
+	 */
+	public int capacity() {
+		return keys.length - 1;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		int[] stack = new int[MAX_HEIGHT];
+		int depth = 0;
+		int node = root;
+		while (node != NIL || depth > 0) {
+			for (; node != NIL; node = left[node])
+				stack[depth++] = node;
+			node = stack[--depth];
+			sb.append(keys[node]).append(',');
+			node = right[node];
+		}
+		if (root != NIL)
+			sb.setLength(sb.length() - 1);
+		return sb.append(']').toString();
+	}
+}
@@ -0,0 +1,470 @@
+package structures.tree;
+
+import java.util.Arrays;
+
+/**
+ * A red-black tree of primitive long keys with the operations of
+ * {@link RedBlackTree}. Instead of one object per node, node i is the i-th
+ * slot of a few parallel arrays, and links are int indexes into them. Per key
+ * that is 24 bytes (key, three links and a word packing the color bit with the
+ * subtree size) and no object header, no boxing and no pointer chasing across
+ * the heap. Slots of removed keys are kept on a free list and reused.
+ *
+ * Like {@link RedBlackTree} every node knows the size of its subtree, so
+ * numGreater and numSmaller take O(log(n)). Unlike it, a key is stored at most
+ * once.
+ */
+public class LongRedBlackTree {
+	// slot 0 is the nil sentinel: black, size 0
+	private static final int NIL = 0;
+	private static final int RED = 0x80000000;
+	private static final int SIZE = 0x7fffffff;
+
+	private long[] keys;
+	private int[] left;
+	private int[] right;
+	private int[] parent;
+	// color in the sign bit, subtree size in the other 31 bits
+	private int[] sizeColor;
+
+	private int root = NIL;
+	// head of the free slots, chained through left
+	private int free = NIL;
+	// slots ever handed out, including nil
+	private int used = 1;
+
+	public LongRedBlackTree() {
+		this(16);
+	}
+
+	/**
+	 * @param capacity
+	 *            number of keys the tree can hold before its arrays grow
+	 */
+	public LongRedBlackTree(int capacity) {
+		int length = Math.max(capacity, 1) + 1;
+		keys = new long[length];
+		left = new int[length];
+		right = new int[length];
+		parent = new int[length];
+		sizeColor = new int[length];
+	}
+
+	private int size(int node) {
+		return sizeColor[node] & SIZE;
+	}
+
+	private void setSize(int node, int size) {
+		sizeColor[node] = (sizeColor[node] & RED) | size;
+	}
+
+	private boolean isRed(int node) {
+		return sizeColor[node] < 0;
+	}
+
+	private void setRed(int node) {
+		sizeColor[node] |= RED;
+	}
+
+	private void setBlack(int node) {
+		sizeColor[node] &= SIZE;
+	}
+
+	private void copyColor(int from, int to) {
+		sizeColor[to] = (sizeColor[from] & RED) | size(to);
+	}
+
+	private int allocate(long key) {
+		int node;
+		if (free != NIL) {
+			node = free;
+			free = left[node];
+		} else {
+			if (used == keys.length)
+				grow();
+			node = used++;
+		}
+		keys[node] = key;
+		left[node] = NIL;
+		right[node] = NIL;
+		parent[node] = NIL;
+		sizeColor[node] = RED | 1;
+		return node;
+	}
+
+	private void release(int node) {
+		left[node] = free;
+		right[node] = NIL;
+		parent[node] = NIL;
+		sizeColor[node] = 0;
+		free = node;
+	}
+
+	private void grow() {
+		int length = keys.length + (keys.length >> 1) + 1;
+		keys = Arrays.copyOf(keys, length);
+		left = Arrays.copyOf(left, length);
+		right = Arrays.copyOf(right, length);
+		parent = Arrays.copyOf(parent, length);
+		sizeColor = Arrays.copyOf(sizeColor, length);
+	}
+
+	// @param: x, the node which the leftRotate is to be performed on.
+	private void leftRotate(int x) {
+		int y = right[x];
+		right[x] = left[y];
+		if (left[y] != NIL)
+			parent[left[y]] = x;
+		parent[y] = parent[x];
+		if (parent[x] == NIL)
+			root = y;
+		else if (left[parent[x]] == x)
+			left[parent[x]] = y;
+		else
+			right[parent[x]] = y;
+		left[y] = x;
+		parent[x] = y;
+		// y takes over x's subtree, x keeps what is left of it
+		setSize(y, size(x));
+		setSize(x, size(left[x]) + size(right[x]) + 1);
+	}
+
+	// @param: y, the node which the rightRotate is to be performed on.
+	private void rightRotate(int y) {
+		int x = left[y];
+		left[y] = right[x];
+		if (right[x] != NIL)
+			parent[right[x]] = y;
+		parent[x] = parent[y];
+		if (parent[y] == NIL)
+			root = x;
+		else if (right[parent[y]] == y)
+			right[parent[y]] = x;
+		else
+			left[parent[y]] = x;
+		right[x] = y;
+		parent[y] = x;
+		setSize(x, size(y));
+		setSize(y, size(left[y]) + size(right[y]) + 1);
+	}
+
+	/**
+	 * inserts a key takes O(log(n))
+	 *
+	 * @param key
+	 * @return false if key was already present
+	 */
+	public boolean insert(long key) {
+		int y = NIL;
+		int x = root;
+		while (x != NIL) {
+			y = x;
+			if (key == keys[x])
+				return false;
+			x = key < keys[x] ? left[x] : right[x];
+		}
+		int z = allocate(key);
+		parent[z] = y;
+		if (y == NIL)
+			root = z;
+		else if (key < keys[y])
+			left[y] = z;
+		else
+			right[y] = z;
+		for (int p = y; p != NIL; p = parent[p]) {
+			setSize(p, size(p) + 1);
+		}
+		insertFixup(z);
+		return true;
+	}
+
+	private void insertFixup(int z) {
+		while (isRed(parent[z])) {
+			int p = parent[z];
+			int g = parent[p];
+			if (p == left[g]) {
+				int y = right[g];
+				// Case 1: uncle is red, recolor
+				if (isRed(y)) {
+					setBlack(p);
+					setBlack(y);
+					setRed(g);
+					z = g;
+				} else {
+					// Case 2: z is a right child, rotate it to the left
+					if (z == right[p]) {
+						z = p;
+						leftRotate(z);
+						p = parent[z];
+					}
+					// Case 3: recolor and rotate around the grandparent
+					setBlack(p);
+					setRed(g);
+					rightRotate(g);
+				}
+			} else {
+				int y = left[g];
+				if (isRed(y)) {
+					setBlack(p);
+					setBlack(y);
+					setRed(g);
+					z = g;
+				} else {
+					if (z == left[p]) {
+						z = p;
+						rightRotate(z);
+						p = parent[z];
+					}
+					setBlack(p);
+					setRed(g);
+					leftRotate(g);
+				}
+			}
+		}
+		setBlack(root);
+	}
+
+	/**
+	 * removes a key takes O(log(n))
+	 *
+	 * @param key
+	 * @return true if key was present
+	 */
+	public boolean remove(long key) {
+		int z = find(key);
+		if (z == NIL)
+			return false;
+		int y = z;
+		boolean yWasRed = isRed(y);
+		int x;
+		if (left[z] == NIL || right[z] == NIL) {
+			decrementPath(parent[z]);
+			x = left[z] == NIL ? right[z] : left[z];
+			transplant(z, x);
+		} else {
+			// z's successor takes its place
+			y = right[z];
+			while (left[y] != NIL)
+				y = left[y];
+			yWasRed = isRed(y);
+			decrementPath(parent[y]);
+			x = right[y];
+			if (parent[y] == z) {
+				parent[x] = y;
+			} else {
+				transplant(y, x);
+				right[y] = right[z];
+				parent[right[y]] = y;
+			}
+			transplant(z, y);
+			left[y] = left[z];
+			parent[left[y]] = y;
+			copyColor(z, y);
+			setSize(y, size(z));
+		}
+		release(z);
+		if (!yWasRed)
+			removeFixup(x);
+		return true;
+	}
+
+	// one key less below every node from node up to the root
+	private void decrementPath(int node) {
+		for (; node != NIL; node = parent[node]) {
+			setSize(node, size(node) - 1);
+		}
+	}
+
+	// replaces the subtree rooted at u with the one rooted at v
+	private void transplant(int u, int v) {
+		if (parent[u] == NIL)
+			root = v;
+		else if (u == left[parent[u]])
+			left[parent[u]] = v;
+		else
+			right[parent[u]] = v;
+		parent[v] = parent[u];
+	}
+
+	private void removeFixup(int x) {
+		while (x != root && !isRed(x)) {
+			if (x == left[parent[x]]) {
+				int w = right[parent[x]];
+				// Case 1, w is red
+				if (isRed(w)) {
+					setBlack(w);
+					setRed(parent[x]);
+					leftRotate(parent[x]);
+					w = right[parent[x]];
+				}
+				// Case 2, both of w's children are black
+				if (!isRed(left[w]) && !isRed(right[w])) {
+					setRed(w);
+					x = parent[x];
+				} else {
+					// Case 3, w's right child is black
+					if (!isRed(right[w])) {
+						setBlack(left[w]);
+						setRed(w);
+						rightRotate(w);
+						w = right[parent[x]];
+					}
+					// Case 4, w's right child is red
+					copyColor(parent[x], w);
+					setBlack(parent[x]);
+					setBlack(right[w]);
+					leftRotate(parent[x]);
+					x = root;
+				}
+			} else {
+				int w = left[parent[x]];
+				if (isRed(w)) {
+					setBlack(w);
+					setRed(parent[x]);
+					rightRotate(parent[x]);
+					w = left[parent[x]];
+				}
+				if (!isRed(right[w]) && !isRed(left[w])) {
+					setRed(w);
+					x = parent[x];
+				} else {
+					if (!isRed(left[w])) {
+						setBlack(right[w]);
+						setRed(w);
+						leftRotate(w);
+						w = left[parent[x]];
+					}
+					copyColor(parent[x], w);
+					setBlack(parent[x]);
+					setBlack(left[w]);
+					rightRotate(parent[x]);
+					x = root;
+				}
+			}
+		}
+		setBlack(x);
+	}
+
+	private int find(long key) {
+		int current = root;
+		while (current != NIL && keys[current] != key) {
+			current = key < keys[current] ? left[current] : right[current];
+		}
+		return current;
+	}
+
+	/**
+	 * @param key
+	 * @return true if key is in the tree
+	 */
+	public boolean search(long key) {
+		return find(key) != NIL;
+	}
+
+	/**
+	 * @param key
+	 * @return the number of keys greater than key
+	 */
+	public int numGreater(long key) {
+		int count = 0;
+		int current = root;
+		while (current != NIL) {
+			if (key < keys[current]) {
+				count += 1 + size(right[current]);
+				current = left[current];
+			} else {
+				current = right[current];
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @param key
+	 * @return the number of keys smaller than key
+	 */
+	public int numSmaller(long key) {
+		int count = 0;
+		int current = root;
+		while (current != NIL) {
+			if (key <= keys[current]) {
+				current = left[current];
+			} else {
+				count += 1 + size(left[current]);
+				current = right[current];
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the keys greater than key in ascending order, at most
+	 * maxReturned of them.
+	 *
+	 * @param key
+	 * @param maxReturned
+	 *            Maximum number of results to return, none if it is not
+	 *            positive
+	 * @return sorted keys greater than key
+	 */
+	public long[] getGreaterThan(long key, int maxReturned) {
+		long[] result = new long[Math.max(0,
+				Math.min(maxReturned, numGreater(key)))];
+		// the smallest key greater than key
+		int node = NIL;
+		int current = root;
+		while (current != NIL) {
+			if (key < keys[current]) {
+				node = current;
+				current = left[current];
+			} else {
+				current = right[current];
+			}
+		}
+		for (int i = 0; i < result.length; i++) {
+			result[i] = keys[node];
+			node = successor(node);
+		}
+		return result;
+	}
+
+	private int successor(int node) {
+		if (right[node] != NIL) {
+			node = right[node];
+			while (left[node] != NIL)
+				node = left[node];
+			return node;
+		}
+		int p = parent[node];
+		while (p != NIL && node == right[p]) {
+			node = p;
+			p = parent[p];
+		}
+		return p;
+	}
+
+	/**
+	 * @return the number of keys in the tree
+	 */
+	public int size() {
+		return size(root);
+	}
+
+	public boolean isEmpty() {
+		return root == NIL;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		if (root != NIL) {
+			int node = root;
+			while (left[node] != NIL)
+				node = left[node];
+			for (; node != NIL; node = successor(node)) {
+				sb.append(keys[node]).append(',');
+			}
+			sb.setLength(sb.length() - 1);
+		}
+		return sb.append(']').toString();
+	}
+}
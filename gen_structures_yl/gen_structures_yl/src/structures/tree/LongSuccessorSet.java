@@ -0,0 +1,153 @@
+package structures.tree;
+
+import java.util.NoSuchElementException;
+import java.util.function.LongConsumer;
+
+/**
+ * A set of primitive long keys built for successor and predecessor queries:
+ * a trie with 64 children per node whose nodes are bitmaps, 11 levels deep
+ * for 64 bits of key, so a query takes at most 11 steps down to the end of
+ * the key's path and 11 more to the answer, however many keys there are.
+ * {@link LongRedBlackTree} needs about log2(n) dependent steps instead, 20 at
+ * a million keys. A run of keys that are close together shares its upper
+ * nodes and ends in leaves that hold 64 keys in a single long.
+ *
+ * higher, lower, ceiling and floor replace the greater-than walks of the
+ * trees; getGreaterThan is kept with the same meaning as in
+ * {@link LongRedBlackTree}.
+ *
+ * Memory follows how the keys cluster: about 2 bytes per key when most
+ * leaves are well filled, but several small nodes per key when the keys are
+ * spread thinly across the range.
+ *
+ * A key is stored at most once.
+ */
+public class LongSuccessorSet {
+	private final SuccessorTrie trie = new SuccessorTrie(Long.SIZE);
+
+	// The trie orders keys as unsigned, flipping the sign bit makes that
+	// signed order. The same function maps them back.
+	private static long flip(long key) {
+		return key ^ Long.MIN_VALUE;
+	}
+
+	/**
+	 * @return false if key was already present
+	 */
+	public boolean insert(long key) {
+		return trie.add(flip(key));
+	}
+
+	/**
+	 * @return true if key was present
+	 */
+	public boolean remove(long key) {
+		return trie.remove(flip(key));
+	}
+
+	/**
+	 * @return true if key is in the set
+	 */
+	public boolean search(long key) {
+		return trie.contains(flip(key));
+	}
+
+	/**
+	 * @return the smallest key greater than key
+	 * @throws NoSuchElementException
+	 *             if there is none
+	 */
+	public long higher(long key) {
+		return flip(trie.next(flip(key), false));
+	}
+
+	/**
+	 * @return the smallest key greater than or equal to key
+	 * @throws NoSuchElementException
+	 *             if there is none
+	 */
+	public long ceiling(long key) {
+		return flip(trie.next(flip(key), true));
+	}
+
+	/**
+	 * @return the greatest key smaller than key
+	 * @throws NoSuchElementException
+	 *             if there is none
+	 */
+	public long lower(long key) {
+		return flip(trie.previous(flip(key), false));
+	}
+
+	/**
+	 * @return the greatest key smaller than or equal to key
+	 * @throws NoSuchElementException
+	 *             if there is none
+	 */
+	public long floor(long key) {
+		return flip(trie.previous(flip(key), true));
+	}
+
+	/**
+	 * @throws NoSuchElementException
+	 *             if the set is empty
+	 */
+	public long first() {
+		return flip(trie.first());
+	}
+
+	/**
+	 * @throws NoSuchElementException
+	 *             if the set is empty
+	 */
+	public long last() {
+		return flip(trie.last());
+	}
+
+	/**
+	 * Returns the keys greater than key in ascending order, at most
+	 * maxReturned of them.
+	 *
+	 * @param key
+	 * @param maxReturned
+	 *            Maximum number of results to return, none if it is not
+	 *            positive
+	 * @return sorted keys greater than key
+	 */
+	public long[] getGreaterThan(long key, int maxReturned) {
+		long[] result = trie.greater(flip(key), maxReturned);
+		for (int i = 0; i < result.length; i++)
+			result[i] = flip(result[i]);
+		return result;
+	}
+
+	/**
+	 * @return the number of keys in the set
+	 */
+	public int size() {
+		return trie.size();
+	}
+
+	public boolean isEmpty() {
+		return trie.size() == 0;
+	}
+
+	public void clear() {
+		trie.clear();
+	}
+
+	/**
+	 * Passes the keys to action in increasing order. O(n)
+	 */
+	public void forEach(LongConsumer action) {
+		trie.forEach(key -> action.accept(flip(key)));
+	}
+
+	public String toString() {
+		final StringBuilder sb = new StringBuilder("[");
+		forEach(key -> sb.append(key).append(','));
+		if (!isEmpty())
+			sb.setLength(sb.length() - 1);
+		return sb.append(']').toString();
+	}
+}
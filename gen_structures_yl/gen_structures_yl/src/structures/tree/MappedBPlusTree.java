@@ -0,0 +1,762 @@
+package structures.tree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A B+ tree set stored in a file of fixed-size pages, read through memory
+ * mapped segments. Only the pages that are used are decoded, and at most
+ * cachePages of them are kept on the heap (least recently used are evicted),
+ * so the index can be far larger than the heap.
+ *
+ * Updates are copy-on-write: a page of the last commit is never overwritten. insert
+ * and remove copy the touched path into fresh pages of the file, which
+ * stay in memory until commit. commit writes them, forces them to disk
+ * and only then writes the new root into one of the two meta pages, which
+ * alternate and carry a checksum. A crash at any point therefore leaves the
+ * last committed tree intact; uncommitted changes are lost. Pages replaced by
+ * a commit are overwritten again from the commit after it on, as no durable
+ * tree refers to them any more. That free list lives in memory only, pages
+ * freed before the file was reopened are not reused.
+ *
+ * Inner nodes store the number of keys below each child, which gives the
+ * numGreater and numSmaller operations of {@link RedBlackTree} in O(log(n)).
+ * There are no sibling links (they cannot survive copy-on-write), range scans
+ * descend from the root instead.
+ *
+ * Keys are ordered by their compareTo. Unlike the heap trees this class takes
+ * no Comparator, as the file does not record one and a reopened tree could
+ * not tell which order its pages were written in.
+ *
+ * This class is not thread safe.
+ *
+ * @param <T>
+ */
+public class MappedBPlusTree<T extends Comparable<T>> implements Closeable {
+	public static final int DEFAULT_PAGE_SIZE = 4096;
+	public static final int DEFAULT_CACHE_PAGES = 1024;
+
+	private static final int MAGIC = 0x42505431;
+	private static final int FORMAT = 1;
+	private static final int META_SIZE = 56;
+	// the largest page size, also where the probe for a torn meta page stops
+	private static final int MAX_PAGE_SIZE = 1 << 24;
+	// mapped at a time; a multiple of every page size, so no page straddles
+	// two segments
+	private static final long SEGMENT_SIZE = 4L * MAX_PAGE_SIZE;
+	private static final byte LEAF = 0;
+	private static final byte INNER = 1;
+	// type byte and key count of a node page
+	private static final int NODE_HEADER = 5;
+	// child page and child count of an inner node
+	private static final int CHILD_ENTRY = 16;
+
+	private final FileChannel channel;
+	private final KeyCodec<T> codec;
+	private final int pageSize;
+	private final int maxKeySize;
+	private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+
+	// pages created since the last commit, never evicted
+	private final Map<Long, DNode<T>> dirty = new HashMap<Long, DNode<T>>();
+	private final LinkedHashMap<Long, DNode<T>> cache;
+
+	// state of the last commit
+	private long txId;
+	private long committedRoot;
+	private long committedCount;
+	private long committedPages;
+	private List<Long> committedReusable = new ArrayList<Long>();
+
+	// working state
+	private long rootPage;
+	private long count;
+	private long nextPage;
+	// pages no durable tree refers to, free to overwrite
+	private List<Long> reusable = new ArrayList<Long>();
+	// committed pages the working tree replaced, reusable after the commit
+	private final List<Long> freed = new ArrayList<Long>();
+
+	// filled in when a node splits
+	private T splitKey;
+	private DNode<T> splitNode;
+
+	static final class DNode<T> {
+		long page;
+		boolean leaf;
+		boolean dirty;
+		int n;
+		Object[] keys;
+		// inner nodes only: n + 1 child pages and their key counts
+		long[] children;
+		long[] counts;
+
+		DNode(boolean leaf, int capacity) {
+			this.leaf = leaf;
+			keys = new Object[capacity];
+			if (!leaf) {
+				children = new long[capacity + 1];
+				counts = new long[capacity + 1];
+			}
+		}
+
+		DNode<T> copy() {
+			DNode<T> c = new DNode<T>(leaf, 0);
+			c.n = n;
+			c.keys = Arrays.copyOf(keys, Math.max(n + 1, 4));
+			if (!leaf) {
+				c.children = Arrays.copyOf(children, c.keys.length + 1);
+				c.counts = Arrays.copyOf(counts, c.keys.length + 1);
+			}
+			return c;
+		}
+
+		@SuppressWarnings("unchecked")
+		T key(int i) {
+			return (T) keys[i];
+		}
+
+		long total() {
+			if (leaf)
+				return n;
+			long sum = 0;
+			for (int i = 0; i <= n; i++) {
+				sum += counts[i];
+			}
+			return sum;
+		}
+
+		// makes room for one more key (and child)
+		void ensureCapacity() {
+			if (n + 1 > keys.length) {
+				keys = Arrays.copyOf(keys, keys.length * 2);
+				if (!leaf) {
+					children = Arrays.copyOf(children, keys.length + 1);
+					counts = Arrays.copyOf(counts, keys.length + 1);
+				}
+			}
+		}
+	}
+
+	public MappedBPlusTree(Path file, KeyCodec<T> codec) throws IOException {
+		this(file, codec, DEFAULT_PAGE_SIZE, DEFAULT_CACHE_PAGES);
+	}
+
+	/**
+	 * Opens the tree stored in file, creating the file if it does not exist.
+	 * An existing file keeps the page size it was created with.
+	 *
+	 * @param file
+	 *            the index file
+	 * @param codec
+	 *            converts keys to and from bytes
+	 * @param pageSize
+	 *            page size for a new file, a power of two from 512 to 2^24
+	 * @param cachePages
+	 *            how many decoded pages to keep on the heap
+	 */
+	public MappedBPlusTree(Path file, KeyCodec<T> codec, int pageSize,
+			final int cachePages) throws IOException {
+		if (!isValidPageSize(pageSize)) {
+			throw new IllegalArgumentException(
+					"page size should be a power of two from 512 to "
+							+ MAX_PAGE_SIZE + ", but " + pageSize);
+		}
+		this.codec = codec;
+		this.cache = new LinkedHashMap<Long, DNode<T>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<Long, DNode<T>> eldest) {
+				return size() > cachePages;
+			}
+		};
+		channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			if (channel.size() == 0) {
+				this.pageSize = pageSize;
+				createEmpty();
+			} else {
+				this.pageSize = readMeta();
+			}
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		maxKeySize = this.pageSize / 8;
+	}
+
+	private void createEmpty() throws IOException {
+		DNode<T> root = new DNode<T>(true, 4);
+		root.page = 2;
+		root.dirty = true;
+		dirty.put(root.page, root);
+		rootPage = root.page;
+		count = 0;
+		nextPage = 3;
+		txId = 0;
+		commit();
+	}
+
+	// returns the page size recorded in the newest valid meta page
+	private int readMeta() throws IOException {
+		ByteBuffer best = null;
+		for (int slot = 0; slot < 2; slot++) {
+			ByteBuffer meta = ByteBuffer.allocate(META_SIZE);
+			channel.read(meta, (long) slot * metaPageSize(slot, best));
+			meta.flip();
+			if (isValidMeta(meta)
+					&& (best == null || meta.getLong(16) > best.getLong(16)))
+				best = meta;
+		}
+		if (best == null)
+			throw new IOException("no valid meta page, not a tree file");
+		txId = best.getLong(16);
+		committedRoot = rootPage = best.getLong(24);
+		committedCount = count = best.getLong(32);
+		committedPages = nextPage = best.getLong(40);
+		return best.getInt(8);
+	}
+
+	// the second meta page sits one page after the first
+	private long metaPageSize(int slot, ByteBuffer first) throws IOException {
+		if (slot == 0)
+			return 0;
+		if (first != null)
+			return first.getInt(8);
+		// the first meta page is torn, find the page size by probing
+		for (int size = 512; size <= MAX_PAGE_SIZE; size <<= 1) {
+			ByteBuffer meta = ByteBuffer.allocate(META_SIZE);
+			channel.read(meta, size);
+			meta.flip();
+			if (isValidMeta(meta) && meta.getInt(8) == size)
+				return size;
+		}
+		return 512;
+	}
+
+	private static boolean isValidPageSize(int pageSize) {
+		return pageSize >= 512 && pageSize <= MAX_PAGE_SIZE
+				&& Integer.bitCount(pageSize) == 1;
+	}
+
+	private static boolean isValidMeta(ByteBuffer meta) {
+		if (meta.limit() < META_SIZE || meta.getInt(0) != MAGIC
+				|| meta.getInt(4) != FORMAT || !isValidPageSize(meta.getInt(8)))
+			return false;
+		CRC32 crc = new CRC32();
+		crc.update(meta.array(), 0, META_SIZE - 8);
+		return crc.getValue() == meta.getLong(META_SIZE - 8);
+	}
+
+	/**
+	 * Makes every change since the last commit durable. The new pages are
+	 * forced to disk before the meta page that points at them is written.
+	 */
+	public void commit() throws IOException {
+		if (dirty.isEmpty() && rootPage == committedRoot)
+			return;
+		ByteBuffer page = ByteBuffer.allocate(pageSize);
+		for (DNode<T> node : dirty.values()) {
+			page.clear();
+			encode(node, page);
+			page.clear();
+			while (page.hasRemaining()) {
+				channel.write(page, node.page * pageSize + page.position());
+			}
+		}
+		channel.force(false);
+
+		txId++;
+		ByteBuffer meta = ByteBuffer.allocate(META_SIZE);
+		meta.putInt(MAGIC).putInt(FORMAT).putInt(pageSize).putInt(0);
+		meta.putLong(txId).putLong(rootPage).putLong(count).putLong(nextPage);
+		CRC32 crc = new CRC32();
+		crc.update(meta.array(), 0, META_SIZE - 8);
+		meta.putLong(crc.getValue());
+		meta.flip();
+		long slot = txId % 2;
+		while (meta.hasRemaining()) {
+			channel.write(meta, slot * pageSize + meta.position());
+		}
+		channel.force(true);
+
+		for (DNode<T> node : dirty.values()) {
+			node.dirty = false;
+			cache.put(node.page, node);
+		}
+		dirty.clear();
+		committedRoot = rootPage;
+		committedCount = count;
+		committedPages = nextPage;
+		reusable.addAll(freed);
+		freed.clear();
+		committedReusable = new ArrayList<Long>(reusable);
+	}
+
+	/**
+	 * Drops every change since the last commit.
+	 */
+	public void rollback() {
+		dirty.clear();
+		rootPage = committedRoot;
+		count = committedCount;
+		nextPage = committedPages;
+		reusable = new ArrayList<Long>(committedReusable);
+		freed.clear();
+	}
+
+	/**
+	 * Closes the file. Uncommitted changes are discarded.
+	 */
+	public void close() throws IOException {
+		rollback();
+		cache.clear();
+		segments.clear();
+		channel.close();
+	}
+
+	/**
+	 * @return the number of keys, including uncommitted changes
+	 */
+	public long size() {
+		return count;
+	}
+
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	/**
+	 * searches the tree for a key takes O(log(n))
+	 *
+	 * @param key
+	 *            key to find
+	 * @return true if key is present
+	 */
+	public boolean search(T key) {
+		DNode<T> node = load(rootPage);
+		while (!node.leaf) {
+			node = load(node.children[childIndex(node, key)]);
+		}
+		return indexOf(node, key) >= 0;
+	}
+
+	/**
+	 * inserts a key into the tree takes O(log(n))
+	 *
+	 * @param key
+	 *            key to add
+	 * @return false if key was already present
+	 */
+	public boolean insert(T key) {
+		if (codec.encodedSize(key) > maxKeySize) {
+			throw new IllegalArgumentException("key takes more than "
+					+ maxKeySize + " bytes: " + key);
+		}
+		if (search(key))
+			return false;
+		DNode<T> root = insert(load(rootPage), key);
+		if (splitNode != null) {
+			DNode<T> newRoot = allocate(false);
+			newRoot.keys[0] = splitKey;
+			newRoot.children[0] = root.page;
+			newRoot.counts[0] = root.total();
+			newRoot.children[1] = splitNode.page;
+			newRoot.counts[1] = splitNode.total();
+			newRoot.n = 1;
+			root = newRoot;
+			splitKey = null;
+			splitNode = null;
+		}
+		rootPage = root.page;
+		count++;
+		return true;
+	}
+
+	// returns the writable copy of node, a split leaves the new right sibling
+	// in splitNode and its separator in splitKey
+	private DNode<T> insert(DNode<T> node, T key) {
+		DNode<T> w = writable(node);
+		if (w.leaf) {
+			int i = -indexOf(w, key) - 1;
+			w.ensureCapacity();
+			System.arraycopy(w.keys, i, w.keys, i + 1, w.n - i);
+			w.keys[i] = key;
+			w.n++;
+		} else {
+			int i = childIndex(w, key);
+			DNode<T> child = insert(load(w.children[i]), key);
+			w.children[i] = child.page;
+			w.counts[i]++;
+			if (splitNode != null) {
+				DNode<T> right = splitNode;
+				T separator = splitKey;
+				splitNode = null;
+				splitKey = null;
+				w.ensureCapacity();
+				System.arraycopy(w.keys, i, w.keys, i + 1, w.n - i);
+				System.arraycopy(w.children, i + 1, w.children, i + 2, w.n - i);
+				System.arraycopy(w.counts, i + 1, w.counts, i + 2, w.n - i);
+				w.keys[i] = separator;
+				w.children[i + 1] = right.page;
+				w.counts[i] = child.total();
+				w.counts[i + 1] = right.total();
+				w.n++;
+			}
+		}
+		if (encodedSize(w) > pageSize)
+			split(w);
+		return w;
+	}
+
+	// moves the upper half of an overfull node into a new right sibling
+	private void split(DNode<T> w) {
+		int m = splitPoint(w);
+		DNode<T> right = allocate(w.leaf);
+		if (w.leaf) {
+			right.n = w.n - m;
+			right.keys = Arrays.copyOfRange(w.keys, m, m + right.n + 1);
+			splitKey = right.key(0);
+		} else {
+			right.n = w.n - m - 1;
+			right.keys = Arrays.copyOfRange(w.keys, m + 1, m + 1 + right.n
+					+ 1);
+			right.children = Arrays.copyOfRange(w.children, m + 1, m + 1
+					+ right.n + 2);
+			right.counts = Arrays.copyOfRange(w.counts, m + 1, m + 1
+					+ right.n + 2);
+			splitKey = w.key(m);
+		}
+		Arrays.fill(w.keys, m, w.n, null);
+		w.n = m;
+		splitNode = right;
+	}
+
+	// the key index at which the encoded keys reach half of the node
+	private int splitPoint(DNode<T> w) {
+		int half = encodedSize(w) / 2;
+		int size = NODE_HEADER + (w.leaf ? 0 : CHILD_ENTRY);
+		int last = w.leaf ? w.n - 1 : w.n - 2;
+		for (int i = 0; i < last; i++) {
+			size += codec.encodedSize(w.key(i)) + (w.leaf ? 0 : CHILD_ENTRY);
+			if (size >= half)
+				return Math.max(i, 1);
+		}
+		return Math.max(last, 1);
+	}
+
+	/**
+	 * removes a key from the tree takes O(log(n))
+	 *
+	 * @param key
+	 *            key to remove
+	 * @return true if key was present
+	 */
+	public boolean remove(T key) {
+		if (!search(key))
+			return false;
+		DNode<T> root = remove(load(rootPage), key);
+		if (!root.leaf && root.n == 0) {
+			discard(root);
+			root = load(root.children[0]);
+		}
+		rootPage = root.page;
+		count--;
+		return true;
+	}
+
+	private DNode<T> remove(DNode<T> node, T key) {
+		DNode<T> w = writable(node);
+		if (w.leaf) {
+			int i = indexOf(w, key);
+			System.arraycopy(w.keys, i + 1, w.keys, i, w.n - i - 1);
+			w.n--;
+			w.keys[w.n] = null;
+			return w;
+		}
+		int i = childIndex(w, key);
+		DNode<T> child = remove(load(w.children[i]), key);
+		w.children[i] = child.page;
+		w.counts[i]--;
+		if (child.n == 0 || encodedSize(child) < pageSize / 4)
+			rebalance(w, i);
+		return w;
+	}
+
+	// merges children[i] with a sibling, or evens them out if both do not
+	// fit into one page
+	private void rebalance(DNode<T> w, int i) {
+		if (w.n == 0)
+			return;
+		int a = i > 0 ? i - 1 : i;
+		DNode<T> left = writable(load(w.children[a]));
+		DNode<T> right = writable(load(w.children[a + 1]));
+		DNode<T> all = new DNode<T>(left.leaf, left.n + right.n + 2);
+		System.arraycopy(left.keys, 0, all.keys, 0, left.n);
+		int at = left.n;
+		if (!left.leaf) {
+			all.keys[at++] = w.keys[a];
+			System.arraycopy(left.children, 0, all.children, 0, left.n + 1);
+			System.arraycopy(left.counts, 0, all.counts, 0, left.n + 1);
+			System.arraycopy(right.children, 0, all.children, at, right.n + 1);
+			System.arraycopy(right.counts, 0, all.counts, at, right.n + 1);
+		}
+		System.arraycopy(right.keys, 0, all.keys, at, right.n);
+		all.n = at + right.n;
+
+		if (encodedSize(all) <= pageSize) {
+			all.page = left.page;
+			all.dirty = true;
+			dirty.put(all.page, all);
+			discard(right);
+			System.arraycopy(w.keys, a + 1, w.keys, a, w.n - a - 1);
+			System.arraycopy(w.children, a + 2, w.children, a + 1, w.n - a - 1);
+			System.arraycopy(w.counts, a + 2, w.counts, a + 1, w.n - a - 1);
+			w.n--;
+			w.keys[w.n] = null;
+			w.children[a] = all.page;
+			w.counts[a] = all.total();
+		} else {
+			split(all);
+			all.page = left.page;
+			all.dirty = true;
+			dirty.put(all.page, all);
+			// reuse the page of right instead of the one split allocated
+			discard(splitNode);
+			splitNode.page = right.page;
+			splitNode.dirty = true;
+			dirty.put(right.page, splitNode);
+			w.keys[a] = splitKey;
+			w.children[a] = all.page;
+			w.counts[a] = all.total();
+			w.children[a + 1] = splitNode.page;
+			w.counts[a + 1] = splitNode.total();
+			splitKey = null;
+			splitNode = null;
+		}
+	}
+
+	/**
+	 * @param key
+	 *            any Comparable object
+	 * @return the number of elements greater than key
+	 */
+	public long numGreater(T key) {
+		long total = 0;
+		DNode<T> node = load(rootPage);
+		while (!node.leaf) {
+			int i = childIndex(node, key);
+			for (int j = i + 1; j <= node.n; j++) {
+				total += node.counts[j];
+			}
+			node = load(node.children[i]);
+		}
+		int i = indexOf(node, key);
+		return total + node.n - (i >= 0 ? i + 1 : -i - 1);
+	}
+
+	/**
+	 * @param key
+	 *            any Comparable object
+	 * @return the number of elements smaller than key
+	 */
+	public long numSmaller(T key) {
+		long total = 0;
+		DNode<T> node = load(rootPage);
+		while (!node.leaf) {
+			int i = childIndex(node, key);
+			for (int j = 0; j < i; j++) {
+				total += node.counts[j];
+			}
+			node = load(node.children[i]);
+		}
+		int i = indexOf(node, key);
+		return total + (i >= 0 ? i : -i - 1);
+	}
+
+	/**
+	 * Returns sorted list of keys greater than key. Size of list will not
+	 * exceed maxReturned
+	 *
+	 * @param key
+	 *            Key to search for
+	 * @param maxReturned
+	 *            Maximum number of results to return
+	 * @return List of keys greater than key. List may not exceed maxReturned
+	 */
+	public List<T> getGreaterThan(T key, int maxReturned) {
+		List<T> list = new ArrayList<T>();
+		getGreaterThan(load(rootPage), key, maxReturned, list);
+		return list;
+	}
+
+	private void getGreaterThan(DNode<T> node, T key, int maxReturned,
+			List<T> list) {
+		if (node.leaf) {
+			int i = indexOf(node, key);
+			for (i = i >= 0 ? i + 1 : -i - 1; i < node.n
+					&& list.size() < maxReturned; i++) {
+				list.add(node.key(i));
+			}
+			return;
+		}
+		for (int i = childIndex(node, key); i <= node.n
+				&& list.size() < maxReturned; i++) {
+			getGreaterThan(load(node.children[i]), key, maxReturned, list);
+		}
+	}
+
+	private DNode<T> allocate(boolean leaf) {
+		DNode<T> node = new DNode<T>(leaf, 4);
+		node.page = newPage();
+		node.dirty = true;
+		dirty.put(node.page, node);
+		return node;
+	}
+
+	private long newPage() {
+		if (reusable.isEmpty())
+			return nextPage++;
+		long page = reusable.remove(reusable.size() - 1);
+		cache.remove(page);
+		return page;
+	}
+
+	// gives up the page of a node that is no longer part of the working tree
+	private void discard(DNode<T> node) {
+		if (!node.dirty) {
+			freed.add(node.page);
+		} else if (dirty.remove(node.page) == node) {
+			// never committed, so nothing else refers to it
+			reusable.add(node.page);
+		}
+	}
+
+	// committed pages are never modified, they are copied to a new page
+	private DNode<T> writable(DNode<T> node) {
+		if (node.dirty)
+			return node;
+		DNode<T> copy = node.copy();
+		copy.page = newPage();
+		copy.dirty = true;
+		dirty.put(copy.page, copy);
+		freed.add(node.page);
+		return copy;
+	}
+
+	private DNode<T> load(long page) {
+		DNode<T> node = dirty.get(page);
+		if (node != null)
+			return node;
+		node = cache.get(page);
+		if (node != null)
+			return node;
+		node = decode(page, pageBuffer(page));
+		cache.put(page, node);
+		return node;
+	}
+
+	// a read-only view of a committed page
+	private ByteBuffer pageBuffer(long page) {
+		long position = page * pageSize;
+		int segment = (int) (position / SEGMENT_SIZE);
+		int offset = (int) (position % SEGMENT_SIZE);
+		try {
+			while (segments.size() <= segment) {
+				segments.add(null);
+			}
+			MappedByteBuffer mapped = segments.get(segment);
+			if (mapped == null || mapped.capacity() < offset + pageSize) {
+				long start = segment * SEGMENT_SIZE;
+				long length = Math.min(SEGMENT_SIZE, channel.size() - start);
+				mapped = channel.map(FileChannel.MapMode.READ_ONLY, start,
+						length);
+				segments.set(segment, mapped);
+			}
+			ByteBuffer buffer = mapped.duplicate();
+			buffer.limit(offset + pageSize);
+			buffer.position(offset);
+			return buffer;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private DNode<T> decode(long page, ByteBuffer buffer) {
+		boolean leaf = buffer.get() == LEAF;
+		int n = buffer.getInt();
+		DNode<T> node = new DNode<T>(leaf, Math.max(n + 1, 4));
+		node.page = page;
+		node.n = n;
+		if (!leaf) {
+			for (int i = 0; i <= n; i++) {
+				node.children[i] = buffer.getLong();
+				node.counts[i] = buffer.getLong();
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			node.keys[i] = codec.decode(buffer);
+		}
+		return node;
+	}
+
+	private void encode(DNode<T> node, ByteBuffer buffer) {
+		buffer.put(node.leaf ? LEAF : INNER);
+		buffer.putInt(node.n);
+		if (!node.leaf) {
+			for (int i = 0; i <= node.n; i++) {
+				buffer.putLong(node.children[i]);
+				buffer.putLong(node.counts[i]);
+			}
+		}
+		for (int i = 0; i < node.n; i++) {
+			codec.encode(node.key(i), buffer);
+		}
+	}
+
+	private int encodedSize(DNode<T> node) {
+		int size = NODE_HEADER;
+		if (!node.leaf)
+			size += (node.n + 1) * CHILD_ENTRY;
+		for (int i = 0; i < node.n; i++) {
+			size += codec.encodedSize(node.key(i));
+		}
+		return size;
+	}
+
+	private int childIndex(DNode<T> node, T key) {
+		int i = indexOf(node, key);
+		return i >= 0 ? i + 1 : -i - 1;
+	}
+
+	// binary search, returns -(insertion point) - 1 if key is absent
+	private int indexOf(DNode<T> node, T key) {
+		int lo = 0;
+		int hi = node.n - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int c = node.key(mid).compareTo(key);
+			if (c < 0)
+				lo = mid + 1;
+			else if (c > 0)
+				hi = mid - 1;
+			else
+				return mid;
+		}
+		return -(lo + 1);
+	}
+}
@@ -0,0 +1,569 @@
+package structures.tree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * An immutable red-black tree. insert and remove never touch an existing node,
+ * they copy the search path and return a new tree which shares every untouched
+ * subtree with the old one (path copying).
+ *
+ * Because nothing is ever mutated, a tree instance is a consistent snapshot:
+ * readers can keep using it from any number of threads without locking while
+ * a writer builds newer versions. Publishing a new version is a single
+ * reference assignment (e.g. a volatile field or an AtomicReference).
+ *
+ * Balancing follows Okasaki for insertion and Kahrs for deletion. Every node
+ * also records the size of its subtree so numGreater and numSmaller run in
+ * O(log(n)) like in {@link RedBlackTree}.
+ *
+ * Bulk operations are built on join (Blelloch, Ferizovic and Sun, "Just Join
+ * for Parallel Ordered Sets"): split and join take O(log(n)), and union,
+ * intersection and difference of trees of sizes m <= n take
+ * O(m log(n/m + 1)). Their two recursive halves work on disjoint immutable
+ * subtrees, so above a grain size they run in parallel on the common
+ * ForkJoinPool.
+ *
+ * @param <T>
+ */
+public final class PersistentRedBlackTree<T extends Comparable<T>> {
+	static final boolean RED = true;
+	static final boolean BLACK = false;
+	// set operations on fewer keys than this do not fork
+	static final int GRAIN = 1 << 12;
+
+	final PNode<T> root;
+
+	public PersistentRedBlackTree() {
+		this(null);
+	}
+
+	PersistentRedBlackTree(PNode<T> root) {
+		this.root = root;
+	}
+
+	static final class PNode<T> {
+		final T key;
+		final PNode<T> left;
+		final PNode<T> right;
+		final boolean color;
+		// number of nodes in the subtree rooted here
+		final int size;
+		// black nodes on the leftmost path down from here, this one included;
+		// in a valid tree every path has as many. Fits the padding after color.
+		final byte blackHeight;
+
+		PNode(boolean color, PNode<T> left, T key, PNode<T> right) {
+			this.color = color;
+			this.left = left;
+			this.key = key;
+			this.right = right;
+			this.size = size(left) + size(right) + 1;
+			this.blackHeight = (byte) (blackHeight(left) + (color == BLACK ? 1 : 0));
+		}
+	}
+
+	/**
+	 * The result of {@link PersistentRedBlackTree#split}: the keys on either
+	 * side of the split key, and whether the key itself was present.
+	 */
+	public static final class Split<T extends Comparable<T>> {
+		public final PersistentRedBlackTree<T> left;
+		public final boolean found;
+		public final PersistentRedBlackTree<T> right;
+
+		Split(PersistentRedBlackTree<T> left, boolean found,
+				PersistentRedBlackTree<T> right) {
+			this.left = left;
+			this.found = found;
+			this.right = right;
+		}
+	}
+
+	// Filled in by split(PNode, key, Parts), one per top-level split.
+	private static final class Parts<T> {
+		PNode<T> left;
+		boolean found;
+		PNode<T> right;
+	}
+
+	/**
+	 * @return the number of keys in this version of the tree, O(1)
+	 */
+	public int size() {
+		return size(root);
+	}
+
+	public boolean isEmpty() {
+		return root == null;
+	}
+
+	/**
+	 * searches the tree for a key takes O(log(n))
+	 *
+	 * @param key
+	 *            key to find
+	 * @return true if this version of the tree contains key
+	 */
+	public boolean search(T key) {
+		PNode<T> current = root;
+		while (current != null) {
+			int c = key.compareTo(current.key);
+			if (c == 0)
+				return true;
+			current = c < 0 ? current.left : current.right;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns a new tree containing key in addition to the keys of this one.
+	 * This tree is left unchanged. If key is already present this tree itself
+	 * is returned.
+	 *
+	 * @param key
+	 *            key to add
+	 * @return the new version of the tree
+	 */
+	public PersistentRedBlackTree<T> insert(T key) {
+		PNode<T> inserted = insert(root, key);
+		if (inserted == root)
+			return this;
+		return new PersistentRedBlackTree<T>(blacken(inserted));
+	}
+
+	private static <T extends Comparable<T>> PNode<T> insert(PNode<T> t, T key) {
+		if (t == null)
+			return new PNode<T>(RED, null, key, null);
+		int c = key.compareTo(t.key);
+		if (c == 0)
+			return t;
+		if (c < 0) {
+			PNode<T> left = insert(t.left, key);
+			if (left == t.left)
+				return t;
+			return t.color == BLACK ? balance(left, t.key, t.right)
+					: new PNode<T>(RED, left, t.key, t.right);
+		} else {
+			PNode<T> right = insert(t.right, key);
+			if (right == t.right)
+				return t;
+			return t.color == BLACK ? balance(t.left, t.key, right)
+					: new PNode<T>(RED, t.left, t.key, right);
+		}
+	}
+
+	/**
+	 * Returns a new tree without key. This tree is left unchanged. If key is
+	 * not present this tree itself is returned.
+	 *
+	 * @param key
+	 *            key to remove
+	 * @return the new version of the tree
+	 */
+	public PersistentRedBlackTree<T> remove(T key) {
+		if (!search(key))
+			return this;
+		return new PersistentRedBlackTree<T>(blacken(delete(root, key)));
+	}
+
+	// Kahrs' deletion. The key is known to be present.
+	private static <T extends Comparable<T>> PNode<T> delete(PNode<T> t, T key) {
+		int c = key.compareTo(t.key);
+		if (c < 0) {
+			if (isBlack(t.left))
+				return balanceLeft(delete(t.left, key), t.key, t.right);
+			return new PNode<T>(RED, delete(t.left, key), t.key, t.right);
+		} else if (c > 0) {
+			if (isBlack(t.right))
+				return balanceRight(t.left, t.key, delete(t.right, key));
+			return new PNode<T>(RED, t.left, t.key, delete(t.right, key));
+		} else {
+			return append(t.left, t.right);
+		}
+	}
+
+	// Rebuilds a black node whose children may carry a red-red violation.
+	static <T> PNode<T> balance(PNode<T> l, T key, PNode<T> r) {
+		if (isRed(l) && isRed(r))
+			return new PNode<T>(RED, blacken(l), key, blacken(r));
+		if (isRed(l)) {
+			if (isRed(l.left))
+				return new PNode<T>(RED, blacken(l.left), l.key,
+						new PNode<T>(BLACK, l.right, key, r));
+			if (isRed(l.right))
+				return new PNode<T>(RED, new PNode<T>(BLACK, l.left, l.key,
+						l.right.left), l.right.key, new PNode<T>(BLACK,
+						l.right.right, key, r));
+		}
+		if (isRed(r)) {
+			if (isRed(r.right))
+				return new PNode<T>(RED, new PNode<T>(BLACK, l, key, r.left),
+						r.key, blacken(r.right));
+			if (isRed(r.left))
+				return new PNode<T>(RED, new PNode<T>(BLACK, l, key,
+						r.left.left), r.left.key, new PNode<T>(BLACK,
+						r.left.right, r.key, r.right));
+		}
+		return new PNode<T>(BLACK, l, key, r);
+	}
+
+	// The left subtree lost one black level.
+	private static <T> PNode<T> balanceLeft(PNode<T> l, T key, PNode<T> r) {
+		if (isRed(l))
+			return new PNode<T>(RED, blacken(l), key, r);
+		if (isBlack(r))
+			return balance(l, key, redden(r));
+		// r is red with a black left child
+		return new PNode<T>(RED, new PNode<T>(BLACK, l, key, r.left.left),
+				r.left.key, balance(r.left.right, r.key, redden(r.right)));
+	}
+
+	// The right subtree lost one black level.
+	private static <T> PNode<T> balanceRight(PNode<T> l, T key, PNode<T> r) {
+		if (isRed(r))
+			return new PNode<T>(RED, l, key, blacken(r));
+		if (isBlack(l))
+			return balance(redden(l), key, r);
+		// l is red with a black right child
+		return new PNode<T>(RED, balance(redden(l.left), l.key, l.right.left),
+				l.right.key, new PNode<T>(BLACK, l.right.right, key, r));
+	}
+
+	// Joins the two children of a deleted node.
+	private static <T> PNode<T> append(PNode<T> l, PNode<T> r) {
+		if (l == null)
+			return r;
+		if (r == null)
+			return l;
+		if (isRed(l) && isRed(r)) {
+			PNode<T> mid = append(l.right, r.left);
+			if (isRed(mid))
+				return new PNode<T>(RED, new PNode<T>(RED, l.left, l.key,
+						mid.left), mid.key, new PNode<T>(RED, mid.right, r.key,
+						r.right));
+			return new PNode<T>(RED, l.left, l.key, new PNode<T>(RED, mid,
+					r.key, r.right));
+		}
+		if (isBlack(l) && isBlack(r)) {
+			PNode<T> mid = append(l.right, r.left);
+			if (isRed(mid))
+				return new PNode<T>(RED, new PNode<T>(BLACK, l.left, l.key,
+						mid.left), mid.key, new PNode<T>(BLACK, mid.right,
+						r.key, r.right));
+			return balanceLeft(l.left, l.key, new PNode<T>(BLACK, mid, r.key,
+					r.right));
+		}
+		if (isRed(r))
+			return new PNode<T>(RED, append(l, r.left), r.key, r.right);
+		return new PNode<T>(RED, l.left, l.key, append(l.right, r));
+	}
+
+	/**
+	 * Splits the tree around key in O(log(n)). This tree is left unchanged.
+	 *
+	 * @param key
+	 *            key to split at, need not be present
+	 * @return the keys smaller than key, the keys greater than key, and
+	 *         whether key was present
+	 */
+	public Split<T> split(T key) {
+		Parts<T> parts = new Parts<T>();
+		split(root, key, parts);
+		return new Split<T>(tree(parts.left), parts.found, tree(parts.right));
+	}
+
+	private static <T extends Comparable<T>> void split(PNode<T> t, T key,
+			Parts<T> parts) {
+		if (t == null) {
+			parts.left = null;
+			parts.found = false;
+			parts.right = null;
+			return;
+		}
+		int c = key.compareTo(t.key);
+		if (c == 0) {
+			parts.left = t.left;
+			parts.found = true;
+			parts.right = t.right;
+		} else if (c < 0) {
+			split(t.left, key, parts);
+			parts.right = join(parts.right, t.key, t.right);
+		} else {
+			split(t.right, key, parts);
+			parts.left = join(t.left, t.key, parts.left);
+		}
+	}
+
+	/**
+	 * Returns the tree holding the keys of left, key and the keys of right in
+	 * O(log(n)). Both trees are left unchanged.
+	 *
+	 * @throws IllegalArgumentException
+	 *             unless every key of left is smaller than key and every key
+	 *             of right greater
+	 */
+	public static <T extends Comparable<T>> PersistentRedBlackTree<T> join(
+			PersistentRedBlackTree<T> left, T key,
+			PersistentRedBlackTree<T> right) {
+		if ((left.root != null && max(left.root).compareTo(key) >= 0)
+				|| (right.root != null && min(right.root).compareTo(key) <= 0))
+			throw new IllegalArgumentException("trees overlap at " + key);
+		return tree(join(left.root, key, right.root));
+	}
+
+	// All keys of l are smaller than key, all keys of r greater. The result
+	// may have a red root.
+	static <T> PNode<T> join(PNode<T> l, T key, PNode<T> r) {
+		// roots can always be blackened, and black inputs keep the fixup to
+		// a single red-red violation as in insert
+		l = blacken(l);
+		r = blacken(r);
+		int hl = blackHeight(l);
+		int hr = blackHeight(r);
+		if (hl > hr)
+			return joinRight(l, key, r, hr);
+		if (hl < hr)
+			return joinLeft(l, key, r, hl);
+		return new PNode<T>(BLACK, l, key, r);
+	}
+
+	// Goes down the right spine of l to the black node as high as r and
+	// hangs key and r there, rebalancing on the way back up.
+	private static <T> PNode<T> joinRight(PNode<T> l, T key, PNode<T> r,
+			int hr) {
+		if (!isRed(l) && blackHeight(l) == hr)
+			return new PNode<T>(RED, l, key, r);
+		PNode<T> right = joinRight(l.right, key, r, hr);
+		if (isRed(l))
+			return new PNode<T>(RED, l.left, l.key, right);
+		return balance(l.left, l.key, right);
+	}
+
+	private static <T> PNode<T> joinLeft(PNode<T> l, T key, PNode<T> r, int hl) {
+		if (!isRed(r) && blackHeight(r) == hl)
+			return new PNode<T>(RED, l, key, r);
+		PNode<T> left = joinLeft(l, key, r.left, hl);
+		if (isRed(r))
+			return new PNode<T>(RED, left, r.key, r.right);
+		return balance(left, r.key, r.right);
+	}
+
+	// join without a middle key: the largest key of l takes its place
+	private static <T extends Comparable<T>> PNode<T> join2(PNode<T> l,
+			PNode<T> r) {
+		if (l == null)
+			return r;
+		if (r == null)
+			return l;
+		T last = max(l);
+		return join(delete(blacken(l), last), last, r);
+	}
+
+	/**
+	 * @return a tree with the keys that are in this tree or in other
+	 */
+	public PersistentRedBlackTree<T> union(PersistentRedBlackTree<T> other) {
+		return tree(combine(SetOperation.UNION, root, other.root));
+	}
+
+	/**
+	 * @return a tree with the keys that are in both this tree and other
+	 */
+	public PersistentRedBlackTree<T> intersection(
+			PersistentRedBlackTree<T> other) {
+		return tree(combine(SetOperation.INTERSECTION, root, other.root));
+	}
+
+	/**
+	 * @return a tree with the keys of this tree that are not in other
+	 */
+	public PersistentRedBlackTree<T> difference(PersistentRedBlackTree<T> other) {
+		return tree(combine(SetOperation.DIFFERENCE, root, other.root));
+	}
+
+	private static <T extends Comparable<T>> PNode<T> combine(
+			SetOperation op, PNode<T> a, PNode<T> b) {
+		if (size(a) + size(b) > GRAIN)
+			return ForkJoinPool.commonPool().invoke(new SetTask<T>(op, a, b));
+		return combineRecurse(op, a, b);
+	}
+
+	// Splits b around the root key of a, combines the two sides
+	// independently and joins the results, with or without that key.
+	private static <T extends Comparable<T>> PNode<T> combineRecurse(
+			SetOperation op, PNode<T> a, PNode<T> b) {
+		if (a == null)
+			return op.keepsOther() ? b : null;
+		if (b == null)
+			return op == SetOperation.INTERSECTION ? null : a;
+		// versions of one tree share subtrees, and a shared subtree is
+		// combined with itself without looking inside
+		if (a == b)
+			return op == SetOperation.DIFFERENCE ? null : a;
+		Parts<T> parts = new Parts<T>();
+		split(b, a.key, parts);
+		PNode<T> left;
+		PNode<T> right;
+		if (size(a) + size(b) > GRAIN) {
+			SetTask<T> task = new SetTask<T>(op, a.left, parts.left);
+			task.fork();
+			right = combineRecurse(op, a.right, parts.right);
+			left = task.join();
+		} else {
+			left = combineRecurse(op, a.left, parts.left);
+			right = combineRecurse(op, a.right, parts.right);
+		}
+		return op.keeps(parts.found) ? join(left, a.key, right) : join2(left,
+				right);
+	}
+
+	private static final class SetTask<T extends Comparable<T>> extends
+			RecursiveTask<PNode<T>> {
+		private static final long serialVersionUID = 1L;
+		private final SetOperation op;
+		private final PNode<T> a;
+		private final PNode<T> b;
+
+		SetTask(SetOperation op, PNode<T> a, PNode<T> b) {
+			this.op = op;
+			this.a = a;
+			this.b = b;
+		}
+
+		protected PNode<T> compute() {
+			return combineRecurse(op, a, b);
+		}
+	}
+
+	/**
+	 * @param key
+	 *            any Comparable object
+	 * @return the number of elements greater than key
+	 */
+	public int numGreater(T key) {
+		int count = 0;
+		PNode<T> current = root;
+		while (current != null) {
+			if (key.compareTo(current.key) < 0) {
+				count += 1 + size(current.right);
+				current = current.left;
+			} else {
+				current = current.right;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @param key
+	 *            any Comparable object
+	 * @return the number of elements smaller than key
+	 */
+	public int numSmaller(T key) {
+		int count = 0;
+		PNode<T> current = root;
+		while (current != null) {
+			if (key.compareTo(current.key) <= 0) {
+				current = current.left;
+			} else {
+				count += 1 + size(current.left);
+				current = current.right;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns sorted list of keys greater than key. Size of list will not
+	 * exceed maxReturned
+	 *
+	 * @param key
+	 *            Key to search for
+	 * @param maxReturned
+	 *            Maximum number of results to return, none if it is not
+	 *            positive
+	 * @return List of keys greater than key. List may not exceed maxReturned
+	 */
+	public List<T> getGreaterThan(T key, int maxReturned) {
+		List<T> list = new ArrayList<T>(Math.max(0,
+				Math.min(maxReturned, size())));
+		getGreaterThan(root, key, maxReturned, list);
+		return list;
+	}
+
+	private void getGreaterThan(PNode<T> node, T key, int maxReturned,
+			List<T> list) {
+		if (node == null || list.size() >= maxReturned) {
+			return;
+		} else if (node.key.compareTo(key) > 0) {
+			getGreaterThan(node.left, key, maxReturned, list);
+			if (list.size() < maxReturned)
+				list.add(node.key);
+			getGreaterThan(node.right, key, maxReturned, list);
+		} else {
+			getGreaterThan(node.right, key, maxReturned, list);
+		}
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		toString(root, sb);
+		if (sb.length() > 1)
+			sb.setLength(sb.length() - 1);
+		return sb.append(']').toString();
+	}
+
+	private void toString(PNode<T> node, StringBuilder sb) {
+		if (node == null)
+			return;
+		toString(node.left, sb);
+		sb.append(node.key).append(',');
+		toString(node.right, sb);
+	}
+
+	static int size(PNode<?> node) {
+		return node == null ? 0 : node.size;
+	}
+
+	static int blackHeight(PNode<?> node) {
+		return node == null ? 0 : node.blackHeight;
+	}
+
+	private static <T> T min(PNode<T> node) {
+		while (node.left != null)
+			node = node.left;
+		return node.key;
+	}
+
+	private static <T> T max(PNode<T> node) {
+		while (node.right != null)
+			node = node.right;
+		return node.key;
+	}
+
+	private static <T extends Comparable<T>> PersistentRedBlackTree<T> tree(
+			PNode<T> root) {
+		return new PersistentRedBlackTree<T>(blacken(root));
+	}
+
+	static boolean isRed(PNode<?> node) {
+		return node != null && node.color == RED;
+	}
+
+	static boolean isBlack(PNode<?> node) {
+		return node != null && node.color == BLACK;
+	}
+
+	static <T> PNode<T> blacken(PNode<T> node) {
+		if (node == null || node.color == BLACK)
+			return node;
+		return new PNode<T>(BLACK, node.left, node.key, node.right);
+	}
+
+	private static <T> PNode<T> redden(PNode<T> node) {
+		return new PNode<T>(RED, node.left, node.key, node.right);
+	}
+}
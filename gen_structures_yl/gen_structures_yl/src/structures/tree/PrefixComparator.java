@@ -0,0 +1,48 @@
+package structures.tree;
+
+import java.util.Comparator;
+
+/**
+ * A comparator that can start comparing after a prefix the two keys are known
+ * to share, and that reports how long their common prefix is.
+ *
+ * A tree descending towards a key knows such a prefix: every key in the
+ * subtree it enters lies between the nearest ancestor smaller than the key
+ * and the nearest larger one, so it shares with the key at least the shorter
+ * of the key's common prefixes with those two. For long keys that share long
+ * prefixes, such as paths or URLs, each comparison then looks only at the
+ * part that can differ. {@link RedBlackTree} makes use of this.
+ *
+ * @param <T>
+ *            the key type
+ */
+public interface PrefixComparator<T> extends Comparator<T> {
+
+	/**
+	 * Compares a with b, which agree on their first from positions.
+	 *
+	 * @return 0 if a equals b, otherwise the length of their common prefix
+	 *         plus one, negated if a is smaller than b
+	 */
+	int compare(T a, T b, int from);
+
+	default int compare(T a, T b) {
+		return Integer.signum(compare(a, b, 0));
+	}
+
+	/** the order of String.compareTo, by UTF-16 chars */
+	PrefixComparator<String> STRING = new PrefixComparator<String>() {
+		public int compare(String a, String b, int from) {
+			int n = Math.min(a.length(), b.length());
+			int i = from;
+			while (i < n && a.charAt(i) == b.charAt(i))
+				i++;
+			if (i < n)
+				return a.charAt(i) < b.charAt(i) ? -(i + 1) : i + 1;
+			if (a.length() == b.length())
+				return 0;
+			// the shorter one is a prefix of the other
+			return a.length() < b.length() ? -(i + 1) : i + 1;
+		}
+	};
+}
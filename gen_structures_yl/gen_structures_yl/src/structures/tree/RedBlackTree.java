@@ -1,128 +1,50 @@
 package structures.tree;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
 
-public class RedBlackTree<T extends Comparable<T>> {
-	// Root initialized to nil.
-	private RedBlackNode<T> nil = new RedBlackNode<T>();
-	private RedBlackNode<T> root = nil;
+// The balancing, rotations and counts come from AbstractRedBlackTree; this
+// class adds duplicate keys, prefix comparisons and the bulk operations.
+public class RedBlackTree<T extends Comparable<T>> extends
+		AbstractRedBlackTree<T> {
+	// the comparator if it can skip shared prefixes, else null
+	private final PrefixComparator<? super T> prefixComparator;
+	// the black height of the tree the last join returned, see join
+	private int joinedHeight;
 
 	public RedBlackTree() {
-		root.left = nil;
-		root.right = nil;
-		root.parent = nil;
+		this(null);
 	}
 
-	// @param: x, The node which the lefRotate is to be performed on.
-	// Performs a leftRotate around x.
-	private void leftRotate(RedBlackNode<T> x) {
-		// Call leftRotateFixup() which updates the numLeft
-		// and numRight values.
-		leftRotateFixup(x);
-		// Perform the left rotate as described in the algorithm
-		// in the course text.
-		RedBlackNode<T> y;
-		y = x.right;
-		x.right = y.left;
-		// Check for existence of y.left and make pointer changes
-		if (!isNil(y.left))
-			y.left.parent = x;
-		y.parent = x.parent;
-		// x's parent is nul
-		if (isNil(x.parent))
-			root = y;
-		// x is the left child of it's parent
-		else if (x.parent.left == x)
-			x.parent.left = y;
-		// x is the right child of it's parent.
-		else
-			x.parent.right = y;
-		// Finish of the leftRotate
-		y.left = x;
-		x.parent = y;
-	}// end leftRotate(RedBlackNode x)
-		// @param: x, The node which the leftRotate is to be performed on.
-		// Updates the numLeft & numRight values affected by leftRotate.
-
-	private void leftRotateFixup(RedBlackNode x) {
-		// Case 1: Only x, x.right and x.right.right always are not nil.
-		if (isNil(x.left) && isNil(x.right.left)) {
-			x.numLeft = 0;
-			x.numRight = 0;
-			x.right.numLeft = 1;
-		}
-		// Case 2: x.right.left also exists in addition to Case 1
-		else if (isNil(x.left) && !isNil(x.right.left)) {
-			x.numLeft = 0;
-			x.numRight = 1 + x.right.left.numLeft + x.right.left.numRight;
-			x.right.numLeft = 2 + x.right.left.numLeft + x.right.left.numRight;
-		}
-		// Case 3: x.left also exists in addition to Case 1
-		else if (!isNil(x.left) && isNil(x.right.left)) {
-			x.numRight = 0;
-			x.right.numLeft = 2 + x.left.numLeft + x.left.numRight;
-		}
-		// Case 4: x.left and x.right.left both exist in addtion to Case 1
-		else {
-			x.numRight = 1 + x.right.left.numLeft + x.right.left.numRight;
-			x.right.numLeft = 3 + x.left.numLeft + x.left.numRight
-					+ x.right.left.numLeft + x.right.left.numRight;
-		}
-	}// end leftRotateFixup(RedBlackNode x)
-		// @param: x, The node which the rightRotate is to be performed on.
-		// Updates the numLeft and numRight values affected by the Rotate.
-
-	private void rightRotate(RedBlackNode<T> y) {
-		// Call rightRotateFixup to adjust numRight and numLeft values
-		rightRotateFixup(y);
-		// Perform the rotate as described in the course text.
-		RedBlackNode<T> x = y.left;
-		y.left = x.right;
-		// Check for existence of x.right
-		if (!isNil(x.right))
-			x.right.parent = y;
-		x.parent = y.parent;
-		// y.parent is nil
-		if (isNil(y.parent))
-			root = x;
-		// y is a right child of it's parent.
-		else if (y.parent.right == y)
-			y.parent.right = x;
-		// y is a left child of it's parent.
-		else
-			y.parent.left = x;
-		x.right = y;
-		y.parent = x;
-	}// end rightRotate(RedBlackNode y)
-		// @param: y, the node around which the righRotate is to be performed.
-		// Updates the numLeft and numRight values affected by the rotate
-
-	private void rightRotateFixup(RedBlackNode y) {
-		// Case 1: Only y, y.left and y.left.left exists.
-		if (isNil(y.right) && isNil(y.left.right)) {
-			y.numRight = 0;
-			y.numLeft = 0;
-			y.left.numRight = 1;
-		}
-		// Case 2: y.left.right also exists in addition to Case 1
-		else if (isNil(y.right) && !isNil(y.left.right)) {
-			y.numRight = 0;
-			y.numLeft = 1 + y.left.right.numRight + y.left.right.numLeft;
-			y.left.numRight = 2 + y.left.right.numRight + y.left.right.numLeft;
-		}
-		// Case 3: y.right also exists in addition to Case 1
-		else if (!isNil(y.right) && isNil(y.left.right)) {
-			y.numLeft = 0;
-			y.left.numRight = 2 + y.right.numRight + y.right.numLeft;
-		}
-		// Case 4: y.right & y.left.right exist in addition to Case 1
-		else {
-			y.numLeft = 1 + y.left.right.numRight + y.left.right.numLeft;
-			y.left.numRight = 3 + y.right.numRight + y.right.numLeft
-					+ y.left.right.numRight + y.left.right.numLeft;
-		}
-	}// end rightRotateFixup(RedBlackNode y)
+	// @param: comparator, orders the keys, null for their natural order. A
+	// PrefixComparator is also used to skip the prefixes a key shares with
+	// the subtree search and insert descend into.
+	@SuppressWarnings("unchecked")
+	public RedBlackTree(Comparator<? super T> comparator) {
+		super(comparator);
+		this.prefixComparator = comparator instanceof PrefixComparator ? (PrefixComparator<? super T>) comparator
+				: null;
+	}
+
+	// @return: the comparator ordering the keys, null for their natural order
+	public Comparator<? super T> comparator() {
+		return comparator;
+	}
+
+	// @param: from, the length of a prefix key and other are known to share
+	// @return: the comparison of key with other. From a PrefixComparator its
+	// size is also one more than the length of their common prefix.
+	private int compare(T key, T other, int from) {
+		return prefixComparator == null ? compare(key, other)
+				: prefixComparator.compare(key, other, from);
+	}
 
 	public void insert(T key) {
 		insert(new RedBlackNode<T>(key));
@@ -135,20 +57,33 @@ public class RedBlackTree<T extends Comparable<T>> {
 		// Create a reference to root & initialize a node to nil
 		RedBlackNode<T> y = nil;
 		RedBlackNode<T> x = root;
+		// z.key compared with y.key, once
+		int c = 0;
+		// common prefixes of z.key with the nearest smaller and larger
+		// ancestors, see PrefixComparator
+		int lowPrefix = 0;
+		int highPrefix = 0;
+		// the number of nodes z.key is compared with
+		int path = 0;
 		// While we haven't reached a the end of the tree keep
 		// tryint to figure out where z should go
 		while (!isNil(x)) {
 			y = x;
+			c = compare(z.key, x.key, Math.min(lowPrefix, highPrefix));
+			path++;
 			// if z.key is < than the current key, go left
-			if (z.key.compareTo(x.key) < 0) {
+			if (c < 0) {
 				// Update x.numLeft as z is < than x
 				x.numLeft++;
+				highPrefix = -c - 1;
 				x = x.left;
 			}
 			// else z.key >= x.key so go right.
 			else {
 				// Update x.numGreater as z is => x
 				x.numRight++;
+				if (c > 0)
+					lowPrefix = c - 1;
 				x = x.right;
 			}
 		}
@@ -158,7 +93,7 @@ public class RedBlackTree<T extends Comparable<T>> {
 		// right child of y
 		if (isNil(y))
 			root = z;
-		else if (z.key.compareTo(y.key) < 0)
+		else if (c < 0)
 			y.left = z;
 		else
 			y.right = z;
@@ -166,396 +101,726 @@ public class RedBlackTree<T extends Comparable<T>> {
 		z.left = nil;
 		z.right = nil;
 		z.color = RedBlackNode.RED;
+		recorder.operation(TreeStats.Operation.INSERT, path);
 		// Call insertFixup(z)
 		insertFixup(z);
 	}// end insert(RedBlackNode z)
-		// @param: z, the node which was inserted and may have caused a
-		// violation
-		// of the RedBlackTree properties
-		// Fixes up the violation of the RedBlackTree properties that may have
-		// been caused during insert(z)
-
-	private void insertFixup(RedBlackNode<T> z) {
-		RedBlackNode<T> y = nil;
-		// While there is a violation of the RedBlackTree properties..
-		while (z.parent.color == RedBlackNode.RED) {
-			// If z's parent is the the left child of it's parent.
-			if (z.parent == z.parent.parent.left) {
-				// Initialize y to z 's cousin
-				y = z.parent.parent.right;
-				// Case 1: if y is red...recolor
-				if (y.color == RedBlackNode.RED) {
-					z.parent.color = RedBlackNode.BLACK;
-					y.color = RedBlackNode.BLACK;
-					z.parent.parent.color = RedBlackNode.RED;
-					z = z.parent.parent;
-				}
-				// Case 2: if y is black & z is a right child
-				else if (z == z.parent.right) {
-					// leftRotaet around z's parent
-					z = z.parent;
-					leftRotate(z);
-				}
-				// Case 3: else y is black & z is a left child
-				else {
-					// recolor and rotate round z's grandpa
-					z.parent.color = RedBlackNode.BLACK;
-					z.parent.parent.color = RedBlackNode.RED;
-					rightRotate(z.parent.parent);
-				}
-			}
-			// If z's parent is the right child of it's parent.
-			else {
-				// Initialize y to z's cousin
-				y = z.parent.parent.left;
-				// Case 1: if y is red...recolor
-				if (y.color == RedBlackNode.RED) {
-					z.parent.color = RedBlackNode.BLACK;
-					y.color = RedBlackNode.BLACK;
-					z.parent.parent.color = RedBlackNode.RED;
-					z = z.parent.parent;
-				}
-				// Case 2: if y is black and z is a left child
-				else if (z == z.parent.left) {
-					// rightRotate around z's parent
-					z = z.parent;
-					rightRotate(z);
-				}
-				// Case 3: if y is black and z is a right child
-				else {
-					// recolor and rotate around z's grandpa
-					z.parent.color = RedBlackNode.BLACK;
-					z.parent.parent.color = RedBlackNode.RED;
-					leftRotate(z.parent.parent);
-				}
-			}
-		}
-		// Color root black at all times
-		root.color = RedBlackNode.BLACK;
-	}// end insertFixup(RedBlackNode z)
 		// @param: node, a RedBlackNode
 		// @param: node, the node with the smallest key rooted at node
 
 	public RedBlackNode<T> treeMinimum(RedBlackNode<T> node) {
-		// while there is a smaller key, keep going left
-		while (!isNil(node.left))
-			node = node.left;
-		return node;
+		return minimum(node);
 	}// end treeMinimum(RedBlackNode node)
 		// @param: x, a RedBlackNode whose successor we must find
 		// @return: return's the node the with the next largest key
 		// from x.key
 
 	public RedBlackNode<T> treeSuccessor(RedBlackNode<T> x) {
-		// if x.left is not nil, call treeMinimum(x.right) and
-		// return it's value
-		if (!isNil(x.left))
-			return treeMinimum(x.right);
-		RedBlackNode<T> y = x.parent;
-		// while x is it's parent's right child...
-		while (!isNil(y) && x == y.right) {
-			// Keep moving up in the tree
-			x = y;
-			y = y.parent;
+		return successor(x);
+	}// end treeSuccessor(RedBlackNode x)
+		// @param: node, a RedBlackNode
+		// @return: the node with the largest key rooted at node
+
+	public RedBlackNode<T> treeMaximum(RedBlackNode<T> node) {
+		return maximum(node);
+	}// end treeMaximum(RedBlackNode node)
+		// @param: x, a RedBlackNode whose predecessor we must find
+		// @return: the node with the next smallest key from x.key
+
+	public RedBlackNode<T> treePredecessor(RedBlackNode<T> x) {
+		return predecessor(x);
+	}// end treePredecessor(RedBlackNode x)
+		// @param: keys, the keys to be inserted, in any order
+
+	/**
+	 * Inserts every key of keys, like calling insert for each of them.
+	 * 
+	 * The batch is sorted first, then the tree and the batch are merged in a
+	 * single descent after Blelloch, Ferizovic and Sun, "Just Join for
+	 * Parallel Ordered Sets": each visited node splits its part of the batch
+	 * at its key, the halves go into its subtrees, and join puts node and
+	 * subtrees back together, fixing colors and counts once per node. Only
+	 * the nodes on the paths to the new keys are visited, O(k log(n/k + 1))
+	 * against O(k log(n)) for k inserts; a batch of neighbouring keys shares
+	 * almost all of its path.
+	 */
+	public void insertAll(Collection<? extends T> keys) {
+		T[] batch = sortedBatch(keys);
+		if (batch.length == 0)
+			return;
+		RedBlackNode<T>[] nodes = newNodeArray(batch.length);
+		for (int i = 0; i < batch.length; i++)
+			nodes[i] = new RedBlackNode<T>(batch[i]);
+		root = insertAll(root, blackHeight(), nodes, 0, nodes.length);
+		root.parent = nil;
+		root.color = RedBlackNode.BLACK;
+	}// end insertAll(Collection keys)
+		// @param: node, the root of a subtree of black height height
+		// @param: nodes, lo, hi, the new nodes nodes[lo..hi) in key order,
+		// which all belong in that subtree
+		// @return: the new root of the subtree, its black height is left in
+		// joinedHeight
+
+	private RedBlackNode<T> insertAll(RedBlackNode<T> node, int height,
+			RedBlackNode<T>[] nodes, int lo, int hi) {
+		if (lo == hi) {
+			joinedHeight = height;
+			return node;
 		}
-		// Return successor
-		return y;
-	}// end treeMinimum(RedBlackNode x)
-		// @param: z, the RedBlackNode which is to be removed from the the tree
-		// Remove's z from the RedBlackTree rooted at root
+		if (isNil(node)) {
+			int redLevel = redLevel(hi - lo);
+			joinedHeight = redLevel;
+			return build(nodes, lo, hi - 1, 0, redLevel);
+		}
+		// equal keys go after the ones already in the tree, as in insert
+		int mid = lo;
+		for (int top = hi; mid < top;) {
+			int m = (mid + top) >>> 1;
+			if (compare(nodes[m].key, node.key) < 0)
+				mid = m + 1;
+			else
+				top = m;
+		}
+		int childHeight = height - (node.color == RedBlackNode.BLACK ? 1 : 0);
+		RedBlackNode<T> right = node.right;
+		RedBlackNode<T> left = insertAll(node.left, childHeight, nodes, lo, mid);
+		int leftHeight = joinedHeight;
+		right = insertAll(right, childHeight, nodes, mid, hi);
+		return join(left, leftHeight, node, right, joinedHeight);
+	}// end insertAll(RedBlackNode node, int height, RedBlackNode[] nodes)
+		// @param: keys, the keys to be removed, in any order
+		// @return: the number of keys removed
 
-	public void remove(RedBlackNode<T> v) {
-		RedBlackNode<T> z = search(v.key);
-		// Declare variables
-		RedBlackNode<T> x = nil;
-		RedBlackNode<T> y = nil;
-		// if either one of z's children is nil, then we must remove z
-		if (isNil(z.left) || isNil(z.right))
-			y = z;
-		// else we must remove the successor of z
-		else
-			y = treeSuccessor(z);
-		// Let x be the left or right child of y (y can only have one child)
-		if (!isNil(y.left))
-			x = y.left;
-		else
-			x = y.right;
-		// link x's parent to y's parent
-		x.parent = y.parent;
-		// If y's parent is nil, then x is the root
-		if (isNil(y.parent))
-			root = x;
-		// else if y is a left child, set x to be y's left sibling
-		else if (!isNil(y.parent.left) && y.parent.left == y)
-			y.parent.left = x;
-		// else if y is a right child, set x to be y's right sibling
-		else if (!isNil(y.parent.right) && y.parent.right == y)
-			y.parent.right = x;
-		// if y != z, trasfer y's satellite data into z.
-		if (y != z) {
-			z.key = y.key;
+	/**
+	 * Removes one occurrence of every key of keys, like calling remove for
+	 * each of them. Takes the same single descent as
+	 * {@link #insertAll(Collection)}: a node whose key the batch holds is
+	 * left out and its subtrees are joined without it.
+	 */
+	public int removeAll(Collection<? extends T> keys) {
+		T[] batch = sortedBatch(keys);
+		int n = size();
+		if (batch.length == 0 || n == 0)
+			return 0;
+		root = removeAll(root, blackHeight(), batch, 0, batch.length);
+		root.parent = nil;
+		root.color = RedBlackNode.BLACK;
+		return n - size();
+	}// end removeAll(Collection keys)
+		// @param: node, the root of a subtree of black height height
+		// @param: batch, lo, hi, the keys batch[lo..hi) in order, to be
+		// removed from that subtree where they are found
+		// @return: the new root of the subtree, its black height is left in
+		// joinedHeight
+
+	private RedBlackNode<T> removeAll(RedBlackNode<T> node, int height,
+			T[] batch, int lo, int hi) {
+		if (lo == hi || isNil(node)) {
+			joinedHeight = height;
+			return node;
+		}
+		// batch[lo..equal) is smaller than node.key, batch[equal..greater)
+		// equal to it
+		int equal = lo;
+		for (int top = hi; equal < top;) {
+			int m = (equal + top) >>> 1;
+			if (compare(batch[m], node.key) < 0)
+				equal = m + 1;
+			else
+				top = m;
+		}
+		int greater = equal;
+		while (greater < hi && compare(batch[greater], node.key) == 0)
+			greater++;
+		// copies of node.key may also end the left subtree and start the
+		// right one: the left subtree takes as many as it holds, then node,
+		// then the right subtree
+		int toLeft = equal;
+		if (greater > equal)
+			toLeft += Math.min(greater - equal, size(node.left)
+					- countBelow(node.left, node.key, false));
+		boolean removed = toLeft < greater;
+		int childHeight = height - (node.color == RedBlackNode.BLACK ? 1 : 0);
+		RedBlackNode<T> right = node.right;
+		RedBlackNode<T> left = removeAll(node.left, childHeight, batch, lo,
+				toLeft);
+		int leftHeight = joinedHeight;
+		right = removeAll(right, childHeight, batch, removed ? toLeft + 1
+				: toLeft, hi);
+		if (!removed)
+			return join(left, leftHeight, node, right, joinedHeight);
+		node.parent = null;
+		node.left = null;
+		node.right = null;
+		return join2(left, leftHeight, right, joinedHeight);
+	}// end removeAll(RedBlackNode node, int height, T[] batch)
+		// @param: other, the tree to combine this one with
+		// @return: a new tree with the keys in this tree or in other
+
+	/**
+	 * Like the other set operations this leaves both trees unchanged. Both
+	 * are read in key order and merged in O(n + m), and the result is built
+	 * balanced with no rotations. Equal keys are matched pairwise, so a key
+	 * that occurs more than once is in the union as often as in the tree that
+	 * has more of it.
+	 */
+	public RedBlackTree<T> union(RedBlackTree<T> other) {
+		return combine(SetOperation.UNION, other);
+	}// end union(RedBlackTree other)
+		// @param: other, the tree to combine this one with
+		// @return: a new tree with the keys in both this tree and other
+
+	public RedBlackTree<T> intersection(RedBlackTree<T> other) {
+		return combine(SetOperation.INTERSECTION, other);
+	}// end intersection(RedBlackTree other)
+		// @param: other, the tree to combine this one with
+		// @return: a new tree with the keys of this tree not in other
+
+	public RedBlackTree<T> difference(RedBlackTree<T> other) {
+		return combine(SetOperation.DIFFERENCE, other);
+	}// end difference(RedBlackTree other)
+
+	@SuppressWarnings("unchecked")
+	private RedBlackTree<T> combine(SetOperation op, RedBlackTree<T> other) {
+		if (!Objects.equals(comparator, other.comparator))
+			throw new IllegalArgumentException(
+					"the trees are ordered by different comparators");
+		T[] a = keys();
+		T[] b = other.keys();
+		T[] merged = (T[]) new Comparable<?>[a.length + b.length];
+		int m = op.merge(a, a.length, b, b.length, merged, comparator);
+		RedBlackNode<T>[] nodes = newNodeArray(m);
+		for (int i = 0; i < m; i++)
+			nodes[i] = new RedBlackNode<T>(merged[i]);
+		RedBlackTree<T> result = new RedBlackTree<T>(comparator);
+		result.rebuild(nodes, m);
+		return result;
+	}
+
+	// @param: file, where to write, codec, writes a key as bytes
+	// Writes the keys to file in order, see load. O(n)
+	public void save(Path file, KeyCodec<? super T> codec) throws IOException {
+		TreeFile.write(file, TreeFile.RED_BLACK, Arrays.asList(keys())
+				.iterator(), codec);
+	}// end save(Path file, KeyCodec codec)
+
+	// @param: file, a file written by save, codec, reads a key from bytes
+	// @return: the tree saved in file. The file is memory-mapped and the
+	// sorted keys built straight into a balanced tree as in rebuild, O(n)
+	// with no rotations or recoloring.
+	public static <T extends Comparable<T>> RedBlackTree<T> load(Path file,
+			KeyCodec<T> codec) throws IOException {
+		return load(file, codec, null);
+	}// end load(Path file, KeyCodec codec)
+
+	// @param: comparator, the order of the saved tree, null for the natural
+	// order of the keys
+	public static <T extends Comparable<T>> RedBlackTree<T> load(Path file,
+			KeyCodec<T> codec, Comparator<? super T> comparator)
+			throws IOException {
+		T[] keys = TreeFile.read(file, TreeFile.RED_BLACK, codec, comparator,
+				false);
+		RedBlackTree<T> tree = new RedBlackTree<T>(comparator);
+		RedBlackNode<T>[] nodes = tree.newNodeArray(keys.length);
+		for (int i = 0; i < keys.length; i++)
+			nodes[i] = new RedBlackNode<T>(keys[i]);
+		tree.rebuild(nodes, keys.length);
+		return tree;
+	}// end load(Path file, KeyCodec codec, Comparator comparator)
+
+	// @return: the keys of the tree in order
+	@SuppressWarnings("unchecked")
+	private T[] keys() {
+		T[] keys = (T[]) new Comparable<?>[size()];
+		int i = 0;
+		if (!isNil(root))
+			for (RedBlackNode<T> node = treeMinimum(root); !isNil(node); node = treeSuccessor(node))
+				keys[i++] = node.key;
+		return keys;
+	}
+
+	@SuppressWarnings("unchecked")
+	private T[] sortedBatch(Collection<? extends T> keys) {
+		T[] batch = (T[]) keys.toArray(new Comparable<?>[keys.size()]);
+		// a run that is already sorted costs O(k) here
+		Arrays.sort(batch, comparator);
+		return batch;
+	}
+
+	@SuppressWarnings("unchecked")
+	private RedBlackNode<T>[] newNodeArray(int length) {
+		return (RedBlackNode<T>[]) new RedBlackNode<?>[length];
+	}
+
+	// @param: nodes, the first count of which are in key order
+	// Relinks the nodes into a tree of minimum height. As in
+	// java.util.TreeMap.buildFromSorted, every node is black except those on
+	// the deepest level when it is not full, which keeps the black height
+	// equal on all paths.
+	private void rebuild(RedBlackNode<T>[] nodes, int count) {
+		root = build(nodes, 0, count - 1, 0, redLevel(count));
+		root.parent = nil;
+	}
+
+	// @return: the level build colors red for count nodes, which is also
+	// the black height of the tree it builds
+	private static int redLevel(int count) {
+		int redLevel = 0;
+		for (int m = count - 1; m >= 0; m = m / 2 - 1)
+			redLevel++;
+		return redLevel;
+	}
+
+	private RedBlackNode<T> build(RedBlackNode<T>[] nodes, int lo, int hi,
+			int level, int redLevel) {
+		if (lo > hi)
+			return nil;
+		int mid = (lo + hi) >>> 1;
+		RedBlackNode<T> node = nodes[mid];
+		node.left = build(nodes, lo, mid - 1, level + 1, redLevel);
+		node.right = build(nodes, mid + 1, hi, level + 1, redLevel);
+		if (!isNil(node.left))
+			node.left.parent = node;
+		if (!isNil(node.right))
+			node.right.parent = node;
+		node.numLeft = mid - lo;
+		node.numRight = hi - mid;
+		node.color = level == redLevel ? RedBlackNode.RED : RedBlackNode.BLACK;
+		return node;
+	}
+
+	// The joins below take subtrees with their black height: the number of
+	// black nodes on a path from the root down, nil counting none. They
+	// reuse the nodes, and update() keeps numLeft and numRight.
+
+	// @return: the black height of the whole tree, O(log(n))
+	private int blackHeight() {
+		int height = 0;
+		for (RedBlackNode<T> node = root; !isNil(node); node = node.left)
+			if (node.color == RedBlackNode.BLACK)
+				height++;
+		return height;
+	}
+
+	// @return: node, with left and right linked below it
+	private RedBlackNode<T> link(RedBlackNode<T> left, RedBlackNode<T> node,
+			RedBlackNode<T> right) {
+		node.left = left;
+		node.right = right;
+		if (!isNil(left))
+			left.parent = node;
+		if (!isNil(right))
+			right.parent = node;
+		update(node);
+		return node;
+	}
+
+	// All keys of left are at most node.key, all keys of right at least.
+	// @return: a tree of left, node and right, whose black height is left in
+	// joinedHeight
+	private RedBlackNode<T> join(RedBlackNode<T> left, int leftHeight,
+			RedBlackNode<T> node, RedBlackNode<T> right, int rightHeight) {
+		// roots can always be blackened, and black inputs keep the fixup to
+		// a single red-red violation as in insert
+		if (left.color == RedBlackNode.RED) {
+			left.color = RedBlackNode.BLACK;
+			leftHeight++;
 		}
-		// Update the numLeft and numRight numbers which might need
-		// updating due to the deletion of z.key.
-		fixNodeData(x, y);
-		// If y's color is black, it is a violation of the
-		// RedBlackTree properties so call removeFixup()
-		if (y.color == RedBlackNode.BLACK)
-			removeFixup(x);
-	}// end remove(RedBlackNode z)
-		// @param: y, the RedBlackNode which was actually deleted from the tree
-		// @param: key, the value of the key that used to be in y
-
-	private void fixNodeData(RedBlackNode<T> x, RedBlackNode<T> y) {
-		// Initialize two variables which will help us traverse the tree
-		RedBlackNode<T> current = nil;
-		RedBlackNode<T> track = nil;
-		// if x is nil, then we will start updating at y.parent
-		// Set track to y, y.parent's child
-		if (isNil(x)) {
-			current = y.parent;
-			track = y;
+		if (right.color == RedBlackNode.RED) {
+			right.color = RedBlackNode.BLACK;
+			rightHeight++;
 		}
-		// if x is not nil, then we start updating at x.parent
-		// Set track to x, x.parent's child
+		RedBlackNode<T> joined;
+		if (leftHeight > rightHeight)
+			joined = joinRight(left, leftHeight, node, right, rightHeight);
+		else if (leftHeight < rightHeight)
+			joined = joinLeft(left, leftHeight, node, right, rightHeight);
 		else {
-			current = x.parent;
-			track = x;
+			node.color = RedBlackNode.RED;
+			joinedHeight = leftHeight;
+			return link(left, node, right);
 		}
-		// while we haven't reached the root
-		while (!isNil(current)) {
-			// if the node we deleted has a different key than
-			// the current node
-			if (y.key != current.key) {
-				// if the node we deleted is greater than
-				// current.key then decrement current.numRight
-				if (y.key.compareTo(current.key) > 0)
-					current.numRight--;
-				// if the node we deleted is less than
-				// current.key thendecrement current.numLeft
-				if (y.key.compareTo(current.key) < 0)
-					current.numLeft--;
-			}
-			// if the node we deleted has the same key as the
-			// current node we are checking
-			else {
-				// the cases where the current node has any nil
-				// children and update appropriately
-				if (isNil(current.left))
-					current.numLeft--;
-				else if (isNil(current.right))
-					current.numRight--;
-				// the cases where current has two children and
-				// we must determine whether track is it's left
-				// or right child and update appropriately
-				else if (track == current.right)
-					current.numRight--;
-				else if (track == current.left)
-					current.numLeft--;
-			}
-			// update track and current
-			track = current;
-			current = current.parent;
+		joinedHeight = Math.max(leftHeight, rightHeight);
+		if (joined.color == RedBlackNode.RED) {
+			joined.color = RedBlackNode.BLACK;
+			joinedHeight++;
 		}
-	}// end fixNodeData()
-		// @param: x, the child of the deleted node from remove(RedBlackNode v)
-		// Restores the Red Black properties that may have been violated during
-		// the removal of a node in remove(RedBlackNode v)
-
-	private void removeFixup(RedBlackNode<T> x) {
-		RedBlackNode<T> w;
-		// While we haven't fixed the tree completely...
-		while (x != root && x.color == RedBlackNode.BLACK) {
-			// if x is it's parent's left child
-			if (x == x.parent.left) {
-				// set w = x's sibling
-				w = x.parent.right;
-				// Case 1, w's color is red.
-				if (w.color == RedBlackNode.RED) {
-					w.color = RedBlackNode.BLACK;
-					x.parent.color = RedBlackNode.RED;
-					leftRotate(x.parent);
-					w = x.parent.right;
-				}
-				// Case 2, both of w's children are black
-				if (w.left.color == RedBlackNode.BLACK
-						&& w.right.color == RedBlackNode.BLACK) {
-					w.color = RedBlackNode.RED;
-					x = x.parent;
-				}
-				// Case 3 / Case 4
-				else {
-					// Case 3, w's right child is black
-					if (w.right.color == RedBlackNode.BLACK) {
-						w.left.color = RedBlackNode.BLACK;
-						w.color = RedBlackNode.RED;
-						rightRotate(w);
-						w = x.parent.right;
-					}
-					// Case 4, w = black, w.right = red
-					w.color = x.parent.color;
-					x.parent.color = RedBlackNode.BLACK;
-					w.right.color = RedBlackNode.BLACK;
-					leftRotate(x.parent);
-					x = root;
-				}
-			}
-			// if x is it's parent's right child
-			else {
-				// set w to x's sibling
-				w = x.parent.left;
-				// Case 1, w's color is red
-				if (w.color == RedBlackNode.RED) {
-					w.color = RedBlackNode.BLACK;
-					x.parent.color = RedBlackNode.RED;
-					rightRotate(x.parent);
-					w = x.parent.left;
-				}
-				// Case 2, both of w's children are black
-				if (w.right.color == RedBlackNode.BLACK
-						&& w.left.color == RedBlackNode.BLACK) {
-					w.color = RedBlackNode.RED;
-					x = x.parent;
-				}
-				// Case 3 / Case 4
-				else {
-					// Case 3, w's left child is black
-					if (w.left.color == RedBlackNode.BLACK) {
-						w.right.color = RedBlackNode.BLACK;
-						w.color = RedBlackNode.RED;
-						leftRotate(w);
-						w = x.parent.left;
-					}
-					// Case 4, w = black, and w.left = red
-					w.color = x.parent.color;
-					x.parent.color = RedBlackNode.BLACK;
-					w.left.color = RedBlackNode.BLACK;
-					rightRotate(x.parent);
-					x = root;
-				}
-			}
-		}// end while
-			// set x to black to ensure there is no violation of
-			// RedBlack tree Properties
-		x.color = RedBlackNode.BLACK;
-	}// end removeFixup(RedBlackNode x)
+		return joined;
+	}
+
+	// Goes down the right spine of left to the black node as high as right
+	// and hangs node and right there, rebalancing on the way back up.
+	private RedBlackNode<T> joinRight(RedBlackNode<T> left, int leftHeight,
+			RedBlackNode<T> node, RedBlackNode<T> right, int rightHeight) {
+		if (left.color == RedBlackNode.BLACK && leftHeight == rightHeight) {
+			node.color = RedBlackNode.RED;
+			return link(left, node, right);
+		}
+		RedBlackNode<T> spine = joinRight(left.right, leftHeight
+				- (left.color == RedBlackNode.BLACK ? 1 : 0), node, right,
+				rightHeight);
+		link(left.left, left, spine);
+		if (left.color == RedBlackNode.BLACK
+				&& spine.color == RedBlackNode.RED
+				&& spine.right.color == RedBlackNode.RED) {
+			recorder.rotation();
+			spine.right.color = RedBlackNode.BLACK;
+			link(left.left, left, spine.left);
+			return link(left, spine, spine.right);
+		}
+		return left;
+	}
+
+	private RedBlackNode<T> joinLeft(RedBlackNode<T> left, int leftHeight,
+			RedBlackNode<T> node, RedBlackNode<T> right, int rightHeight) {
+		if (right.color == RedBlackNode.BLACK && rightHeight == leftHeight) {
+			node.color = RedBlackNode.RED;
+			return link(left, node, right);
+		}
+		RedBlackNode<T> spine = joinLeft(left, leftHeight, node, right.left,
+				rightHeight - (right.color == RedBlackNode.BLACK ? 1 : 0));
+		link(spine, right, right.right);
+		if (right.color == RedBlackNode.BLACK
+				&& spine.color == RedBlackNode.RED
+				&& spine.left.color == RedBlackNode.RED) {
+			recorder.rotation();
+			spine.left.color = RedBlackNode.BLACK;
+			link(spine.right, right, right.right);
+			return link(spine.left, spine, right);
+		}
+		return right;
+	}
+
+	// join without a middle node: the last node of left takes its place
+	private RedBlackNode<T> join2(RedBlackNode<T> left, int leftHeight,
+			RedBlackNode<T> right, int rightHeight) {
+		if (isNil(left)) {
+			joinedHeight = rightHeight;
+			return right;
+		}
+		if (isNil(right)) {
+			joinedHeight = leftHeight;
+			return left;
+		}
+		RedBlackNode<T> last = maximum(left);
+		left = removeLast(left, leftHeight);
+		return join(left, joinedHeight, last, right, rightHeight);
+	}
+
+	// @return: node's subtree without its last node, whose black height is
+	// left in joinedHeight
+	private RedBlackNode<T> removeLast(RedBlackNode<T> node, int height) {
+		int childHeight = height - (node.color == RedBlackNode.BLACK ? 1 : 0);
+		if (isNil(node.right)) {
+			joinedHeight = childHeight;
+			return node.left;
+		}
+		RedBlackNode<T> right = removeLast(node.right, childHeight);
+		return join(node.left, childHeight, node, right, joinedHeight);
+	}
+		// @param: z, the RedBlackNode which is to be removed from the the tree
+		// Remove's z from the RedBlackTree rooted at root
+
+	public void remove(RedBlackNode<T> v) {
+		removeNode(lookup(v.key, TreeStats.Operation.DELETE));
+	}// end remove(RedBlackNode v)
+		// @param: key, the key to be removed from the tree
+		// @return: true if a node with key was found and removed
+
+	public boolean remove(T key) {
+		RedBlackNode<T> z = lookup(key, TreeStats.Operation.DELETE);
+		if (z == null)
+			return false;
+		removeNode(z);
+		return true;
+	}// end remove(T key)
 		// @param: key, the key whose node we want to search for
 		// @return: returns a node with the key, key, if not found, returns null
 		// Searches for a node with key k and returns the first such node, if no
 		// such node is found returns null
 
 	public RedBlackNode<T> search(T key) {
+		return lookup(key, TreeStats.Operation.SEARCH);
+	}// end search(int key)
+		// @param: op, the kind of operation the search is counted as
+		// @return: the node holding key, null if there is none
+
+	private RedBlackNode<T> lookup(T key, TreeStats.Operation op) {
 		// Initialize a pointer to the root to traverse the tree
 		RedBlackNode<T> current = root;
+		// the number of nodes key is compared with
+		int path = 0;
+		// common prefixes of key with the nearest smaller and larger
+		// ancestors, see PrefixComparator
+		int lowPrefix = 0;
+		int highPrefix = 0;
 		// While we haven't reached the end of the tree
 		while (!isNil(current)) {
+			// one comparison per node
+			int c = compare(key, current.key, Math.min(lowPrefix, highPrefix));
+			path++;
 			// If we have found a node with a key equal to key
-			if (current.key.equals(key))
-				// return that node and exit search(int)
+			if (c == 0) {
+				// return that node and exit find
+				recorder.operation(op, path);
 				return current;
+			}
 			// go left or right based on value of current and key
-			else if (current.key.compareTo(key) < 0)
+			else if (c > 0) {
+				lowPrefix = c - 1;
 				current = current.right;
+			}
 			// go left or right based on value of current and key
-			else
+			else {
+				highPrefix = -c - 1;
 				current = current.left;
+			}
 		}
 		// we have not found a node whose key is "key"
+		recorder.operation(op, path);
 		return null;
-	}// end search(int key)
+	}// end lookup(T key, Operation op)
 		// @param: key, any Comparable object
 		// @return: return's the number of elements greater than key
 
 	public int numGreater(T key) {
-		// Call findNumGreater(root, key) which will return the number
-		// of nodes whose key is greater than key
-		return findNumGreater(root, key);
+		// Every key is either <= key or greater than it
+		return size() - countLessOrEqual(key);
 	}// end numGreater(int key)
 		// @param: key, any Comparable object
 		// @return: return's teh number of elements smaller than key
 
 	public int numSmaller(T key) {
-		// Call findNumSmaller(root,key) which will return
-		// the number of nodes whose key is greater than key
-		return findNumSmaller(root, key);
+		return countLess(key);
 	}// end numSmaller(int key)
+		// @param: key, any Comparable object
+		// @return: the number of keys smaller than key
+
+	public int countLess(T key) {
+		return countBelow(root, key, false);
+	}// end countLess(T key)
+		// @param: key, any Comparable object
+		// @return: the number of keys smaller than or equal to key
+
+	public int countLessOrEqual(T key) {
+		return countBelow(root, key, true);
+	}// end countLessOrEqual(T key)
+		// @param: lo, hi, the bounds of the range, both inclusive
+		// @return: the number of keys k with lo <= k <= hi, 0 if lo > hi
+
+	public int countBetween(T lo, T hi) {
+		if (compare(lo, hi) > 0)
+			return 0;
+		return countLessOrEqual(hi) - countLess(lo);
+	}// end countBetween(T lo, T hi)
+		// @param: node, the root of the subtree to count in
+		// @param: inclusive, whether keys equal to key are counted
+		// @return: the number of keys below node smaller than key, or smaller
+		// than or equal to it if inclusive
+		// Walks a single path down, so it takes O(log(n)) and no stack.
+
+	private int countBelow(RedBlackNode<T> node, T key, boolean inclusive) {
+		int count = 0;
+		while (!isNil(node)) {
+			int c = compare(key, node.key);
+			// node and everything to its left are counted, go right
+			if (c > 0 || (c == 0 && inclusive)) {
+				count += 1 + node.numLeft;
+				node = node.right;
+			}
+			// node and everything to its right are not, go left
+			else
+				node = node.left;
+		}
+		return count;
+	}// end countBelow(RedBlackNode node, T key, boolean inclusive)
 		// @param: node, the root of the tree, the key who we must
 		// compare other node key's to.
 		// @return: the number of nodes greater than key.
 
+	/**
+	 * @deprecated use {@link #numGreater(Comparable)}, which counts over the
+	 *             whole tree without a node argument
+	 */
+	@Deprecated
 	public int findNumGreater(RedBlackNode<T> node, T key) {
-		// Base Case: if node is nil, return 0
-		if (isNil(node))
-			return 0;
-		// If key is less than node.key, all elements right of node are
-		// greater than key, add this to our total and look to the left
-		else if (key.compareTo(node.key) < 0)
-			return 1 + node.numRight + findNumGreater(node.left, key);
-		// If key is greater than node.key, then look to the right as
-		// all elements to the left of node are smaller than key
-		else
-			return findNumGreater(node.right, key);
+		return isNil(node) ? 0 : size(node) - countBelow(node, key, true);
 	}// end findNumGreater(RedBlackNode, int key)
 
 	/**
 	 * Returns sorted list of keys greater than key. Size of list will not
-	 * exceed maxReturned
+	 * exceed maxReturned. Takes O(log(n) + maxReturned): the walk stops as
+	 * soon as maxReturned keys are found.
 	 * 
 	 * @param key
 	 *            Key to search for
 	 * @param maxReturned
-	 *            Maximum number of results to return
+	 *            Maximum number of results to return, none if it is not
+	 *            positive
 	 * @return List of keys greater than key. List may not exceed maxReturned
 	 */
 	public List<T> getGreaterThan(T key, Integer maxReturned) {
-		List<T> list = new ArrayList<T>();
-		getGreaterThan(root, key, list);
-		return list.subList(0, Math.min(maxReturned, list.size()));
+		List<T> list = new ArrayList<T>(Math.max(0,
+				Math.min(maxReturned, size())));
+		getGreaterThan(key, maxReturned, list::add);
+		return list;
 	}
 
-	private void getGreaterThan(RedBlackNode<T> node, T key, List<T> list) {
-		if (isNil(node)) {
-			return;
-		} else if (node.key.compareTo(key) > 0) {
-			getGreaterThan(node.left, key, list);
-			list.add(node.key);
-			getGreaterThan(node.right, key, list);
-		} else {
-			getGreaterThan(node.right, key, list);
+	/**
+	 * Passes the keys greater than key to action in ascending order, at most
+	 * maxReturned of them.
+	 * 
+	 * @return the number of keys passed to action
+	 */
+	public int getGreaterThan(T key, int maxReturned, Consumer<? super T> action) {
+		int count = 0;
+		for (RedBlackNode<T> node = higherNode(key, false); count < maxReturned
+				&& !isNil(node); node = treeSuccessor(node)) {
+			action.accept(node.key);
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Fills dest, starting at index 0, with the keys greater than key in
+	 * ascending order, at most dest.length of them.
+	 * 
+	 * @return the number of keys written to dest
+	 */
+	public int getGreaterThan(T key, T[] dest) {
+		int count = 0;
+		for (RedBlackNode<T> node = higherNode(key, false); count < dest.length
+				&& !isNil(node); node = treeSuccessor(node)) {
+			dest[count++] = node.key;
 		}
+		return count;
+	}
+
+	/**
+	 * Returns the keys smaller than key in descending order, closest to key
+	 * first. Size of list will not exceed maxReturned.
+	 * 
+	 * @param key
+	 *            Key to search for
+	 * @param maxReturned
+	 *            Maximum number of results to return, none if it is not
+	 *            positive
+	 * @return List of keys smaller than key. List may not exceed maxReturned
+	 */
+	public List<T> getLessThan(T key, Integer maxReturned) {
+		List<T> list = new ArrayList<T>(Math.max(0,
+				Math.min(maxReturned, size())));
+		getLessThan(key, maxReturned, list::add);
+		return list;
+	}
+
+	/**
+	 * Passes the keys smaller than key to action in descending order, at most
+	 * maxReturned of them.
+	 * 
+	 * @return the number of keys passed to action
+	 */
+	public int getLessThan(T key, int maxReturned, Consumer<? super T> action) {
+		int count = 0;
+		for (RedBlackNode<T> node = lowerNode(key, false); count < maxReturned
+				&& !isNil(node); node = treePredecessor(node)) {
+			action.accept(node.key);
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Fills dest, starting at index 0, with the keys smaller than key in
+	 * descending order, at most dest.length of them.
+	 * 
+	 * @return the number of keys written to dest
+	 */
+	public int getLessThan(T key, T[] dest) {
+		int count = 0;
+		for (RedBlackNode<T> node = lowerNode(key, false); count < dest.length
+				&& !isNil(node); node = treePredecessor(node)) {
+			dest[count++] = node.key;
+		}
+		return count;
 	}
 
 	// @param: node, the root of the tree, the key who we must compare other
 	// node key's to.
 	// @return: the number of nodes smaller than key.
+	/**
+	 * @deprecated use {@link #countLess(Comparable)}, which counts over the
+	 *             whole tree without a node argument
+	 */
+	@Deprecated
 	public int findNumSmaller(RedBlackNode<T> node, T key) {
-		// Base Case: if node is nil, return 0
-		if (isNil(node))
-			return 0;
-		// If key is less than node.key, look to the left as all
-		// elements on the right of node are greater than key
-		else if (key.compareTo(node.key) <= 0)
-			return findNumSmaller(node.left, key);
-		// If key is larger than node.key, all elements to the left of
-		// node are smaller than key, add this to our total and look
-		// to the right.
-		else
-			return 1 + node.numLeft + findNumSmaller(node.right, key);
+		return countBelow(node, key, false);
 	}// end findNumSmaller(RedBlackNode nod, int key)
-		// @param: node, the RedBlackNode we must check to see whether it's nil
-		// @return: return's true of node is nil and false otherwise
-
-	private boolean isNil(RedBlackNode node) {
-		// return appropriate value
-		return node == nil;
-	}// end isNil(RedBlackNode node)
 		// @return: return's the size of the tree
 		// Return's the # of nodes including the root which the RedBlackTree
 		// rooted at root has.
 
 	public int size() {
-		// Return the number of nodes to the root's left + the number of
-		// nodes on the root's right + the root itself.
-		return root.numLeft + root.numRight + 1;
+		return size(root);
 	}// end size()
+		// @return: the shape of the tree, measured in O(n), and the costs of
+		// the operations since the last resetStats()
+
+	public TreeStats stats() {
+		return super.stats();
+	}// end stats()
+		// Zeroes the operation costs reported by stats()
+
+	public void resetStats() {
+		recorder.reset();
+	}// end resetStats()
+
+	/**
+	 * Walks the whole tree and checks the binary search tree order, the
+	 * red-black properties, the parent links and every numLeft and numRight.
+	 * Takes O(n), for test purposes.
+	 * 
+	 * @throws IllegalStateException
+	 *             describing the first violation found
+	 */
+	public void checkInvariants() {
+		if (root.color != RedBlackNode.BLACK)
+			throw new IllegalStateException("root is red");
+		if (!isNil(root) && !isNil(root.parent))
+			throw new IllegalStateException("root has a parent");
+		if (nil.color != RedBlackNode.BLACK)
+			throw new IllegalStateException("nil is red");
+		checkSubtree(root, null, null);
+	}// end checkInvariants()
+		// @param: node, the root of the subtree to check
+		// @param: lo, hi, bounds the keys of the subtree must lie in, null
+		// for none
+		// @return: the black height of the subtree
+
+	private int checkSubtree(RedBlackNode<T> node, T lo, T hi) {
+		if (isNil(node))
+			return 1;
+		if ((lo != null && compare(node.key, lo) < 0)
+				|| (hi != null && compare(node.key, hi) > 0))
+			throw new IllegalStateException("key out of order: " + node.key);
+		if (node.color == RedBlackNode.RED
+				&& (node.left.color == RedBlackNode.RED || node.right.color == RedBlackNode.RED))
+			throw new IllegalStateException("red node with a red child: "
+					+ node.key);
+		if ((!isNil(node.left) && node.left.parent != node)
+				|| (!isNil(node.right) && node.right.parent != node))
+			throw new IllegalStateException("broken parent link below "
+					+ node.key);
+		if (node.numLeft != size(node.left)
+				|| node.numRight != size(node.right))
+			throw new IllegalStateException("wrong counts at " + node.key
+					+ ": " + node.numLeft + "/" + node.numRight);
+		int leftHeight = checkSubtree(node.left, lo, node.key);
+		int rightHeight = checkSubtree(node.right, node.key, hi);
+		if (leftHeight != rightHeight)
+			throw new IllegalStateException("unequal black heights at "
+					+ node.key);
+		return leftHeight + (node.color == RedBlackNode.BLACK ? 1 : 0);
+	}// end checkSubtree(RedBlackNode node, T lo, T hi)
 }// end class RedBlackTree
@@ -0,0 +1,451 @@
+package structures.tree;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A sorted map on a red-black tree. Values are kept in the tree nodes next to
+ * their keys, so one descent answers both "where is it" and "what is it", and
+ * the numLeft/numRight counts of {@link RedBlackNode} give rank and select in
+ * O(log(n)).
+ *
+ * Besides the Map operations it offers the navigation of
+ * java.util.NavigableMap: floor, ceiling, higher, lower, first, last and poll,
+ * and live headMap/tailMap views whose size() is O(log(n)).
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class RedBlackTreeMap<K extends Comparable<K>, V> extends AbstractMap<K, V> {
+	private final Tree tree;
+	// bumped on every structural change, checked by iterators
+	private int modCount;
+	private Set<Map.Entry<K, V>> entrySet;
+
+	static final class MapNode<K extends Comparable<K>, V> extends
+			RedBlackNode<K> implements Map.Entry<K, V> {
+		V value;
+
+		MapNode(K key, V value) {
+			super(key);
+			this.value = value;
+		}
+
+		public K getKey() {
+			return key;
+		}
+
+		public V getValue() {
+			return value;
+		}
+
+		public V setValue(V value) {
+			V old = this.value;
+			this.value = value;
+			return old;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Map.Entry))
+				return false;
+			Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+			return eq(key, e.getKey()) && eq(value, e.getValue());
+		}
+
+		public int hashCode() {
+			return (key == null ? 0 : key.hashCode())
+					^ (value == null ? 0 : value.hashCode());
+		}
+
+		public String toString() {
+			return key + "=" + value;
+		}
+	}
+
+	private final class Tree extends AbstractRedBlackTree<K> {
+		Tree(Comparator<? super K> comparator) {
+			super(comparator);
+		}
+	}
+
+	public RedBlackTreeMap() {
+		this(null);
+	}
+
+	/**
+	 * @param comparator
+	 *            orders the keys, null for their natural order
+	 */
+	public RedBlackTreeMap(Comparator<? super K> comparator) {
+		tree = new Tree(comparator);
+	}
+
+	/**
+	 * @return the comparator ordering the keys, null for their natural order
+	 */
+	public Comparator<? super K> comparator() {
+		return tree.comparator;
+	}
+
+	private static boolean eq(Object a, Object b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	@SuppressWarnings("unchecked")
+	private MapNode<K, V> entry(RedBlackNode<K> node) {
+		return tree.isNil(node) ? null : (MapNode<K, V>) node;
+	}
+
+	private static <K> K keyOf(Map.Entry<K, ?> entry) {
+		return entry == null ? null : entry.getKey();
+	}
+
+	public int size() {
+		return tree.size(tree.root);
+	}
+
+	// counts the lookup as an operation of kind op
+	@SuppressWarnings("unchecked")
+	private MapNode<K, V> getEntry(Object key, TreeStats.Operation op) {
+		if (key == null)
+			throw new NullPointerException();
+		return entry(tree.find((K) key, op));
+	}
+
+	public boolean containsKey(Object key) {
+		return getEntry(key, TreeStats.Operation.SEARCH) != null;
+	}
+
+	public V get(Object key) {
+		MapNode<K, V> e = getEntry(key, TreeStats.Operation.SEARCH);
+		return e == null ? null : e.value;
+	}
+
+	/**
+	 * Associates value with key, O(log(n)).
+	 *
+	 * @return the previous value of key, null if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(K key, V value) {
+		if (key == null)
+			throw new NullPointerException();
+		MapNode<K, V> e = new MapNode<K, V>(key, value);
+		RedBlackNode<K> found = tree.insertNode(e);
+		if (found != e)
+			return ((MapNode<K, V>) found).setValue(value);
+		modCount++;
+		return null;
+	}
+
+	/**
+	 * Removes key, O(log(n)).
+	 *
+	 * @return the value key had, null if it was not present
+	 */
+	public V remove(Object key) {
+		MapNode<K, V> e = getEntry(key, TreeStats.Operation.DELETE);
+		if (e == null)
+			return null;
+		deleteEntry(e);
+		return e.value;
+	}
+
+	private void deleteEntry(MapNode<K, V> e) {
+		tree.removeNode(e);
+		modCount++;
+	}
+
+	public void clear() {
+		tree.root = tree.nil;
+		modCount++;
+	}
+
+	/**
+	 * Measures the shape of the tree and reports it with the costs of the
+	 * operations since the last reset. O(n)
+	 */
+	public TreeStats stats() {
+		return tree.stats();
+	}
+
+	/**
+	 * Zeroes the operation costs reported by stats.
+	 */
+	public void resetStats() {
+		tree.recorder.reset();
+	}
+
+	/**
+	 * @return the number of keys smaller than key
+	 */
+	public int rank(K key) {
+		return tree.rank(key, false);
+	}
+
+	/**
+	 * @param index
+	 *            position in key order, counting from 0
+	 * @return the entry with the index-th smallest key
+	 */
+	public Map.Entry<K, V> select(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException(
+					"index should be in the range, but " + index);
+		}
+		return entry(tree.select(index));
+	}
+
+	public Map.Entry<K, V> firstEntry() {
+		return entry(tree.minimum(tree.root));
+	}
+
+	public Map.Entry<K, V> lastEntry() {
+		return entry(tree.maximum(tree.root));
+	}
+
+	public K firstKey() {
+		return key(firstEntry());
+	}
+
+	public K lastKey() {
+		return key(lastEntry());
+	}
+
+	public Map.Entry<K, V> pollFirstEntry() {
+		MapNode<K, V> e = entry(tree.minimum(tree.root));
+		if (e != null)
+			deleteEntry(e);
+		return e;
+	}
+
+	public Map.Entry<K, V> pollLastEntry() {
+		MapNode<K, V> e = entry(tree.maximum(tree.root));
+		if (e != null)
+			deleteEntry(e);
+		return e;
+	}
+
+	/** @return the entry with the greatest key <= key, null if none */
+	public Map.Entry<K, V> floorEntry(K key) {
+		return entry(tree.lowerNode(key, true));
+	}
+
+	/** @return the entry with the least key >= key, null if none */
+	public Map.Entry<K, V> ceilingEntry(K key) {
+		return entry(tree.higherNode(key, true));
+	}
+
+	/** @return the entry with the least key > key, null if none */
+	public Map.Entry<K, V> higherEntry(K key) {
+		return entry(tree.higherNode(key, false));
+	}
+
+	/** @return the entry with the greatest key < key, null if none */
+	public Map.Entry<K, V> lowerEntry(K key) {
+		return entry(tree.lowerNode(key, false));
+	}
+
+	public K floorKey(K key) {
+		return keyOf(floorEntry(key));
+	}
+
+	public K ceilingKey(K key) {
+		return keyOf(ceilingEntry(key));
+	}
+
+	public K higherKey(K key) {
+		return keyOf(higherEntry(key));
+	}
+
+	public K lowerKey(K key) {
+		return keyOf(lowerEntry(key));
+	}
+
+	private static <K> K key(Map.Entry<K, ?> entry) {
+		if (entry == null)
+			throw new NoSuchElementException();
+		return entry.getKey();
+	}
+
+	/**
+	 * @return a live view of the entries with keys smaller than toKey (or
+	 *         equal to it if inclusive)
+	 */
+	public RedBlackTreeMap<K, V>.SubMap headMap(K toKey, boolean inclusive) {
+		return new SubMap(null, false, toKey, inclusive);
+	}
+
+	/**
+	 * @return a live view of the entries with keys greater than fromKey (or
+	 *         equal to it if inclusive)
+	 */
+	public RedBlackTreeMap<K, V>.SubMap tailMap(K fromKey, boolean inclusive) {
+		return new SubMap(fromKey, inclusive, null, false);
+	}
+
+	public Set<Map.Entry<K, V>> entrySet() {
+		if (entrySet == null) {
+			entrySet = new AbstractSet<Map.Entry<K, V>>() {
+				public Iterator<Map.Entry<K, V>> iterator() {
+					return new EntryIterator(entry(tree.minimum(tree.root)),
+							null);
+				}
+
+				public int size() {
+					return RedBlackTreeMap.this.size();
+				}
+			};
+		}
+		return entrySet;
+	}
+
+	private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+		private MapNode<K, V> next;
+		private MapNode<K, V> lastReturned;
+		// stop before this entry, null to run to the end
+		private final MapNode<K, V> fence;
+		private int expectedModCount = modCount;
+
+		EntryIterator(MapNode<K, V> first, MapNode<K, V> fence) {
+			this.next = first == fence ? null : first;
+			this.fence = fence;
+		}
+
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		public Map.Entry<K, V> next() {
+			if (next == null)
+				throw new NoSuchElementException();
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			lastReturned = next;
+			next = entry(tree.successor(next));
+			if (next == fence)
+				next = null;
+			return lastReturned;
+		}
+
+		public void remove() {
+			if (lastReturned == null)
+				throw new IllegalStateException();
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			deleteEntry(lastReturned);
+			expectedModCount = modCount;
+			lastReturned = null;
+		}
+	}
+
+	/**
+	 * A range of the map. Reads and writes go straight to the map; keys
+	 * outside the range are not visible and cannot be added.
+	 */
+	public final class SubMap extends AbstractMap<K, V> {
+		// null means unbounded
+		private final K lo;
+		private final boolean loInclusive;
+		private final K hi;
+		private final boolean hiInclusive;
+
+		SubMap(K lo, boolean loInclusive, K hi, boolean hiInclusive) {
+			this.lo = lo;
+			this.loInclusive = loInclusive;
+			this.hi = hi;
+			this.hiInclusive = hiInclusive;
+		}
+
+		private boolean inRange(K key) {
+			if (lo != null) {
+				int c = tree.compare(key, lo);
+				if (c < 0 || (c == 0 && !loInclusive))
+					return false;
+			}
+			if (hi != null) {
+				int c = tree.compare(key, hi);
+				if (c > 0 || (c == 0 && !hiInclusive))
+					return false;
+			}
+			return true;
+		}
+
+		@SuppressWarnings("unchecked")
+		private boolean inRangeObject(Object key) {
+			return inRange((K) key);
+		}
+
+		private MapNode<K, V> lowest() {
+			RedBlackNode<K> node = lo == null ? tree.minimum(tree.root) : tree
+					.higherNode(lo, loInclusive);
+			MapNode<K, V> e = entry(node);
+			return e != null && inRange(e.key) ? e : null;
+		}
+
+		private MapNode<K, V> highest() {
+			RedBlackNode<K> node = hi == null ? tree.maximum(tree.root) : tree
+					.lowerNode(hi, hiInclusive);
+			MapNode<K, V> e = entry(node);
+			return e != null && inRange(e.key) ? e : null;
+		}
+
+		/** O(log(n)) through the subtree counts */
+		public int size() {
+			int below = lo == null ? 0 : tree.rank(lo, !loInclusive);
+			int upTo = hi == null ? RedBlackTreeMap.this.size() : tree.rank(
+					hi, hiInclusive);
+			return Math.max(upTo - below, 0);
+		}
+
+		public boolean containsKey(Object key) {
+			return inRangeObject(key) && RedBlackTreeMap.this.containsKey(key);
+		}
+
+		public V get(Object key) {
+			return inRangeObject(key) ? RedBlackTreeMap.this.get(key) : null;
+		}
+
+		public V put(K key, V value) {
+			if (!inRange(key))
+				throw new IllegalArgumentException("key out of range: " + key);
+			return RedBlackTreeMap.this.put(key, value);
+		}
+
+		public V remove(Object key) {
+			return inRangeObject(key) ? RedBlackTreeMap.this.remove(key) : null;
+		}
+
+		public K firstKey() {
+			return key(lowest());
+		}
+
+		public K lastKey() {
+			return key(highest());
+		}
+
+		public Set<Map.Entry<K, V>> entrySet() {
+			return new AbstractSet<Map.Entry<K, V>>() {
+				public Iterator<Map.Entry<K, V>> iterator() {
+					MapNode<K, V> first = lowest();
+					MapNode<K, V> last = highest();
+					if (first == null || last == null
+							|| tree.compare(first.key, last.key) > 0)
+						return new EntryIterator(null, null);
+					return new EntryIterator(first, entry(tree
+							.successor(last)));
+				}
+
+				public int size() {
+					return SubMap.this.size();
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,308 @@
+package structures.tree;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Consumer;
+
+/**
+ * A scapegoat tree (Galperin and Rivest): a binary search tree whose nodes
+ * hold only a key and two children, with no parent link, height, color or
+ * count. It stays balanced by rebuilding instead of rotating.
+ *
+ * An insert that lands deeper than log(n) / log(1 / alpha) walks back up
+ * its path to the first ancestor whose larger subtree holds more than alpha
+ * of its nodes, the scapegoat, and rebuilds the scapegoat's subtree
+ * perfectly balanced in time linear in its size. A delete rebuilds the whole
+ * tree once n falls below alpha times the most nodes it held since the last
+ * such rebuild. Search takes O(log n) in the worst case, insert and delete
+ * O(log n) amortized. A smaller alpha keeps the tree lower at the price of
+ * more rebuilds.
+ *
+ * Like {@link AVLTree} a key is stored at most once.
+ *
+ * @param <T>
+ */
+public class ScapegoatTree<T extends Comparable<? super T>> {
+
+	private static final class Node<T> {
+		T key;
+		Node<T> left;
+		Node<T> right;
+
+		Node(T key) {
+			this.key = key;
+		}
+	}
+
+	private Node<T> root;
+	private int size;
+	// the most nodes held since the whole tree was last rebuilt
+	private int maxSize;
+	private final double alpha;
+	// log(1 / alpha), to turn a size into a depth bound
+	private final double logInverseAlpha;
+	// orders the keys, null for their natural order
+	private final Comparator<? super T> comparator;
+	// the nodes insert walked through, root first
+	private Node<T>[] path = newArray(32);
+
+	public ScapegoatTree() {
+		this(2.0 / 3, null);
+	}
+
+	/**
+	 * @param alpha
+	 *            how unbalanced a subtree may get, between 0.5 (perfectly
+	 *            balanced, rebuilt all the time) and 1 (never rebuilt)
+	 * @param comparator
+	 *            orders the keys, null for their natural order
+	 */
+	public ScapegoatTree(double alpha, Comparator<? super T> comparator) {
+		if (!(alpha > 0.5 && alpha < 1))
+			throw new IllegalArgumentException(
+					"alpha should be between 0.5 and 1, but " + alpha);
+		this.alpha = alpha;
+		this.logInverseAlpha = Math.log(1 / alpha);
+		this.comparator = comparator;
+	}
+
+	/**
+	 * @return the comparator ordering the keys, null for their natural order
+	 */
+	public Comparator<? super T> comparator() {
+		return comparator;
+	}
+
+	private int compare(T a, T b) {
+		return comparator == null ? a.compareTo(b) : comparator.compare(a, b);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> Node<T>[] newArray(int length) {
+		return (Node<T>[]) new Node<?>[length];
+	}
+
+	/**
+	 * searches the tree for a key takes O(log(n))
+	 *
+	 * @param key
+	 * @return true if key is in the tree
+	 */
+	public boolean search(T key) {
+		Node<T> current = root;
+		while (current != null) {
+			int c = compare(key, current.key);
+			if (c == 0)
+				return true;
+			current = c < 0 ? current.left : current.right;
+		}
+		return false;
+	}
+
+	/**
+	 * inserts a key takes O(log(n)) amortized
+	 *
+	 * @param key
+	 * @return false if key was already present
+	 */
+	public boolean insert(T key) {
+		int depth = 0;
+		Node<T> current = root;
+		int c = 0;
+		while (current != null) {
+			c = compare(key, current.key);
+			if (c == 0)
+				return false;
+			if (depth == path.length)
+				path = Arrays.copyOf(path, depth * 2);
+			path[depth++] = current;
+			current = c < 0 ? current.left : current.right;
+		}
+		Node<T> node = new Node<T>(key);
+		if (depth == 0)
+			root = node;
+		else if (c < 0)
+			path[depth - 1].left = node;
+		else
+			path[depth - 1].right = node;
+		size++;
+		maxSize = Math.max(maxSize, size);
+		if (depth > depthBound(size))
+			rebuildScapegoat(node, depth);
+		return true;
+	}
+
+	// @return: the depth below which a tree of n nodes is alpha-balanced
+	private int depthBound(int n) {
+		return (int) (Math.log(n) / logInverseAlpha);
+	}
+
+	// Walks up from node, which is at depth, to the first ancestor holding
+	// more than alpha of its nodes on one side, and rebuilds its subtree. One
+	// exists because node is deeper than the bound. The sizes are counted on
+	// the way up: a child's size is known, its sibling's is counted.
+	private void rebuildScapegoat(Node<T> node, int depth) {
+		int childSize = 1;
+		Node<T> child = node;
+		for (int i = depth - 1; i >= 0; i--) {
+			Node<T> parent = path[i];
+			int parentSize = childSize + 1
+					+ count(parent.left == child ? parent.right : parent.left);
+			if (childSize > alpha * parentSize) {
+				Node<T> rebuilt = rebuild(parent, parentSize);
+				if (i == 0)
+					root = rebuilt;
+				else if (path[i - 1].left == parent)
+					path[i - 1].left = rebuilt;
+				else
+					path[i - 1].right = rebuilt;
+				break;
+			}
+			child = parent;
+			childSize = parentSize;
+		}
+	}
+
+	// @return: the number of nodes in the subtree
+	private int count(Node<T> node) {
+		int n = 0;
+		Node<T>[] stack = null;
+		int top = 0;
+		while (node != null) {
+			n++;
+			if (node.left != null && node.right != null) {
+				if (stack == null)
+					stack = newArray(16);
+				else if (top == stack.length)
+					stack = Arrays.copyOf(stack, top * 2);
+				stack[top++] = node.right;
+				node = node.left;
+			} else if (node.left != null) {
+				node = node.left;
+			} else if (node.right != null) {
+				node = node.right;
+			} else {
+				node = top > 0 ? stack[--top] : null;
+			}
+		}
+		return n;
+	}
+
+	// Relinks the n nodes of the subtree into a perfectly balanced one, in
+	// O(n). @return: its new root
+	private Node<T> rebuild(Node<T> subtree, int n) {
+		Node<T>[] nodes = newArray(n);
+		// in order, the nodes array doubling as the stack of pending
+		// ancestors, filled from its far end
+		int count = 0;
+		int top = n;
+		Node<T> node = subtree;
+		while (node != null || top < n) {
+			for (; node != null; node = node.left)
+				nodes[--top] = node;
+			node = nodes[top++];
+			nodes[count++] = node;
+			node = node.right;
+		}
+		return build(nodes, 0, n - 1);
+	}
+
+	// links nodes[lo..hi] into a tree of minimum height. @return: its root
+	private static <T> Node<T> build(Node<T>[] nodes, int lo, int hi) {
+		if (lo > hi)
+			return null;
+		int mid = (lo + hi) >>> 1;
+		Node<T> node = nodes[mid];
+		node.left = build(nodes, lo, mid - 1);
+		node.right = build(nodes, mid + 1, hi);
+		return node;
+	}
+
+	/**
+	 * deletes a key takes O(log(n)) amortized
+	 *
+	 * @param key
+	 * @return true if key was present
+	 */
+	public boolean delete(T key) {
+		Node<T> parent = null;
+		Node<T> node = root;
+		while (node != null) {
+			int c = compare(key, node.key);
+			if (c == 0)
+				break;
+			parent = node;
+			node = c < 0 ? node.left : node.right;
+		}
+		if (node == null)
+			return false;
+		if (node.left != null && node.right != null) {
+			// the successor's key moves up and its node is unlinked instead
+			parent = node;
+			Node<T> successor = node.right;
+			while (successor.left != null) {
+				parent = successor;
+				successor = successor.left;
+			}
+			node.key = successor.key;
+			node = successor;
+		}
+		Node<T> child = node.left != null ? node.left : node.right;
+		if (parent == null)
+			root = child;
+		else if (parent.left == node)
+			parent.left = child;
+		else
+			parent.right = child;
+		size--;
+		if (size < alpha * maxSize) {
+			if (root != null)
+				root = rebuild(root, size);
+			maxSize = size;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of keys in the tree
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return root == null;
+	}
+
+	/**
+	 * Passes the keys to action in order. O(n)
+	 */
+	public void forEach(Consumer<? super T> action) {
+		Node<T>[] stack = newArray(16);
+		int top = 0;
+		Node<T> node = root;
+		while (node != null || top > 0) {
+			for (; node != null; node = node.left) {
+				if (top == stack.length)
+					stack = Arrays.copyOf(stack, top * 2);
+				stack[top++] = node;
+			}
+			node = stack[--top];
+			action.accept(node.key);
+			node = node.right;
+		}
+	}
+
+	/**
+	 * O(n)
+	 *
+	 * @return the keys in sorted order: [1,2,3]
+	 */
+	public String toString() {
+		final StringBuilder sb = new StringBuilder("[");
+		forEach(key -> sb.append(key).append(','));
+		if (root != null)
+			sb.setLength(sb.length() - 1);
+		return sb.append(']').toString();
+	}
+}
@@ -0,0 +1,73 @@
+package structures.tree;
+
+import java.util.Comparator;
+
+/**
+ * The set operations the trees of this package offer, and the linear merge of
+ * two sorted key arrays that the mutable trees build their results from.
+ */
+enum SetOperation {
+	UNION, INTERSECTION, DIFFERENCE;
+
+	// @param: inOther, whether a key of the first operand is also in the
+	// second
+	// @return: true if the key is in the result
+	boolean keeps(boolean inOther) {
+		switch (this) {
+		case UNION:
+			return true;
+		case INTERSECTION:
+			return inOther;
+		default:
+			return !inOther;
+		}
+	}
+
+	// @return: true if the keys found only in the second operand are in the
+	// result
+	boolean keepsOther() {
+		return this == UNION;
+	}
+
+	/**
+	 * Merges the sorted keys a[0..na) and b[0..nb) into out, which must have
+	 * room for na + nb keys. Equal keys are matched pairwise, so for keys
+	 * that occur more than once a key is in the union as often as in the
+	 * operand that has more of it, and so on. Takes O(na + nb).
+	 *
+	 * @param order
+	 *            the order of the keys, null for their natural order
+	 * @return the number of keys written to out
+	 */
+	<T extends Comparable<T>> int merge(T[] a, int na, T[] b, int nb, T[] out,
+			Comparator<? super T> order) {
+		int i = 0;
+		int j = 0;
+		int m = 0;
+		while (i < na && j < nb) {
+			int c = order == null ? a[i].compareTo(b[j]) : order.compare(a[i],
+					b[j]);
+			if (c < 0) {
+				if (keeps(false))
+					out[m++] = a[i];
+				i++;
+			} else if (c > 0) {
+				if (keepsOther())
+					out[m++] = b[j];
+				j++;
+			} else {
+				if (keeps(true))
+					out[m++] = a[i];
+				i++;
+				j++;
+			}
+		}
+		for (; i < na; i++)
+			if (keeps(false))
+				out[m++] = a[i];
+		for (; j < nb; j++)
+			if (keepsOther())
+				out[m++] = b[j];
+		return m;
+	}
+}
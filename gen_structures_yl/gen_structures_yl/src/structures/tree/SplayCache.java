@@ -0,0 +1,227 @@
+package structures.tree;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * A cache bounded by the total weight of its entries (one per entry unless a
+ * weigher is given), kept in a {@link SplayTree}. Every get and put splays the
+ * entry to the root, so recently used keys gather near the top and cold ones
+ * sink to the fringe of the tree, which is where eviction takes them from.
+ * Unlike a hash table with an LRU list there are no extra links per entry, and
+ * the keys stay sorted.
+ *
+ * Entries may also expire a fixed time after they were put. An expired entry
+ * is a miss when read and is removed then; until then it keeps its weight.
+ *
+ * Like java.util.LinkedHashMap the cache is not thread safe.
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class SplayCache<K extends Comparable<? super K>, V> {
+
+	// what the tree holds, ordered by key only
+	static final class CacheEntry<K extends Comparable<? super K>, V>
+			implements Comparable<CacheEntry<K, V>> {
+		K key;
+		V value;
+		int weight;
+		// System.nanoTime() after which the entry is stale, if there is a ttl
+		long expiresAt;
+
+		CacheEntry(K key) {
+			this.key = key;
+		}
+
+		public int compareTo(CacheEntry<K, V> other) {
+			return key.compareTo(other.key);
+		}
+	}
+
+	private final SplayTree<CacheEntry<K, V>> tree = new SplayTree<CacheEntry<K, V>>();
+	// reused for every lookup, only its key is set
+	private final CacheEntry<K, V> probe = new CacheEntry<K, V>(null);
+
+	private final long maximumWeight;
+	private final ToIntBiFunction<? super K, ? super V> weigher;
+	// 0 when entries never expire
+	private final long ttlNanos;
+
+	private long weight;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * @param maximumSize
+	 *            the number of entries the cache keeps
+	 */
+	public SplayCache(long maximumSize) {
+		this(maximumSize, null, 0, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @param maximumWeight
+	 *            the total weight of the entries the cache keeps
+	 * @param weigher
+	 *            the weight of an entry, null to weigh every entry 1
+	 * @param expireAfterWrite
+	 *            how long an entry lives after it was put, 0 for ever
+	 * @param unit
+	 *            the unit of expireAfterWrite
+	 */
+	public SplayCache(long maximumWeight,
+			ToIntBiFunction<? super K, ? super V> weigher,
+			long expireAfterWrite, TimeUnit unit) {
+		if (maximumWeight < 0)
+			throw new IllegalArgumentException(
+					"maximumWeight should not be negative, but " + maximumWeight);
+		if (expireAfterWrite < 0)
+			throw new IllegalArgumentException(
+					"expireAfterWrite should not be negative, but "
+							+ expireAfterWrite);
+		this.maximumWeight = maximumWeight;
+		this.weigher = weigher;
+		this.ttlNanos = unit.toNanos(expireAfterWrite);
+	}
+
+	/**
+	 * @return the value cached for key, null if there is none or it expired
+	 */
+	public V get(K key) {
+		CacheEntry<K, V> entry = lookup(key);
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.value;
+	}
+
+	/**
+	 * Caches value for key, then evicts cold entries until the cache is back
+	 * within its maximum weight. An entry heavier than that is not cached at
+	 * all: the key loses any value it had and the other entries stay.
+	 *
+	 * @return the value key had before, null if there was none
+	 */
+	public V put(K key, V value) {
+		if (value == null)
+			throw new NullPointerException();
+		int entryWeight = weigher == null ? 1 : weigher.applyAsInt(key, value);
+		if (entryWeight < 0)
+			throw new IllegalArgumentException(
+					"weight should not be negative, but " + entryWeight);
+		CacheEntry<K, V> entry = lookup(key);
+		V old = null;
+		if (entryWeight > maximumWeight) {
+			// evicting from the fringe would empty the cache before reaching
+			// the new entry at the root
+			if (entry != null) {
+				old = entry.value;
+				unlink(entry);
+			}
+			evictions++;
+			return old;
+		}
+		if (entry != null) {
+			old = entry.value;
+			weight -= entry.weight;
+		} else {
+			entry = new CacheEntry<K, V>(key);
+			tree.insert(entry);
+		}
+		entry.value = value;
+		entry.weight = entryWeight;
+		weight += entryWeight;
+		if (ttlNanos > 0)
+			entry.expiresAt = System.nanoTime() + ttlNanos;
+		while (weight > maximumWeight) {
+			CacheEntry<K, V> victim = tree.removeFringe();
+			weight -= victim.weight;
+			evictions++;
+		}
+		return old;
+	}
+
+	/**
+	 * @return the value key had, null if there was none
+	 */
+	public V remove(K key) {
+		CacheEntry<K, V> entry = lookup(key);
+		if (entry == null)
+			return null;
+		unlink(entry);
+		return entry.value;
+	}
+
+	// Splays key's entry to the root and returns it, null if there is none.
+	// An expired entry is removed and null returned.
+	private CacheEntry<K, V> lookup(K key) {
+		if (key == null)
+			throw new NullPointerException();
+		probe.key = key;
+		boolean found = tree.contains(probe);
+		probe.key = null;
+		if (!found)
+			return null;
+		CacheEntry<K, V> entry = tree.getRootValue();
+		if (ttlNanos > 0 && System.nanoTime() - entry.expiresAt >= 0) {
+			unlink(entry);
+			return null;
+		}
+		return entry;
+	}
+
+	private void unlink(CacheEntry<K, V> entry) {
+		tree.remove(entry);
+		weight -= entry.weight;
+	}
+
+	public void clear() {
+		while (tree.removeFringe() != null)
+			;
+		weight = 0;
+	}
+
+	/**
+	 * @return the number of entries, expired ones not read since included
+	 */
+	public int size() {
+		return tree.size();
+	}
+
+	/**
+	 * @return the total weight of the entries
+	 */
+	public long weight() {
+		return weight;
+	}
+
+	public long getHitCount() {
+		return hits;
+	}
+
+	public long getMissCount() {
+		return misses;
+	}
+
+	public long getEvictionCount() {
+		return evictions;
+	}
+
+	/**
+	 * @return hits / (hits + misses), 1 before the first get
+	 */
+	public double hitRate() {
+		long requests = hits + misses;
+		return requests == 0 ? 1.0 : (double) hits / requests;
+	}
+
+	public String toString() {
+		return "SplayCache[size=" + tree.size() + ", weight=" + weight + ", hits="
+				+ hits + ", misses=" + misses + ", evictions=" + evictions
+				+ "]";
+	}
+}
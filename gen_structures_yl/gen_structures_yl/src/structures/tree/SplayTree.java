@@ -1,19 +1,153 @@
 package structures.tree;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+
 /**
  * As SplayTree reshape itself when it comes to search. the frequent elements
  * are likely to close to the root.
  * 
+ * How much reads restructure the tree is set by a {@link ReadPolicy}. With
+ * {@link ReadPolicy#DEFERRED} reads may run from any number of threads at
+ * once, concurrently with writes.
+ * 
  * @author go-mk01
  *
  * @param <T>
  */
 public class SplayTree<T extends Comparable<? super T>> {
 
+	/**
+	 * How the reads (contains, findMin and findMax) restructure the tree.
+	 * Insert and remove always splay.
+	 */
+	public enum ReadPolicy {
+		/** Every read splays: the classic splay tree. */
+		ALWAYS,
+		/** A read splays with the probability set by setSplayProbability. */
+		PROBABILISTIC,
+		/**
+		 * A read splays only when it went deeper than the depth threshold,
+		 * so reads of keys already near the root leave the tree alone.
+		 */
+		DEPTH_THRESHOLD,
+		/**
+		 * Reads never restructure the tree. They run as optimistic lock-free
+		 * reads (falling back to a shared read lock if a write got in the
+		 * way), so any number of threads may read while writers take turns.
+		 * A read deeper than the depth threshold queues its key instead of
+		 * splaying, and the queued keys are splayed by the next insert or
+		 * remove, or by applyDeferredSplays.
+		 */
+		DEFERRED
+	}
+
+	// pending deferred splays beyond this many are dropped, they are hints
+	private static final int MAX_DEFERRED = 1024;
+	// find gave up because a write got in the way of an optimistic read
+	private static final int STALE = Integer.MIN_VALUE;
+
 	private Node<T> root;
+	// the number of nodes, written by the writers only, volatile so that
+	// size() needs no lock under DEFERRED
+	private volatile int size;
+	// holds the left and right trees during a splay, see splay(T)
+	private final Node<T> header = new Node<T>(null);
+	// the costs of the operations, see stats()
+	private final TreeStats.Recorder recorder = new TreeStats.Recorder();
+
+	private final ReadPolicy policy;
+	// orders the elements, null for their natural order
+	private final Comparator<? super T> comparator;
+	private double splayProbability = 0.125;
+	private int depthThreshold = 16;
+
+	// DEFERRED only: guards the tree, and the keys reads want splayed
+	private final StampedLock lock;
+	private final ConcurrentLinkedQueue<T> deferred;
+	private final AtomicInteger deferredCount;
 
 	public SplayTree() {
+		this(ReadPolicy.ALWAYS, null);
+	}
+
+	/**
+	 * @param policy
+	 *            how reads restructure the tree
+	 */
+	public SplayTree(ReadPolicy policy) {
+		this(policy, null);
+	}
+
+	/**
+	 * @param policy
+	 *            how reads restructure the tree
+	 * @param comparator
+	 *            orders the elements, null for their natural order
+	 */
+	public SplayTree(ReadPolicy policy, Comparator<? super T> comparator) {
 		root = null;
+		this.policy = policy;
+		this.comparator = comparator;
+		if (policy == ReadPolicy.DEFERRED) {
+			lock = new StampedLock();
+			deferred = new ConcurrentLinkedQueue<T>();
+			deferredCount = new AtomicInteger();
+		} else {
+			lock = null;
+			deferred = null;
+			deferredCount = null;
+		}
+	}
+
+	public ReadPolicy getReadPolicy() {
+		return policy;
+	}
+
+	/**
+	 * @return the comparator ordering the elements, null for their natural
+	 *         order
+	 */
+	public Comparator<? super T> comparator() {
+		return comparator;
+	}
+
+	private int compare(T a, T b) {
+		return comparator == null ? a.compareTo(b) : comparator.compare(a, b);
+	}
+
+	/**
+	 * Sets how often a read splays under {@link ReadPolicy#PROBABILISTIC},
+	 * 1/8 by default.
+	 *
+	 * @param probability
+	 *            between 0 and 1
+	 */
+	public void setSplayProbability(double probability) {
+		if (!(probability >= 0 && probability <= 1))
+			throw new IllegalArgumentException(
+					"probability should be between 0 and 1, but " + probability);
+		this.splayProbability = probability;
+	}
+
+	/**
+	 * Sets the depth (edges below the root) a read must exceed to splay under
+	 * {@link ReadPolicy#DEPTH_THRESHOLD}, or to queue a splay under
+	 * {@link ReadPolicy#DEFERRED}, 16 by default.
+	 *
+	 * @param depth
+	 *            0 or more
+	 */
+	public void setDepthThreshold(int depth) {
+		if (depth < 0)
+			throw new IllegalArgumentException(
+					"depth should not be negative, but " + depth);
+		this.depthThreshold = depth;
 	}
 
 	/**
@@ -48,85 +182,97 @@ public class SplayTree<T extends Comparable<? super T>> {
 	 * Performs a splay operation to bring the node matching the given key (or
 	 * the last visited node on the access path) up to the root.
 	 *
+	 * This is the top-down splay of Sleator and Tarjan: a single descent from
+	 * the root that hangs the nodes it passes on a left tree (smaller keys)
+	 * and a right tree (greater keys), rotating on zig-zig steps, and then
+	 * assembles the three pieces under the last node reached. Hits and misses
+	 * take the same single pass, and the only extra space is the header node.
+	 * Each comparison is carried over to the next step, so every node on the
+	 * path is compared with the element once.
+	 *
 	 * @param element
 	 *            The element of the node we want to splay
+	 * @param op
+	 *            the operation the splay is counted as, null if that
+	 *            operation is counted by the caller
+	 * @return the comparison of element with the new root's element, so
+	 *         callers need not compare again; 1 if the tree is empty
 	 */
-	private void splay(T element) {
+	private int splay(T element, TreeStats.Operation op) {
 		Node<T> t = root;
-		Node<T> pops, gramps, gg;
-		pops = gramps = gg = null;
-		boolean checkGG = true;
-
-		while (true) {
-			if (t == null || element.compareTo(t.value) == 0)
-				break;
-			else if (t.left != null && element.compareTo(t.value) < 0) {
-				if (element.compareTo(t.left.value) == 0) {
+		if (t == null)
+			return 1;
+		header.left = header.right = null;
+		// the largest node of the left tree, the smallest of the right tree
+		Node<T> leftTreeMax = header;
+		Node<T> rightTreeMin = header;
+		int c = compare(element, t.value);
+		// the nodes compared with element, and the rotations done
+		int path = 1;
+		int rotations = 0;
+		while (c != 0) {
+			if (c < 0) {
+				if (t.left == null)
+					break;
+				int childC = compare(element, t.left.value);
+				path++;
+				if (childC < 0) {
+					// zig-zig: rotate right before linking
 					t = leftChildRotate(t);
-				} else if (t.left.left != null
-						&& element.compareTo(t.left.left.value) == 0) {
-					gramps = t;
-					pops = t.left;
-					t = leftChildRotate(gramps);
-					t = leftChildRotate(pops);
-					checkGG = true;
-				} else if (t.left.right != null
-						&& element.compareTo(t.left.right.value) == 0) {
-					gramps = t;
-					pops = t.left;
-					gramps.left = rightChildRotate(pops);
-					t = leftChildRotate(gramps);
-					checkGG = true;
-				} else if (element.compareTo(t.value) < 0) {
-					gg = t;
+					rotations++;
+					c = childC;
+					if (t.left == null)
+						break;
+					rightTreeMin.left = t;
+					rightTreeMin = t;
+					t = t.left;
+					c = compare(element, t.value);
+					path++;
+				} else {
+					// zig or zig-zag: link right, t.left was compared already
+					rightTreeMin.left = t;
+					rightTreeMin = t;
 					t = t.left;
+					c = childC;
 				}
-			} else if (t.right != null && element.compareTo(t.value) > 0) {
-				if (element.compareTo(t.right.value) == 0) {
+			} else {
+				if (t.right == null)
+					break;
+				int childC = compare(element, t.right.value);
+				path++;
+				if (childC > 0) {
 					t = rightChildRotate(t);
-				} else if (t.right.right != null
-						&& element.compareTo(t.right.right.value) == 0) {
-					gramps = t;
-					pops = t.right;
-					t = rightChildRotate(gramps);
-					t = rightChildRotate(pops);
-					checkGG = true;
-				} else if (t.right.left != null
-						&& element.compareTo(t.right.left.value) == 0) {
-					gramps = t;
-					pops = t.right;
-					gramps.right = leftChildRotate(pops);
-					t = rightChildRotate(gramps);
-					checkGG = true;
-				} else if (element.compareTo(t.value) > 0) {
-					gg = t;
+					rotations++;
+					c = childC;
+					if (t.right == null)
+						break;
+					leftTreeMax.right = t;
+					leftTreeMax = t;
+					t = t.right;
+					c = compare(element, t.value);
+					path++;
+				} else {
+					leftTreeMax.right = t;
+					leftTreeMax = t;
 					t = t.right;
+					c = childC;
 				}
 			}
-			// If target not found
-			else if ((t.left == null && element.compareTo(t.value) < 0)
-					|| (t.right == null && element.compareTo(t.value) > 0)) {
-				element = t.value;
-				t = root;
-				gg = null;
-			}
-
-			// Link t and its great-grandparent after a zig-zig or zig-zag
-			// operation.
-			// A new round of splaying is then begun by setting root to t.
-			if (checkGG && gg != null) {
-				int comp = t.value.compareTo(gg.value);
-				if (comp < 0)
-					gg.left = t;
-				else if (comp > 0)
-					gg.right = t;
-				t = root;
-				gg = null;
-				checkGG = false;
-			}
 		}
+		// reassemble: t's subtrees go to the side trees, which become its
+		// children
+		leftTreeMax.right = t.left;
+		rightTreeMin.left = t.right;
+		t.left = header.right;
+		t.right = header.left;
+		header.left = header.right = null;
 		// The root is now that of the final tree
 		root = t;
+		if (op != null)
+			recorder.operation(op, path);
+		recorder.rotations(rotations);
+		recorder.splay(path);
+		return c;
 	}
 
 	/**
@@ -135,69 +281,65 @@ public class SplayTree<T extends Comparable<? super T>> {
 	 * @return true if nothing in tree, false otherwise
 	 */
 	public boolean isEmpty() {
-		return root == null;
+		return size == 0;
 	}
 
 	/**
-	 * Returns the number of nodes in the tree.
+	 * Returns the number of nodes in the tree, in O(1).
 	 *
 	 * @return the number of nodes currently in the tree
 	 */
 	public int size() {
-		return isEmpty() ? 0 : size(root);
-	}
-
-	/**
-	 * Recursive helper, returns the number of nodes in a given tree
-	 *
-	 * @param t
-	 *            The tree to count through
-	 * @return The number of nodes currently in the tree
-	 */
-	private int size(Node<T> t) {
-		int count = 0;
-		if (t != null) {
-			count++;
-			count += size(t.left);
-			count += size(t.right);
-		}
-		return count;
+		return size;
 	}
 
 	/**
 	 * Adds a node with given element to the tree and then splays it to the
-	 * root.
+	 * root. The splay is done first, on the tree without the element: the
+	 * node it brings up is the new element's neighbour, and the new node
+	 * takes its place with the root on one side, in a single pass.
 	 *
 	 * @param T
 	 *            The new node's element
 	 */
 	public void insert(T item) {
-		if (item != null) {
-			root = insert(item, root);
-			splay(item);
+		if (policy != ReadPolicy.DEFERRED) {
+			insertNode(item);
+			return;
+		}
+		long stamp = lock.writeLock();
+		try {
+			drainDeferred();
+			insertNode(item);
+		} finally {
+			lock.unlockWrite(stamp);
 		}
 	}
 
-	/**
-	 * Recursive helper that performs the node insertion into a given tree.
-	 *
-	 * @param T
-	 *            The new node's element
-	 * @param t
-	 *            The root of the tree we want to insert into
-	 * @return The resulting tree's root node
-	 */
-	private Node<T> insert(T item, Node<T> t) {
-		if (t == null)
-			return new Node<T>(item);
-		else {
-			int position = item.compareTo(t.value);
-			if (position < 0)
-				t.left = insert(item, t.left);
-			else if (position > 0)
-				t.right = insert(item, t.right);
-			return t;
+	private void insertNode(T item) {
+		if (item == null)
+			return;
+		if (root == null) {
+			recorder.operation(TreeStats.Operation.INSERT, 0);
+			root = new Node<T>(item);
+			size = 1;
+			return;
 		}
+		int c = splay(item, TreeStats.Operation.INSERT);
+		if (c == 0)
+			return;
+		Node<T> node = new Node<T>(item);
+		if (c < 0) {
+			node.left = root.left;
+			node.right = root;
+			root.left = null;
+		} else {
+			node.right = root.right;
+			node.left = root;
+			root.right = null;
+		}
+		root = node;
+		size++;
 	}
 
 	/**
@@ -208,21 +350,34 @@ public class SplayTree<T extends Comparable<? super T>> {
 	 * @return true if the target was removed, false otherwise
 	 */
 	public boolean remove(T item) {
+		if (policy != ReadPolicy.DEFERRED)
+			return removeNode(item);
+		long stamp = lock.writeLock();
+		try {
+			drainDeferred();
+			return removeNode(item);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	private boolean removeNode(T item) {
 		// Splay target then delete by replacing the new root with
 		// its predecessor or the right tree root.
-		if (!isEmpty() && item != null) {
-			splay(item);
-			if (root != null && root.value.compareTo(item) == 0) {
+		if (root != null && item != null) {
+			if (splay(item, TreeStats.Operation.DELETE) == 0) {
 				if (root.left != null) {
 					Node<T> temp = root.right;
 					root = root.left;
-					splay(item);
+					splay(item, null);
 					root.right = temp;
 				} else
 					root = root.right;
+				size--;
 				return true;
 			}
 		}
+		recorder.operation(TreeStats.Operation.DELETE, 0);
 		return false;
 	}
 
@@ -230,37 +385,75 @@ public class SplayTree<T extends Comparable<? super T>> {
 	 * Finds the item with the minimum value in the tree.
 	 *
 	 * A splay operation is performed on the minimum value node to bring it to
-	 * the root.
+	 * the root, when the read policy asks for one.
 	 *
 	 * @return the item with a minimum value
 	 */
 	public T findMin() {
-		Node<T> t = root;
-		if (t != null) {
-			while (t.left != null)
-				t = t.left;
-			splay(t.value);
-			return root.value;
-		}
-		return null;
+		return findEnd(true);
 	}
 
 	/**
 	 * Finds the item with the maximum value in the tree.
 	 *
-	 * A splay operation is performed on the max value to bring it to the root.
+	 * A splay operation is performed on the max value to bring it to the root,
+	 * when the read policy asks for one.
 	 *
 	 * @return the item with a maximum value.
 	 */
 	public T findMax() {
+		return findEnd(false);
+	}
+
+	/**
+	 * @param min
+	 *            true for the minimum, false for the maximum
+	 * @return the minimum or maximum, null if the tree is empty
+	 */
+	private T findEnd(boolean min) {
+		if (policy == ReadPolicy.DEFERRED)
+			return findEndDeferred(min);
 		Node<T> t = root;
-		if (t != null) {
-			while (t.right != null)
-				t = t.right;
-			splay(t.value);
-			return root.value;
+		if (t == null)
+			return null;
+		int depth = 0;
+		for (; (min ? t.left : t.right) != null; depth++)
+			t = min ? t.left : t.right;
+		recorder.operation(TreeStats.Operation.SEARCH, depth + 1);
+		if (!splaysAt(depth))
+			return t.value;
+		splay(t.value, null);
+		return root.value;
+	}
+
+	private T findEndDeferred(boolean min) {
+		long stamp = lock.tryOptimisticRead();
+		Node<T> t = stamp == 0L ? null : root;
+		int depth = 0;
+		for (Node<T> next; t != null && (next = min ? t.left : t.right) != null; t = next) {
+			// cut short a walk through a tree being rotated under it
+			if ((++depth & 63) == 0 && !lock.validate(stamp))
+				break;
 		}
-		return null;
+		T value = t == null ? null : t.value;
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				t = root;
+				depth = 0;
+				for (Node<T> next; t != null && (next = min ? t.left : t.right) != null; t = next)
+					depth++;
+				value = t == null ? null : t.value;
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		if (value != null) {
+			recorder.operation(TreeStats.Operation.SEARCH, depth + 1);
+			if (depth > depthThreshold)
+				defer(value);
+		}
+		return value;
 	}
 
 	/**
@@ -271,10 +464,158 @@ public class SplayTree<T extends Comparable<? super T>> {
 	 * @return true if item is present in tree, false otherwise.
 	 */
 	public boolean contains(T item) {
+		if (policy == ReadPolicy.DEFERRED)
+			return containsDeferred(item);
 		if (isEmpty())
 			return false;
-		splay(item);
-		return root.value.compareTo(item) == 0;
+		if (policy == ReadPolicy.DEPTH_THRESHOLD) {
+			int depth = find(item, 0L);
+			searched(depth);
+			if (splaysAt(depth < 0 ? ~depth : depth))
+				splay(item, null);
+			return depth >= 0;
+		}
+		// toss the coin before the descent, so a splaying read descends once
+		if (!splaysAt(0)) {
+			int depth = find(item, 0L);
+			searched(depth);
+			return depth >= 0;
+		}
+		return splay(item, TreeStats.Operation.SEARCH) == 0;
+	}
+
+	private boolean containsDeferred(T item) {
+		int depth = STALE;
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0L) {
+			try {
+				depth = find(item, stamp);
+			} catch (RuntimeException e) {
+				// a node seen half-built by a concurrent write; the
+				// validation below fails and the read is redone
+			}
+		}
+		// redone under the lock, where a genuine exception is thrown again
+		if (depth == STALE || !lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				depth = find(item, 0L);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		searched(depth);
+		if ((depth < 0 ? ~depth : depth) > depthThreshold)
+			defer(item);
+		return depth >= 0;
+	}
+
+	/**
+	 * Looks item up without restructuring the tree.
+	 *
+	 * @param stamp
+	 *            an optimistic read stamp to revalidate along a long walk, 0
+	 *            under a lock or without concurrency
+	 * @return the depth of the node holding item, or ~depth of the last node
+	 *         on its path if item is absent, or STALE if the stamp was
+	 *         invalidated on the way
+	 */
+	private int find(T item, long stamp) {
+		Node<T> t = root;
+		int depth = 0;
+		while (t != null) {
+			int c = compare(item, t.value);
+			if (c == 0)
+				return depth;
+			Node<T> next = c < 0 ? t.left : t.right;
+			if (next == null)
+				break;
+			t = next;
+			depth++;
+			if (stamp != 0L && (depth & 63) == 0 && !lock.validate(stamp))
+				return STALE;
+		}
+		return ~depth;
+	}
+
+	// counts a read that found item at depth, or missed it (~depth)
+	private void searched(int depth) {
+		recorder.operation(TreeStats.Operation.SEARCH,
+				(depth < 0 ? ~depth : depth) + 1);
+	}
+
+	// @return: true if a read that went depth levels down should splay
+	private boolean splaysAt(int depth) {
+		switch (policy) {
+		case PROBABILISTIC:
+			return ThreadLocalRandom.current().nextDouble() < splayProbability;
+		case DEPTH_THRESHOLD:
+			return depth > depthThreshold;
+		default:
+			return true;
+		}
+	}
+
+	private void defer(T item) {
+		if (deferredCount.incrementAndGet() <= MAX_DEFERRED)
+			deferred.offer(item);
+		else
+			deferredCount.decrementAndGet();
+	}
+
+	/**
+	 * Splays the keys queued by reads under {@link ReadPolicy#DEFERRED}, in
+	 * the order they were read. insert and remove do this as well, so a tree
+	 * that is written to regularly needs no separate calls.
+	 *
+	 * @return the number of splays done
+	 */
+	public int applyDeferredSplays() {
+		if (policy != ReadPolicy.DEFERRED)
+			return 0;
+		long stamp = lock.writeLock();
+		try {
+			return drainDeferred();
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	// the write lock is held
+	private int drainDeferred() {
+		int applied = 0;
+		// the splays of the reads that queued them
+		recorder.attribute(TreeStats.Operation.SEARCH);
+		for (T item; (item = deferred.poll()) != null; applied++) {
+			deferredCount.decrementAndGet();
+			splay(item, null);
+		}
+		return applied;
+	}
+
+	/**
+	 * Measures the shape of the tree and reports it with the costs of the
+	 * operations since the last reset. Takes O(n), under a read lock with
+	 * {@link ReadPolicy#DEFERRED}.
+	 *
+	 * @return the shape and costs, with the splay path lengths
+	 */
+	public TreeStats stats() {
+		if (policy != ReadPolicy.DEFERRED)
+			return new TreeStats(TreeStats.histogram(root), recorder);
+		long stamp = lock.readLock();
+		try {
+			return new TreeStats(TreeStats.histogram(root), recorder);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Zeroes the operation costs reported by stats.
+	 */
+	public void resetStats() {
+		recorder.reset();
 	}
 
 	/**
@@ -320,4 +661,123 @@ public class SplayTree<T extends Comparable<? super T>> {
 		return null;
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Writes the elements to file in sorted order, see load. O(n)
+	 *
+	 * @param codec
+	 *            writes an element as bytes
+	 */
+	public void save(Path file, KeyCodec<? super T> codec) throws IOException {
+		if (policy != ReadPolicy.DEFERRED) {
+			TreeFile.write(file, TreeFile.SPLAY,
+					TreeFile.values(Traversal.IN_ORDER.iterator(root)), codec);
+			return;
+		}
+		long stamp = lock.readLock();
+		try {
+			TreeFile.write(file, TreeFile.SPLAY,
+					TreeFile.values(Traversal.IN_ORDER.iterator(root)), codec);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Reads a tree written by save, with the ALWAYS read policy.
+	 */
+	public static <T extends Comparable<? super T>> SplayTree<T> load(
+			Path file, KeyCodec<T> codec) throws IOException {
+		return load(file, codec, ReadPolicy.ALWAYS);
+	}
+
+	/**
+	 * Reads a tree written by save. The file is memory-mapped and the sorted
+	 * elements are built straight into a balanced tree, in O(n), which the
+	 * accesses then reshape as usual.
+	 *
+	 * @param codec
+	 *            reads an element from bytes
+	 * @param policy
+	 *            how reads restructure the tree
+	 */
+	public static <T extends Comparable<? super T>> SplayTree<T> load(
+			Path file, KeyCodec<T> codec, ReadPolicy policy) throws IOException {
+		return load(file, codec, policy, null);
+	}
+
+	/**
+	 * Reads a tree written by save from a tree with the given comparator.
+	 *
+	 * @param comparator
+	 *            orders the elements, null for their natural order
+	 */
+	public static <T extends Comparable<? super T>> SplayTree<T> load(
+			Path file, KeyCodec<T> codec, ReadPolicy policy,
+			Comparator<? super T> comparator) throws IOException {
+		T[] elements = TreeFile.read(file, TreeFile.SPLAY, codec, comparator,
+				true);
+		SplayTree<T> tree = new SplayTree<T>(policy, comparator);
+		tree.root = build(elements, 0, elements.length - 1);
+		tree.size = elements.length;
+		return tree;
+	}
+
+	// @return: a tree of minimum height holding the sorted elements[lo..hi]
+	private static <T extends Comparable<? super T>> Node<T> build(
+			T[] elements, int lo, int hi) {
+		if (lo > hi)
+			return null;
+		int mid = (lo + hi) >>> 1;
+		Node<T> node = new Node<T>(elements[mid]);
+		node.left = build(elements, lo, mid - 1);
+		node.right = build(elements, mid + 1, hi);
+		return node;
+	}
+
+	/**
+	 * Removes a node from the fringe of the tree and returns its value,
+	 * without splaying. Two walks go from the root to a leaf taking a random
+	 * child at each step, and the deeper of the two leaves is unlinked: in a
+	 * splay tree the deepest nodes are the ones accessed least recently.
+	 * Takes O(depth). Not for {@link ReadPolicy#DEFERRED}, which would need
+	 * the write lock.
+	 *
+	 * @return the value removed, null if the tree is empty
+	 */
+	T removeFringe() {
+		if (root == null)
+			return null;
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		Node<T> leaf = null;
+		Node<T> leafParent = null;
+		int leafDepth = -1;
+		for (int walk = 0; walk < 2; walk++) {
+			Node<T> t = root;
+			Node<T> parent = null;
+			int depth = 0;
+			while (t.left != null || t.right != null) {
+				parent = t;
+				if (t.left == null)
+					t = t.right;
+				else if (t.right == null)
+					t = t.left;
+				else
+					t = random.nextBoolean() ? t.left : t.right;
+				depth++;
+			}
+			if (depth > leafDepth) {
+				leaf = t;
+				leafParent = parent;
+				leafDepth = depth;
+			}
+		}
+		size--;
+		if (leafParent == null)
+			root = null;
+		else if (leafParent.left == leaf)
+			leafParent.left = null;
+		else
+			leafParent.right = null;
+		return leaf.value;
+	}
+}
@@ -0,0 +1,302 @@
+package structures.tree;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.LongConsumer;
+
+/**
+ * The set behind {@link LongSuccessorSet} and {@link IntSuccessorSet}: a trie
+ * of unsigned keys of a fixed number of bits, six bits per level, so every
+ * node covers 64 children and a single long tells which of them are there.
+ * A leaf is nothing but that long, one bit per key. An inner node keeps its
+ * present children packed in key order, and the child for digit d is at the
+ * number of bits set below d in the mask.
+ *
+ * A lookup reads one mask per level. A successor query goes down the key's
+ * path as far as it exists, noting the lowest node on it with a set bit
+ * beyond the key's digit, then down the first bits from that node: at most
+ * two passes over the levels, each step a shift and a count of zeros,
+ * whatever the number of keys. No query writes to the trie.
+ */
+final class SuccessorTrie {
+	private static final int BITS = 6;
+	private static final int FANOUT = 1 << BITS;
+	private static final int MASK = FANOUT - 1;
+
+	private static final class Node {
+		// bit d is set if the child, or for a leaf the key, with digit d is
+		// there
+		long mask;
+		// the present children in digit order, null in a leaf
+		Node[] children;
+
+		Node(boolean leaf) {
+			if (!leaf)
+				children = new Node[2];
+		}
+	}
+
+	private final int levels;
+	private final Node root;
+	private int size;
+
+	/**
+	 * @param bits
+	 *            the length of the keys, which are taken as unsigned
+	 */
+	SuccessorTrie(int bits) {
+		levels = (bits + BITS - 1) / BITS;
+		root = new Node(levels == 1);
+	}
+
+	// the lowest bit of the digit at level, counting from the root
+	private int shift(int level) {
+		return BITS * (levels - 1 - level);
+	}
+
+	private int digit(long key, int level) {
+		return (int) (key >>> shift(level)) & MASK;
+	}
+
+	// @return: the child of node for digit d, which is present
+	private static Node child(Node node, int d) {
+		return node.children[Long.bitCount(node.mask & ((1L << d) - 1))];
+	}
+
+	// @return: the bits of mask above d
+	private static long above(long mask, int d) {
+		return d == MASK ? 0 : mask & (-1L << (d + 1));
+	}
+
+	// @return: the bits of mask below d
+	private static long below(long mask, int d) {
+		return mask & ((1L << d) - 1);
+	}
+
+	private static long atOrBelow(long mask, int d) {
+		return d == MASK ? mask : mask & ((1L << (d + 1)) - 1);
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean contains(long key) {
+		Node node = root;
+		for (int level = 0; level < levels - 1; level++) {
+			int d = digit(key, level);
+			if ((node.mask & (1L << d)) == 0)
+				return false;
+			node = child(node, d);
+		}
+		return (node.mask & (1L << digit(key, levels - 1))) != 0;
+	}
+
+	// @return: false if key was already present
+	boolean add(long key) {
+		Node node = root;
+		for (int level = 0; level < levels - 1; level++) {
+			int d = digit(key, level);
+			long bit = 1L << d;
+			int index = Long.bitCount(node.mask & (bit - 1));
+			if ((node.mask & bit) == 0) {
+				Node child = new Node(level == levels - 2);
+				int count = Long.bitCount(node.mask);
+				Node[] children = node.children;
+				if (count == children.length) {
+					children = new Node[Math.min(count * 2, FANOUT)];
+					System.arraycopy(node.children, 0, children, 0, index);
+				}
+				System.arraycopy(node.children, index, children, index + 1,
+						count - index);
+				children[index] = child;
+				node.children = children;
+				node.mask |= bit;
+			}
+			node = node.children[index];
+		}
+		long bit = 1L << digit(key, levels - 1);
+		if ((node.mask & bit) != 0)
+			return false;
+		node.mask |= bit;
+		size++;
+		return true;
+	}
+
+	// @return: true if key was present
+	boolean remove(long key) {
+		Node node = root;
+		// the lowest node on the path that keeps a child when key goes: the
+		// nodes below it lead to key only, and go with it
+		Node keep = root;
+		int keepLevel = 0;
+		for (int level = 0; level < levels - 1; level++) {
+			int d = digit(key, level);
+			if ((node.mask & (1L << d)) == 0)
+				return false;
+			if ((node.mask & (node.mask - 1)) != 0) {
+				keep = node;
+				keepLevel = level;
+			}
+			node = child(node, d);
+		}
+		long bit = 1L << digit(key, levels - 1);
+		if ((node.mask & bit) == 0)
+			return false;
+		node.mask &= ~bit;
+		size--;
+		if (node.mask == 0 && node != root) {
+			bit = 1L << digit(key, keepLevel);
+			int index = Long.bitCount(keep.mask & (bit - 1));
+			int count = Long.bitCount(keep.mask);
+			System.arraycopy(keep.children, index + 1, keep.children, index,
+					count - index - 1);
+			keep.children[count - 1] = null;
+			keep.mask &= ~bit;
+		}
+		return true;
+	}
+
+	void clear() {
+		root.mask = 0;
+		if (root.children != null)
+			root.children = new Node[2];
+		size = 0;
+	}
+
+	/**
+	 * @return the smallest key greater than key, or equal to it if inclusive
+	 * @throws NoSuchElementException
+	 *             if there is none
+	 */
+	long next(long key, boolean inclusive) {
+		// the lowest node on the path with a set digit beyond the key's, which
+		// holds the answer if the path to key has none
+		Node branch = null;
+		int branchLevel = 0;
+		long branchDigits = 0;
+		Node node = root;
+		for (int level = 0;; level++) {
+			int d = digit(key, level);
+			long found = level == levels - 1 && inclusive ? node.mask
+					& (-1L << d) : above(node.mask, d);
+			if (found != 0) {
+				branch = node;
+				branchLevel = level;
+				branchDigits = found;
+			}
+			if (level == levels - 1 || (node.mask & (1L << d)) == 0)
+				break;
+			node = child(node, d);
+		}
+		if (branch == null)
+			throw new NoSuchElementException();
+		return minimum(branch, branchLevel,
+				Long.numberOfTrailingZeros(branchDigits),
+				prefix(key, branchLevel));
+	}
+
+	/**
+	 * @return the greatest key smaller than key, or equal to it if inclusive
+	 * @throws NoSuchElementException
+	 *             if there is none
+	 */
+	long previous(long key, boolean inclusive) {
+		Node branch = null;
+		int branchLevel = 0;
+		long branchDigits = 0;
+		Node node = root;
+		for (int level = 0;; level++) {
+			int d = digit(key, level);
+			long found = level == levels - 1 && inclusive ? atOrBelow(
+					node.mask, d) : below(node.mask, d);
+			if (found != 0) {
+				branch = node;
+				branchLevel = level;
+				branchDigits = found;
+			}
+			if (level == levels - 1 || (node.mask & (1L << d)) == 0)
+				break;
+			node = child(node, d);
+		}
+		if (branch == null)
+			throw new NoSuchElementException();
+		return maximum(branch, branchLevel,
+				63 - Long.numberOfLeadingZeros(branchDigits),
+				prefix(key, branchLevel));
+	}
+
+	// @return: the digits of key above level
+	private long prefix(long key, int level) {
+		int low = shift(level) + BITS;
+		return low >= 64 ? 0 : key >>> low << low;
+	}
+
+	// @return: the smallest key below digit d of node, at level, whose
+	// ancestors' digits are in prefix
+	private long minimum(Node node, int level, int d, long prefix) {
+		long key = prefix | (long) d << shift(level);
+		while (level < levels - 1) {
+			node = child(node, d);
+			d = Long.numberOfTrailingZeros(node.mask);
+			key |= (long) d << shift(++level);
+		}
+		return key;
+	}
+
+	private long maximum(Node node, int level, int d, long prefix) {
+		long key = prefix | (long) d << shift(level);
+		while (level < levels - 1) {
+			node = child(node, d);
+			d = 63 - Long.numberOfLeadingZeros(node.mask);
+			key |= (long) d << shift(++level);
+		}
+		return key;
+	}
+
+	/**
+	 * @return the keys greater than key in increasing order, at most
+	 *         maxReturned of them, none if it is not positive
+	 */
+	long[] greater(long key, int maxReturned) {
+		long[] result = new long[Math.max(0, Math.min(maxReturned, size))];
+		if (result.length == 0)
+			return result;
+		long last = last();
+		int count = 0;
+		while (count < result.length && Long.compareUnsigned(key, last) < 0) {
+			key = next(key, false);
+			result[count++] = key;
+		}
+		return count == result.length ? result : Arrays.copyOf(result, count);
+	}
+
+	long first() {
+		if (size == 0)
+			throw new NoSuchElementException();
+		return minimum(root, 0, Long.numberOfTrailingZeros(root.mask), 0);
+	}
+
+	long last() {
+		if (size == 0)
+			throw new NoSuchElementException();
+		return maximum(root, 0, 63 - Long.numberOfLeadingZeros(root.mask), 0);
+	}
+
+	// Passes the keys to action in increasing order. O(n)
+	void forEach(LongConsumer action) {
+		forEach(root, 0, 0, action);
+	}
+
+	private void forEach(Node node, int level, long prefix, LongConsumer action) {
+		int i = 0;
+		for (long m = node.mask; m != 0; m &= m - 1) {
+			long key = prefix
+					| (long) Long.numberOfTrailingZeros(m) << shift(level);
+			if (level == levels - 1)
+				action.accept(key);
+			else
+				forEach(node.children[i++], level + 1, key, action);
+		}
+	}
+}
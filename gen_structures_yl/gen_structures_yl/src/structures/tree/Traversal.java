@@ -0,0 +1,190 @@
+package structures.tree;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * The orders in which the trees built of {@link Node}s are walked. The walks
+ * are iterative, keeping at most O(height) nodes on a stack (O(width) on a
+ * queue for LEVEL_ORDER), so they take O(n) and do not overflow the call stack
+ * on deep trees.
+ *
+ * The tree must not change while it is walked.
+ */
+public enum Traversal {
+	/** a node, then its left subtree, then its right subtree */
+	PRE_ORDER,
+	/** the left subtree, the node, then the right subtree: sorted order */
+	IN_ORDER,
+	/** the left subtree, the right subtree, then the node */
+	POST_ORDER,
+	/** the nodes by depth, and from left to right at each depth */
+	LEVEL_ORDER;
+
+	/**
+	 * @param root
+	 *            the root of the subtree to walk, may be null
+	 * @return the nodes of the subtree in this order
+	 */
+	public <T extends Comparable<? super T>> Iterator<Node<T>> iterator(
+			Node<T> root) {
+		switch (this) {
+		case PRE_ORDER:
+			return new PreOrder<T>(root);
+		case IN_ORDER:
+			return new InOrder<T>(root);
+		case POST_ORDER:
+			return new PostOrder<T>(root);
+		default:
+			return new LevelOrder<T>(root);
+		}
+	}
+
+	/**
+	 * Passes the values of the subtree to action in this order.
+	 */
+	public <T extends Comparable<? super T>> void forEach(Node<T> root,
+			Consumer<? super T> action) {
+		for (Iterator<Node<T>> it = iterator(root); it.hasNext();)
+			action.accept(it.next().value);
+	}
+
+	/**
+	 * Appends the values of the subtree to out in this order, each followed
+	 * by a comma.
+	 */
+	public <T extends Comparable<? super T>> void appendTo(Node<T> root,
+			Appendable out) throws IOException {
+		for (Iterator<Node<T>> it = iterator(root); it.hasNext();)
+			out.append(String.valueOf(it.next().value)).append(',');
+	}
+
+	/**
+	 * @return the values of the subtree in this order, each followed by a
+	 *         comma: "1,2,3,"
+	 */
+	public <T extends Comparable<? super T>> String format(Node<T> root) {
+		StringBuilder out = new StringBuilder();
+		try {
+			appendTo(root, out);
+		} catch (IOException e) {
+			// a StringBuilder does not throw
+			throw new UncheckedIOException(e);
+		}
+		return out.toString();
+	}
+
+	private static final class PreOrder<T extends Comparable<? super T>>
+			implements Iterator<Node<T>> {
+		private final ArrayDeque<Node<T>> stack = new ArrayDeque<Node<T>>();
+
+		PreOrder(Node<T> root) {
+			if (root != null)
+				stack.push(root);
+		}
+
+		public boolean hasNext() {
+			return !stack.isEmpty();
+		}
+
+		public Node<T> next() {
+			if (stack.isEmpty())
+				throw new NoSuchElementException();
+			Node<T> node = stack.pop();
+			if (node.right != null)
+				stack.push(node.right);
+			if (node.left != null)
+				stack.push(node.left);
+			return node;
+		}
+	}
+
+	private static final class InOrder<T extends Comparable<? super T>>
+			implements Iterator<Node<T>> {
+		// the ancestors whose value comes next, nearest on top
+		private final ArrayDeque<Node<T>> stack = new ArrayDeque<Node<T>>();
+
+		InOrder(Node<T> root) {
+			pushLeft(root);
+		}
+
+		private void pushLeft(Node<T> node) {
+			for (; node != null; node = node.left)
+				stack.push(node);
+		}
+
+		public boolean hasNext() {
+			return !stack.isEmpty();
+		}
+
+		public Node<T> next() {
+			if (stack.isEmpty())
+				throw new NoSuchElementException();
+			Node<T> node = stack.pop();
+			pushLeft(node.right);
+			return node;
+		}
+	}
+
+	private static final class PostOrder<T extends Comparable<? super T>>
+			implements Iterator<Node<T>> {
+		private final ArrayDeque<Node<T>> stack = new ArrayDeque<Node<T>>();
+
+		PostOrder(Node<T> root) {
+			descend(root);
+		}
+
+		// pushes the path from node down to the first node of its subtree in
+		// post-order, going left where it can and right otherwise
+		private void descend(Node<T> node) {
+			while (node != null) {
+				stack.push(node);
+				node = node.left != null ? node.left : node.right;
+			}
+		}
+
+		public boolean hasNext() {
+			return !stack.isEmpty();
+		}
+
+		public Node<T> next() {
+			if (stack.isEmpty())
+				throw new NoSuchElementException();
+			Node<T> node = stack.pop();
+			// coming up from the left, the right subtree is next
+			Node<T> parent = stack.peek();
+			if (parent != null && parent.left == node)
+				descend(parent.right);
+			return node;
+		}
+	}
+
+	private static final class LevelOrder<T extends Comparable<? super T>>
+			implements Iterator<Node<T>> {
+		private final ArrayDeque<Node<T>> queue = new ArrayDeque<Node<T>>();
+
+		LevelOrder(Node<T> root) {
+			if (root != null)
+				queue.add(root);
+		}
+
+		public boolean hasNext() {
+			return !queue.isEmpty();
+		}
+
+		public Node<T> next() {
+			if (queue.isEmpty())
+				throw new NoSuchElementException();
+			Node<T> node = queue.remove();
+			if (node.left != null)
+				queue.add(node.left);
+			if (node.right != null)
+				queue.add(node.right);
+			return node;
+		}
+	}
+}
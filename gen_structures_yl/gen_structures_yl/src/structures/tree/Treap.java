@@ -0,0 +1,307 @@
+package structures.tree;
+
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * A treap (Seidel and Aragon): a binary search tree on the keys that is also
+ * a heap on random priorities, which keeps it O(log(n)) high in expectation
+ * whatever order the keys come in. Every operation here takes O(log(n))
+ * expected, including those that move whole key ranges:
+ *
+ * <ul>
+ * <li>split(key) cuts off the keys from key upwards into a new treap</li>
+ * <li>merge(other) takes over the keys of a treap whose keys are all
+ * greater</li>
+ * <li>removeRange(from, to) drops every key in [from, to)</li>
+ * <li>rank(key) and select(index) convert between keys and positions</li>
+ * </ul>
+ *
+ * None of them rebuilds or visits more than two root-to-leaf paths. For a
+ * sequence indexed by position instead of key see {@link ImplicitTreap}.
+ *
+ * Like {@link AVLTree} a key is stored at most once.
+ *
+ * @param <T>
+ */
+public class Treap<T extends Comparable<? super T>> {
+	private TreapNode<T> root;
+	// orders the keys, null for their natural order
+	private final Comparator<? super T> comparator;
+	// the two halves handed back by split
+	private final TreapNode<T>[] parts = TreapNode.newParts();
+
+	public Treap() {
+		this(null);
+	}
+
+	/**
+	 * @param comparator
+	 *            orders the keys, null for their natural order
+	 */
+	public Treap(Comparator<? super T> comparator) {
+		this.comparator = comparator;
+	}
+
+	/**
+	 * @return the comparator ordering the keys, null for their natural order
+	 */
+	public Comparator<? super T> comparator() {
+		return comparator;
+	}
+
+	private int compare(T a, T b) {
+		return comparator == null ? a.compareTo(b) : comparator.compare(a, b);
+	}
+
+	/**
+	 * searches the treap for a key takes O(log(n)) expected
+	 *
+	 * @param key
+	 * @return true if key is in the treap
+	 */
+	public boolean search(T key) {
+		TreapNode<T> current = root;
+		while (current != null) {
+			int c = compare(key, current.value);
+			if (c == 0)
+				return true;
+			current = c < 0 ? current.left : current.right;
+		}
+		return false;
+	}
+
+	/**
+	 * inserts a key takes O(log(n)) expected
+	 *
+	 * @param key
+	 * @return false if key was already present
+	 */
+	public boolean insert(T key) {
+		if (search(key))
+			return false;
+		root = insert(root, new TreapNode<T>(key));
+		return true;
+	}
+
+	// node's key is not in t. @return: the root of t with node added
+	private TreapNode<T> insert(TreapNode<T> t, TreapNode<T> node) {
+		if (t == null)
+			return node;
+		if (node.priority > t.priority) {
+			// node belongs above t: t's keys go to either side of it
+			split(t, node.value);
+			node.left = parts[0];
+			node.right = parts[1];
+			node.update();
+			return node;
+		}
+		if (compare(node.value, t.value) < 0)
+			t.left = insert(t.left, node);
+		else
+			t.right = insert(t.right, node);
+		t.update();
+		return t;
+	}
+
+	// Splits t into the keys smaller than key, left in parts[0], and the
+	// others, left in parts[1].
+	private void split(TreapNode<T> t, T key) {
+		if (t == null) {
+			parts[0] = null;
+			parts[1] = null;
+		} else if (compare(t.value, key) < 0) {
+			split(t.right, key);
+			t.right = parts[0];
+			t.update();
+			parts[0] = t;
+		} else {
+			split(t.left, key);
+			t.left = parts[1];
+			t.update();
+			parts[1] = t;
+		}
+	}
+
+	/**
+	 * deletes a key takes O(log(n)) expected
+	 *
+	 * @param key
+	 * @return true if key was present
+	 */
+	public boolean delete(T key) {
+		int before = size();
+		root = delete(root, key);
+		return size() < before;
+	}
+
+	// @return: the root of t without key
+	private TreapNode<T> delete(TreapNode<T> t, T key) {
+		if (t == null)
+			return null;
+		int c = compare(key, t.value);
+		if (c == 0)
+			return TreapNode.merge(t.left, t.right);
+		if (c < 0)
+			t.left = delete(t.left, key);
+		else
+			t.right = delete(t.right, key);
+		t.update();
+		return t;
+	}
+
+	/**
+	 * Moves the keys greater than or equal to key into a new treap, leaving
+	 * the smaller ones in this one. O(log(n)) expected
+	 *
+	 * @return the treap of the keys from key upwards
+	 */
+	public Treap<T> split(T key) {
+		split(root, key);
+		root = parts[0];
+		Treap<T> upper = new Treap<T>(comparator);
+		upper.root = parts[1];
+		parts[0] = parts[1] = null;
+		return upper;
+	}
+
+	/**
+	 * Moves the keys of other, which must all be greater than those of this
+	 * treap, into this one and leaves other empty. O(log(n)) expected
+	 *
+	 * @throws IllegalArgumentException
+	 *             if other is ordered differently or its keys are not all
+	 *             greater
+	 */
+	public void merge(Treap<T> other) {
+		if (other == this || !Objects.equals(comparator, other.comparator))
+			throw new IllegalArgumentException(
+					"treaps should be distinct and ordered alike");
+		if (root != null && other.root != null
+				&& compare(last(), other.first()) >= 0)
+			throw new IllegalArgumentException("treaps overlap at "
+					+ other.first());
+		root = TreapNode.merge(root, other.root);
+		other.root = null;
+	}
+
+	/**
+	 * Removes every key from inclusive from up to exclusive to. O(log(n))
+	 * expected, however many keys there are in the range
+	 *
+	 * @return the number of keys removed
+	 */
+	public int removeRange(T from, T to) {
+		if (compare(from, to) >= 0)
+			return 0;
+		split(root, from);
+		TreapNode<T> lower = parts[0];
+		split(parts[1], to);
+		int removed = TreapNode.size(parts[0]);
+		root = TreapNode.merge(lower, parts[1]);
+		parts[0] = parts[1] = null;
+		return removed;
+	}
+
+	/**
+	 * @return the number of keys smaller than key, O(log(n)) expected
+	 */
+	public int rank(T key) {
+		int rank = 0;
+		TreapNode<T> current = root;
+		while (current != null) {
+			int c = compare(key, current.value);
+			if (c <= 0) {
+				if (c == 0)
+					return rank + TreapNode.size(current.left);
+				current = current.left;
+			} else {
+				rank += TreapNode.size(current.left) + 1;
+				current = current.right;
+			}
+		}
+		return rank;
+	}
+
+	/**
+	 * @param index
+	 *            position in key order, counting from 0
+	 * @return the index-th smallest key, O(log(n)) expected
+	 */
+	public T select(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException(
+					"index should be in the range, but " + index);
+		}
+		return TreapNode.select(root, index).value;
+	}
+
+	/**
+	 * @return the smallest key
+	 * @throws NoSuchElementException
+	 *             if the treap is empty
+	 */
+	public T first() {
+		if (root == null)
+			throw new NoSuchElementException();
+		TreapNode<T> node = root;
+		while (node.left != null)
+			node = node.left;
+		return node.value;
+	}
+
+	/**
+	 * @return the greatest key
+	 * @throws NoSuchElementException
+	 *             if the treap is empty
+	 */
+	public T last() {
+		if (root == null)
+			throw new NoSuchElementException();
+		TreapNode<T> node = root;
+		while (node.right != null)
+			node = node.right;
+		return node.value;
+	}
+
+	/**
+	 * @return the number of keys in the treap, O(1)
+	 */
+	public int size() {
+		return TreapNode.size(root);
+	}
+
+	public boolean isEmpty() {
+		return root == null;
+	}
+
+	/**
+	 * Passes the keys to action in order. O(n)
+	 */
+	public void forEach(Consumer<? super T> action) {
+		forEach(root, action);
+	}
+
+	private static <T> void forEach(TreapNode<T> node,
+			Consumer<? super T> action) {
+		for (; node != null; node = node.right) {
+			forEach(node.left, action);
+			action.accept(node.value);
+		}
+	}
+
+	/**
+	 * O(n)
+	 *
+	 * @return the keys in sorted order: [1,2,3]
+	 */
+	public String toString() {
+		final StringBuilder sb = new StringBuilder("[");
+		forEach(key -> sb.append(key).append(','));
+		if (root != null)
+			sb.setLength(sb.length() - 1);
+		return sb.append(']').toString();
+	}
+}
@@ -0,0 +1,93 @@
+package structures.tree;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A node of {@link Treap} and {@link ImplicitTreap}: a value, two children,
+ * a random priority that is never smaller than the priorities below it, and
+ * the size of its subtree, which makes positions and ranks O(log(n)).
+ *
+ * The operations here rely on the priorities only, not on the order of the
+ * values, so they serve both treaps. They recurse to an expected depth of
+ * O(log(n)).
+ */
+final class TreapNode<T> {
+	T value;
+	TreapNode<T> left;
+	TreapNode<T> right;
+	final int priority;
+	// number of nodes in the subtree rooted here
+	int size = 1;
+
+	TreapNode(T value) {
+		this.value = value;
+		this.priority = ThreadLocalRandom.current().nextInt();
+	}
+
+	static int size(TreapNode<?> node) {
+		return node == null ? 0 : node.size;
+	}
+
+	// recomputes size from the children
+	void update() {
+		size = size(left) + size(right) + 1;
+	}
+
+	// @return: the treap holding the nodes of a followed by those of b
+	static <T> TreapNode<T> merge(TreapNode<T> a, TreapNode<T> b) {
+		if (a == null)
+			return b;
+		if (b == null)
+			return a;
+		if (a.priority > b.priority) {
+			a.right = merge(a.right, b);
+			a.update();
+			return a;
+		}
+		b.left = merge(a, b.left);
+		b.update();
+		return b;
+	}
+
+	// Splits t into its first index nodes, left in parts[0], and the others,
+	// left in parts[1].
+	static <T> void splitAt(TreapNode<T> t, int index, TreapNode<T>[] parts) {
+		if (t == null) {
+			parts[0] = null;
+			parts[1] = null;
+			return;
+		}
+		int leftSize = size(t.left);
+		if (index <= leftSize) {
+			splitAt(t.left, index, parts);
+			t.left = parts[1];
+			t.update();
+			parts[1] = t;
+		} else {
+			splitAt(t.right, index - leftSize - 1, parts);
+			t.right = parts[0];
+			t.update();
+			parts[0] = t;
+		}
+	}
+
+	// @return: the node at index in t, which is in range
+	static <T> TreapNode<T> select(TreapNode<T> t, int index) {
+		while (true) {
+			int leftSize = size(t.left);
+			if (index == leftSize)
+				return t;
+			if (index < leftSize) {
+				t = t.left;
+			} else {
+				index -= leftSize + 1;
+				t = t.right;
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	static <T> TreapNode<T>[] newParts() {
+		return (TreapNode<T>[]) new TreapNode<?>[2];
+	}
+}
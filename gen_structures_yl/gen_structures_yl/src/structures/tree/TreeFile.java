@@ -0,0 +1,148 @@
+package structures.tree;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Iterator;
+
+/**
+ * The file format the in-memory trees are saved in: a header, then the keys
+ * in sorted order, each written by a {@link KeyCodec}.
+ *
+ * <pre>
+ * int  magic "TREE"
+ * int  format version
+ * byte the kind of tree, AVL, RED_BLACK or SPLAY
+ * int  the number of keys
+ * keys
+ * </pre>
+ *
+ * No shape or color is stored: a tree of minimum height built from the
+ * sorted keys is a valid AVL, red-black or splay tree, and building it takes
+ * O(n). The file is memory-mapped for reading, so it may be at most 2 GB.
+ */
+final class TreeFile {
+	static final byte AVL = 1;
+	static final byte RED_BLACK = 2;
+	static final byte SPLAY = 3;
+
+	private static final int MAGIC = 0x54524545;
+	private static final int FORMAT = 1;
+	private static final int HEADER_SIZE = 13;
+	private static final int COUNT_OFFSET = 9;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private TreeFile() {
+	}
+
+	/**
+	 * Writes the keys, which must be in order, to file, replacing what it
+	 * held.
+	 */
+	static <T> void write(Path file, byte kind, Iterator<? extends T> keys,
+			KeyCodec<? super T> codec) throws IOException {
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			// the count is filled in at the end
+			buffer.putInt(MAGIC).putInt(FORMAT).put(kind).putInt(0);
+			int count = 0;
+			while (keys.hasNext()) {
+				T key = keys.next();
+				int size = codec.encodedSize(key);
+				if (size > buffer.remaining()) {
+					flush(channel, buffer);
+					if (size > buffer.capacity())
+						buffer = ByteBuffer.allocateDirect(size);
+				}
+				codec.encode(key, buffer);
+				count++;
+			}
+			flush(channel, buffer);
+			buffer.putInt(count).flip();
+			while (buffer.hasRemaining())
+				channel.write(buffer, COUNT_OFFSET + buffer.position());
+		}
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer buffer)
+			throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Reads the keys of a file written by write. They are checked to be in
+	 * order, so a file that was damaged or written with another codec is
+	 * refused rather than loaded into a broken tree.
+	 *
+	 * @param order
+	 *            the order of the keys, null for their natural order
+	 * @param distinct
+	 *            true if the tree holds every key at most once
+	 * @return the keys in order
+	 */
+	@SuppressWarnings("unchecked")
+	static <T extends Comparable<? super T>> T[] read(Path file, byte kind,
+			KeyCodec<T> codec, Comparator<? super T> order, boolean distinct)
+			throws IOException {
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.READ)) {
+			long length = channel.size();
+			if (length > Integer.MAX_VALUE)
+				throw new IOException(file + " is larger than 2 GB");
+			MappedByteBuffer buffer = channel.map(
+					FileChannel.MapMode.READ_ONLY, 0, length);
+			if (length < HEADER_SIZE || buffer.getInt() != MAGIC)
+				throw new IOException(file + " is not a tree file");
+			if (buffer.getInt() != FORMAT)
+				throw new IOException(file + " has an unknown format version");
+			if (buffer.get() != kind)
+				throw new IOException(file + " holds another kind of tree");
+			int count = buffer.getInt();
+			// every key takes at least a byte
+			if (count < 0 || count > buffer.remaining())
+				throw new IOException(file + " has a bad key count " + count);
+			T[] keys = (T[]) new Comparable<?>[count];
+			try {
+				for (int i = 0; i < count; i++) {
+					keys[i] = codec.decode(buffer);
+					if (i > 0) {
+						int c = order == null ? keys[i - 1].compareTo(keys[i])
+								: order.compare(keys[i - 1], keys[i]);
+						if (c > 0 || (c == 0 && distinct))
+							throw new IOException(file
+									+ " has keys out of order at " + i);
+					}
+				}
+			} catch (BufferUnderflowException | NegativeArraySizeException e) {
+				throw new IOException(file + " is truncated", e);
+			}
+			if (buffer.hasRemaining())
+				throw new IOException(file + " has bytes after the last key");
+			return keys;
+		}
+	}
+
+	// @return: the values of the nodes
+	static <T extends Comparable<? super T>> Iterator<T> values(
+			final Iterator<Node<T>> nodes) {
+		return new Iterator<T>() {
+			public boolean hasNext() {
+				return nodes.hasNext();
+			}
+
+			public T next() {
+				return nodes.next().value;
+			}
+		};
+	}
+}
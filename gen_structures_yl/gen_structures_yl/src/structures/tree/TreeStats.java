@@ -0,0 +1,313 @@
+package structures.tree;
+
+import java.util.Arrays;
+
+/**
+ * A snapshot of how a tree is shaped and of what its operations have cost
+ * since it was created or its stats were last reset.
+ *
+ * The costs are counted as the operations run: a few increments each, cheap
+ * enough to leave on. The shape (height and how many nodes are at each
+ * depth) is measured when the snapshot is taken, by a walk over the tree
+ * that takes O(n) time and O(height) space, so in production take snapshots
+ * at intervals rather than per operation. A height well above
+ * {@link #minimumHeight()}, such as that of sorted values added to an
+ * unbalanced {@link BinaryTree}, shows up in {@link #heightRatio()}.
+ *
+ * The root is at depth 0, and a search for a node at depth d visits d + 1
+ * nodes.
+ */
+public final class TreeStats {
+
+	/** The kinds of operation whose costs are counted. */
+	public enum Operation {
+		/** adding a value, whether it was already there or not */
+		INSERT,
+		/** removing a value, whether it was there or not */
+		DELETE,
+		/** looking a value up */
+		SEARCH
+	}
+
+	private static final int OPERATIONS = Operation.values().length;
+	// the counts of an operation, at op.ordinal() * FIELDS, side by side so
+	// that counting one touches a single cache line
+	private static final int COUNT = 0;
+	private static final int PATH = 1;
+	private static final int MAX_PATH = 2;
+	private static final int ROTATIONS = 3;
+	private static final int FIELDS = 4;
+	// the counts of the splays, after those of the operations
+	private static final int SPLAYS = OPERATIONS * FIELDS;
+
+	/**
+	 * Counts the costs of the operations of one tree. It is not synchronized:
+	 * reads running concurrently, as under {@link SplayTree.ReadPolicy#DEFERRED},
+	 * may lose a few counts.
+	 */
+	static final class Recorder {
+		private final long[] counts = new long[SPLAYS + FIELDS];
+		// where the counts of the operation the rotations are counted for are
+		private int current;
+
+		/**
+		 * Counts an operation that visited pathLength nodes. The rotations
+		 * counted until the next operation are its rotations.
+		 */
+		void operation(Operation op, int pathLength) {
+			current = op.ordinal() * FIELDS;
+			count(current, pathLength);
+		}
+
+		/**
+		 * Counts the rotations that follow, until the next operation, as
+		 * those of op.
+		 */
+		void attribute(Operation op) {
+			current = op.ordinal() * FIELDS;
+		}
+
+		void rotation() {
+			counts[current + ROTATIONS]++;
+		}
+
+		void rotations(int count) {
+			counts[current + ROTATIONS] += count;
+		}
+
+		void splay(int pathLength) {
+			count(SPLAYS, pathLength);
+		}
+
+		private void count(int at, int pathLength) {
+			long[] c = counts;
+			c[at + COUNT]++;
+			c[at + PATH] += pathLength;
+			if (pathLength > c[at + MAX_PATH])
+				c[at + MAX_PATH] = pathLength;
+		}
+
+		void reset() {
+			Arrays.fill(counts, 0);
+		}
+	}
+
+	private final int[] histogram;
+	private final int size;
+	private final long totalDepth;
+	private final long[] counts;
+
+	/**
+	 * @param histogram
+	 *            the number of nodes at each depth, as returned by histogram
+	 */
+	TreeStats(int[] histogram, Recorder recorder) {
+		this.histogram = histogram;
+		int n = 0;
+		long depths = 0;
+		for (int d = 0; d < histogram.length; d++) {
+			n += histogram[d];
+			depths += (long) d * histogram[d];
+		}
+		this.size = n;
+		this.totalDepth = depths;
+		this.counts = recorder.counts.clone();
+	}
+
+	// @return: the number of nodes at each depth below root, without trailing
+	// zeros
+	static int[] histogram(Node<?> root) {
+		int[] counts = new int[16];
+		int height = 0;
+		Node<?>[] stack = new Node<?>[16];
+		int[] depths = new int[16];
+		int top = 0;
+		if (root != null) {
+			stack[top] = root;
+			depths[top++] = 0;
+		}
+		while (top > 0) {
+			Node<?> node = stack[--top];
+			int depth = depths[top];
+			if (depth == counts.length)
+				counts = Arrays.copyOf(counts, depth * 2);
+			counts[depth]++;
+			height = Math.max(height, depth + 1);
+			// room for both children
+			if (top + 2 > stack.length) {
+				stack = Arrays.copyOf(stack, stack.length * 2);
+				depths = Arrays.copyOf(depths, stack.length);
+			}
+			if (node.right != null) {
+				stack[top] = node.right;
+				depths[top++] = depth + 1;
+			}
+			if (node.left != null) {
+				stack[top] = node.left;
+				depths[top++] = depth + 1;
+			}
+		}
+		return Arrays.copyOf(counts, height);
+	}
+
+	// @return: the number of nodes at each depth below root, whose leaves
+	// are nil
+	static int[] histogram(RedBlackNode<?> root, RedBlackNode<?> nil) {
+		int[] counts = new int[16];
+		int height = 0;
+		RedBlackNode<?>[] stack = new RedBlackNode<?>[16];
+		int[] depths = new int[16];
+		int top = 0;
+		if (root != nil) {
+			stack[top] = root;
+			depths[top++] = 0;
+		}
+		while (top > 0) {
+			RedBlackNode<?> node = stack[--top];
+			int depth = depths[top];
+			if (depth == counts.length)
+				counts = Arrays.copyOf(counts, depth * 2);
+			counts[depth]++;
+			height = Math.max(height, depth + 1);
+			if (top + 2 > stack.length) {
+				stack = Arrays.copyOf(stack, stack.length * 2);
+				depths = Arrays.copyOf(depths, stack.length);
+			}
+			if (node.right != nil) {
+				stack[top] = node.right;
+				depths[top++] = depth + 1;
+			}
+			if (node.left != nil) {
+				stack[top] = node.left;
+				depths[top++] = depth + 1;
+			}
+		}
+		return Arrays.copyOf(counts, height);
+	}
+
+	/**
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of levels, the most nodes a search visits; 0 for an
+	 *         empty tree
+	 */
+	public int height() {
+		return histogram.length;
+	}
+
+	/**
+	 * @return the least height a binary tree of this size can have
+	 */
+	public int minimumHeight() {
+		return 32 - Integer.numberOfLeadingZeros(size);
+	}
+
+	/**
+	 * @return height over minimum height: 1 for a perfectly balanced tree, at
+	 *         most about 1.44 for an AVL tree and 2 for a red-black tree, and
+	 *         n / log2(n) for a tree degenerated into a list; 1 if empty
+	 */
+	public double heightRatio() {
+		return size == 0 ? 1 : (double) height() / minimumHeight();
+	}
+
+	/**
+	 * @return the mean depth of the nodes, so a search for a value in the
+	 *         tree visits averageDepth() + 1 nodes on average
+	 */
+	public double averageDepth() {
+		return size == 0 ? 0 : (double) totalDepth / size;
+	}
+
+	/**
+	 * @return element d is the number of nodes at depth d
+	 */
+	public int[] depthHistogram() {
+		return histogram.clone();
+	}
+
+	// @return: the mean path length of the counts at at, 0 if there are none
+	private double averagePath(int at) {
+		long n = counts[at + COUNT];
+		return n == 0 ? 0 : (double) counts[at + PATH] / n;
+	}
+
+	/**
+	 * @return how many operations of kind op ran
+	 */
+	public long operations(Operation op) {
+		return counts[op.ordinal() * FIELDS + COUNT];
+	}
+
+	/**
+	 * @return the mean number of nodes the operations of kind op compared
+	 *         their value with, 0 if none ran
+	 */
+	public double averagePathLength(Operation op) {
+		return averagePath(op.ordinal() * FIELDS);
+	}
+
+	/**
+	 * @return the most nodes an operation of kind op compared its value with
+	 */
+	public int maxPathLength(Operation op) {
+		return (int) counts[op.ordinal() * FIELDS + MAX_PATH];
+	}
+
+	/**
+	 * @return the number of rotations the operations of kind op did
+	 */
+	public long rotations(Operation op) {
+		return counts[op.ordinal() * FIELDS + ROTATIONS];
+	}
+
+	/**
+	 * @return the number of splays, 0 for trees that do not splay
+	 */
+	public long splays() {
+		return counts[SPLAYS + COUNT];
+	}
+
+	/**
+	 * @return the mean number of nodes on the path of a splay, 0 if there was
+	 *         none
+	 */
+	public double averageSplayPathLength() {
+		return averagePath(SPLAYS);
+	}
+
+	/**
+	 * @return the most nodes on the path of a splay
+	 */
+	public int maxSplayPathLength() {
+		return (int) counts[SPLAYS + MAX_PATH];
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("size=").append(size).append(" height=").append(height())
+				.append(" minimumHeight=").append(minimumHeight())
+				.append(String.format(" averageDepth=%.2f", averageDepth()));
+		for (Operation op : Operation.values()) {
+			if (operations(op) == 0)
+				continue;
+			sb.append(' ').append(op).append("=[count=").append(operations(op))
+					.append(String.format(" averagePath=%.2f",
+							averagePathLength(op)))
+					.append(" maxPath=").append(maxPathLength(op))
+					.append(" rotations=").append(rotations(op)).append(']');
+		}
+		if (splays() > 0)
+			sb.append(" splays=[count=").append(splays())
+					.append(String.format(" averagePath=%.2f",
+							averageSplayPathLength()))
+					.append(" maxPath=").append(maxSplayPathLength()).append(']');
+		return sb.append(" depths=").append(Arrays.toString(histogram))
+				.toString();
+	}
+}
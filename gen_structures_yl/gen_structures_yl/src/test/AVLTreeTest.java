@@ -5,6 +5,10 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Comparator;
+import java.util.Random;
+import java.util.TreeSet;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -75,4 +79,134 @@ public class AVLTreeTest {
 				"[1,2,3,8,9,10,11,15,19,20,21,23,24]", avlTree.toString());
 	}
 
+	@Test
+	public void testComparator() {
+		avlTree = new AVLTree<>(Comparator.<Integer> reverseOrder());
+		for (int i = 1; i <= 10; i++) {
+			avlTree.insert(i);
+		}
+		avlTree.delete(42);
+		avlTree.delete(7);
+		avlTree.delete(4);
+		assertTrue("Present value not found", avlTree.search(5));
+		assertFalse("Deleted value found", avlTree.search(7));
+		assertEquals("Not in reverse order", "[10,9,8,6,5,3,2,1]",
+				avlTree.toString());
+	}
+
+	@Test
+	public void testSetOperations() {
+		Random random = new Random(35);
+		AVLTree<Integer> other = new AVLTree<>();
+		TreeSet<Integer> a = new TreeSet<>();
+		TreeSet<Integer> b = new TreeSet<>();
+		for (int i = 0; i < 500; i++) {
+			int key = random.nextInt(1000);
+			avlTree.insert(key);
+			a.add(key);
+			key = random.nextInt(1000);
+			other.insert(key);
+			b.add(key);
+		}
+		TreeSet<Integer> union = new TreeSet<>(a);
+		union.addAll(b);
+		TreeSet<Integer> intersection = new TreeSet<>(a);
+		intersection.retainAll(b);
+		TreeSet<Integer> difference = new TreeSet<>(a);
+		difference.removeAll(b);
+		assertSetOperation("union", union, avlTree.union(other));
+		assertSetOperation("intersection", intersection,
+				avlTree.intersection(other));
+		assertSetOperation("difference", difference, avlTree.difference(other));
+		assertSetOperation("difference", new TreeSet<Integer>(),
+				avlTree.difference(avlTree));
+		assertSetOperation("union with an empty tree", a,
+				avlTree.union(new AVLTree<Integer>()));
+		// the operands are left as they were
+		assertEquals("Tree changed", a.toString().replace(", ", ","),
+				avlTree.toString());
+		assertEquals("Other tree changed", b.toString().replace(", ", ","),
+				other.toString());
+	}
+
+	private static void assertSetOperation(String op, TreeSet<Integer> expected,
+			AVLTree<Integer> result) {
+		assertEquals("Wrong " + op, expected.toString().replace(", ", ","),
+				result.toString());
+		// built balanced: no higher than a complete tree
+		assertEquals("Wrong height of " + op,
+				32 - Integer.numberOfLeadingZeros(expected.size()),
+				result.height());
+		// and usable as any other tree
+		result.insert(-1);
+		assertTrue("Inserted value not found", result.search(-1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetOperationComparators() {
+		avlTree.union(new AVLTree<>(Comparator.<Integer> reverseOrder()));
+	}
+
+	@Test
+	public void testDeleteKeepsShape() {
+		// full tree of 1..31 so that most nodes have two children
+		for (int step = 16; step >= 1; step /= 2) {
+			for (int i = step; i <= 31; i += 2 * step) {
+				avlTree.insert(i);
+			}
+		}
+		avlTree.checkInvariants();
+		// deleting a value that is not there, or no longer, changes nothing
+		avlTree.delete(0);
+		avlTree.delete(40);
+		avlTree.delete(17);
+		avlTree.delete(17);
+		avlTree.checkInvariants();
+		// values with two children, and children that got two by the
+		// earlier deletes
+		int[] twoChildren = { 24, 16, 8, 20, 12, 28, 4 };
+		for (int value : twoChildren) {
+			avlTree.delete(value);
+			avlTree.checkInvariants();
+			assertFalse("Deleted value found", avlTree.search(value));
+		}
+		Random random = new Random(44);
+		TreeSet<Integer> expected = new TreeSet<>();
+		for (int i = 1; i <= 31; i++) {
+			expected.add(i);
+		}
+		expected.remove(17);
+		for (int value : twoChildren) {
+			expected.remove(value);
+		}
+		assertEquals("Values lost by delete",
+				expected.toString().replace(", ", ","), avlTree.toString());
+		for (int i = 0; i < 5000; i++) {
+			int value = random.nextInt(200);
+			if (random.nextBoolean()) {
+				avlTree.insert(value);
+				expected.add(value);
+			} else {
+				avlTree.delete(value);
+				expected.remove(value);
+			}
+			avlTree.checkInvariants();
+		}
+		assertEquals("Values lost by delete",
+				expected.toString().replace(", ", ","), avlTree.toString());
+	}
+
+	@Test
+	public void testDeleteWithLeftChildPredecessor() {
+		// 10 has two children and its predecessor 5 is its left child,
+		// which has a left subtree of its own
+		for (int value : new int[] { 20, 10, 30, 5, 15, 25, 35, 3, 12 }) {
+			avlTree.insert(value);
+		}
+		avlTree.delete(10);
+		avlTree.checkInvariants();
+		assertEquals("Values lost by delete", "[3,5,12,15,20,25,30,35]",
+				avlTree.toString());
+		assertTrue("Subtree of the predecessor lost", avlTree.search(3));
+	}
 }
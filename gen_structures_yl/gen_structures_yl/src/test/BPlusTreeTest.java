@@ -0,0 +1,81 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import structures.tree.BPlusTree;
+
+public class BPlusTreeTest {
+
+	private BPlusTree<Integer, String> bTree;
+
+	@Before
+	public void setUp() {
+		// a small order so a few keys already build several levels
+		bTree = new BPlusTree<>(4);
+		for (int i = 1; i <= 20; i++) {
+			bTree.insert(i, "v" + i);
+		}
+	}
+
+	@Test
+	public void testInsert() {
+		assertEquals("Wrong size after inserts", 20, bTree.size());
+		assertTrue("Tree did not grow any levels", bTree.height() > 2);
+		assertEquals("Value not found", "v7", bTree.search(7));
+		assertNull("Found a key that was never inserted", bTree.search(21));
+		bTree.insert(7, "seven");
+		assertEquals("Value not replaced", "seven", bTree.search(7));
+		assertEquals("Replacing a value changed the size", 20, bTree.size());
+	}
+
+	@Test
+	public void testDelete() {
+		for (int i = 1; i <= 20; i += 2) {
+			assertTrue("Failed to delete " + i, bTree.delete(i));
+		}
+		assertFalse("Deleted a key twice", bTree.delete(1));
+		assertEquals("Actual result is different from the expected result",
+				"[2,4,6,8,10,12,14,16,18,20]", bTree.toString());
+		for (int i = 2; i <= 20; i += 2) {
+			bTree.delete(i);
+		}
+		assertTrue("Tree not empty after deleting every key", bTree.isEmpty());
+		assertEquals("Empty tree kept extra levels", 1, bTree.height());
+	}
+
+	@Test
+	public void testRangeScans() {
+		assertEquals("getGreaterThan is wrong", "[11, 12, 13]", bTree
+				.getGreaterThan(10, 3).toString());
+		assertEquals("getRange is wrong", "[v5, v6, v7, v8]", bTree
+				.getRange(5, 8).toString());
+	}
+
+	@Test
+	public void testComparator() {
+		bTree = new BPlusTree<>(4, Comparator.<Integer> reverseOrder());
+		for (int i = 1; i <= 20; i++) {
+			bTree.insert(i, "v" + i);
+		}
+		assertEquals("Value not found", "v7", bTree.search(7));
+		assertEquals("getGreaterThan is not in reverse order",
+				Arrays.asList(14, 13, 12), bTree.getGreaterThan(15, 3));
+		assertEquals("getRange is not in reverse order",
+				Arrays.asList("v10", "v9", "v8"), bTree.getRange(10, 8));
+		for (int i = 2; i <= 20; i += 2) {
+			assertTrue("Failed to delete " + i, bTree.delete(i));
+		}
+		assertEquals("Wrong keys after deletes",
+				Arrays.asList(19, 17, 15, 13, 11, 9, 7, 5, 3, 1),
+				bTree.getGreaterThan(21, 20));
+	}
+}
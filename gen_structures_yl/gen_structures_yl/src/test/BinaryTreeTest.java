@@ -0,0 +1,121 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Test;
+
+import structures.tree.BinaryTree;
+import structures.tree.Traversal;
+import structures.tree.TreeStats;
+
+public class BinaryTreeTest {
+
+	@Test
+	public void testRotations() {
+		BinaryTree<Integer> tree = new BinaryTree<>();
+		int[] values = { 7, 4, 17, 2, 6, 5, 10, 20 };
+		for (int value : values) {
+			tree.addNode(value);
+		}
+		tree.rightRotate(tree.locate(4));
+		assertEquals("Wrong root after rightRotate", 4,
+				(int) tree.root().getValue());
+		assertEquals("Wrong shape after rightRotate", "4,2,7,6,5,17,10,20,",
+				tree.toStringPreOrder(tree.root()));
+		tree.leftRotate(tree.locate(7));
+		assertEquals("leftRotate did not undo rightRotate",
+				"7,4,2,6,5,17,10,20,", tree.toStringPreOrder(tree.root()));
+		assertEquals("Rotations changed the size", values.length, tree.size());
+	}
+
+	@Test
+	public void testBalancedTree() {
+		BinaryTree<Integer> tree = new BinaryTree<>(true);
+		for (int i = 1; i <= 1023; i++) {
+			tree.addNode(i);
+		}
+		assertEquals("Sorted inserts left the tree unbalanced", 9, tree
+				.root().getHeight());
+		for (int i = 1; i <= 1023; i += 2) {
+			assertTrue("Present value not removed", tree.removeNode(i));
+		}
+		assertFalse("Missing value removed", tree.removeNode(1));
+		assertEquals("Wrong size after removeNode", 511, tree.size());
+		assertTrue("Removals left the tree unbalanced",
+				tree.root().getHeight() <= 10);
+		assertTrue("Wrong order after removeNode", tree.toString()
+				.startsWith("[2,4,6,8,10,"));
+	}
+
+	@Test
+	public void testTraversals() throws IOException {
+		BinaryTree<Integer> tree = new BinaryTree<>();
+		for (int value : new int[] { 7, 4, 17, 2, 6, 5, 10, 20 }) {
+			tree.addNode(value);
+		}
+		assertEquals("Wrong post-order", "2,5,6,4,10,20,17,7,",
+				tree.toStringPostOrder(tree.root()));
+		StringBuilder out = new StringBuilder();
+		tree.appendTo(Traversal.LEVEL_ORDER, out);
+		assertEquals("Wrong level order", "7,4,17,2,6,10,20,5,", out.toString());
+		List<Integer> values = new ArrayList<>();
+		tree.traverse(Traversal.IN_ORDER, values::add);
+		assertEquals("Wrong in-order", "[2, 4, 5, 6, 7, 10, 17, 20]",
+				values.toString());
+	}
+
+	@Test
+	public void testStats() {
+		BinaryTree<Integer> plain = new BinaryTree<>();
+		BinaryTree<Integer> balanced = new BinaryTree<>(true);
+		for (int i = 1; i <= 100; i++) {
+			plain.addNode(i);
+			balanced.addNode(i);
+		}
+		plain.locate(100);
+		TreeStats stats = plain.stats();
+		assertEquals("Sorted inserts should make a list", 100, stats.height());
+		assertEquals("Wrong minimum height", 7, stats.minimumHeight());
+		assertTrue("Degenerate shape not seen", stats.heightRatio() > 10);
+		assertEquals("Wrong search path", 100,
+				stats.maxPathLength(TreeStats.Operation.SEARCH));
+		assertEquals("Wrong depth histogram", 1, stats.depthHistogram()[99]);
+
+		stats = balanced.stats();
+		assertEquals("Wrong size", 100, stats.size());
+		assertEquals("Height differs from height()", balanced.height(),
+				stats.height());
+		assertTrue("Balanced tree too high", stats.heightRatio() < 1.45);
+		assertTrue("No rotations counted",
+				stats.rotations(TreeStats.Operation.INSERT) > 0);
+		balanced.resetStats();
+		assertEquals("Counts not reset", 0,
+				balanced.stats().operations(TreeStats.Operation.INSERT));
+	}
+
+	@Test
+	public void testComparator() {
+		BinaryTree<Integer> tree = new BinaryTree<>(false,
+				Comparator.<Integer> reverseOrder());
+		int[] values = { 7, 4, 17, 2, 6, 5, 10, 20 };
+		for (int value : values) {
+			tree.addNode(value);
+		}
+		assertEquals("Not in reverse order", "[20,17,10,7,6,5,4,2]",
+				tree.toString());
+		assertEquals("Smaller value not on the right", 4,
+				(int) tree.right(tree.root()).getValue());
+		assertTrue("Present value not found", tree.locate(5) != null);
+		assertTrue("Present value not removed", tree.removeNode(7));
+		assertFalse("Absent value removed", tree.removeNode(8));
+		assertEquals("Not in reverse order after remove",
+				"[20,17,10,6,5,4,2]", tree.toString());
+	}
+}
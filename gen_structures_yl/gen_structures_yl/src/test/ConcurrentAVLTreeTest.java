@@ -0,0 +1,63 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import structures.tree.ConcurrentAVLTree;
+
+public class ConcurrentAVLTreeTest {
+
+	@Test
+	public void testInsertDelete() {
+		ConcurrentAVLTree<Integer> tree = new ConcurrentAVLTree<>();
+		for (int i = 1; i <= 10; i++) {
+			assertTrue("New value not inserted", tree.insert(i));
+		}
+		assertFalse("Duplicate value inserted", tree.insert(4));
+		// 4 has two children, so it stays as a routing node
+		assertTrue("Present value not deleted", tree.delete(4));
+		assertFalse("Deleted value found", tree.search(4));
+		assertFalse("Absent value deleted", tree.delete(4));
+		assertTrue("Deleted value not inserted again", tree.insert(4));
+		assertTrue("Present value not deleted", tree.delete(10));
+		assertEquals("Wrong size", 9, tree.size());
+		assertEquals("Actual result is different from the expected result",
+				"[1,2,3,4,5,6,7,8,9]", tree.toString());
+	}
+
+	@Test
+	public void testSearchDuringWrites() throws InterruptedException {
+		final ConcurrentAVLTree<Integer> tree = new ConcurrentAVLTree<>();
+		for (int i = 0; i < 2000; i += 2) {
+			tree.insert(i);
+		}
+		final AtomicBoolean missed = new AtomicBoolean();
+		Thread reader = new Thread(() -> {
+			for (int round = 0; round < 200; round++) {
+				for (int i = 0; i < 2000; i += 2) {
+					if (!tree.search(i))
+						missed.set(true);
+				}
+			}
+		});
+		reader.start();
+		// odd values come and go, rotating the even ones around
+		while (reader.isAlive()) {
+			for (int i = 1; i < 2000; i += 2) {
+				tree.insert(i);
+			}
+			for (int i = 1; i < 2000; i += 2) {
+				tree.delete(i);
+			}
+		}
+		reader.join();
+		assertFalse("Search missed a value that was never deleted",
+				missed.get());
+		assertEquals("Wrong size", 1000, tree.size());
+	}
+}
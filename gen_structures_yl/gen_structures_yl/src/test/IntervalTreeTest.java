@@ -0,0 +1,44 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import structures.tree.IntervalTree;
+
+public class IntervalTreeTest {
+
+	@Test
+	public void testOverlapping() {
+		IntervalTree<Integer, String> tree = new IntervalTree<>();
+		tree.put(15, 20, "a");
+		tree.put(10, 30, "b");
+		tree.put(17, 19, "c");
+		tree.put(5, 20, "d");
+		tree.put(12, 15, "e");
+		tree.put(30, 40, "f");
+		assertEquals("Wrong previous value", "c", tree.put(17, 19, "g"));
+		assertEquals("Wrong value removed", "d", tree.remove(5, 20));
+		assertNull("Absent interval removed", tree.remove(5, 20));
+		assertEquals("Wrong size", 5, tree.size());
+		List<String> found = new ArrayList<>();
+		tree.overlapping(19, 30, e -> found.add(e.getValue()));
+		assertEquals("Wrong range overlaps", "[b, a, g, f]", found.toString());
+		found.clear();
+		tree.overlapping(14, e -> found.add(e.getValue()));
+		assertEquals("Wrong point overlaps", "[b, e]", found.toString());
+		assertNull("Overlap found in a gap", tree.findOverlapping(41, 50));
+		assertEquals("Actual result is different from the expected result",
+				"{[10, 30]=b, [12, 15]=e, [15, 20]=a, [17, 19]=g, [30, 40]=f}",
+				tree.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReversedInterval() {
+		new IntervalTree<Integer, String>().put(3, 1, "a");
+	}
+}
@@ -0,0 +1,49 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import structures.tree.KeyCodec;
+
+public class KeyCodecTest {
+
+	private static <T> void assertRoundTrip(KeyCodec<T> codec, T key) {
+		ByteBuffer buffer = ByteBuffer.allocate(codec.encodedSize(key) + 1);
+		codec.encode(key, buffer);
+		assertEquals("Wrong encoded size of " + key, codec.encodedSize(key),
+				buffer.position());
+		buffer.flip();
+		assertEquals("Key changed in a round trip", key, codec.decode(buffer));
+		assertEquals("Decode left bytes unread", 0, buffer.remaining());
+	}
+
+	@Test
+	public void testRoundTrip() {
+		for (int key : new int[] { 0, -1, 42, Integer.MIN_VALUE,
+				Integer.MAX_VALUE }) {
+			assertRoundTrip(KeyCodec.INTEGER, key);
+		}
+		for (long key : new long[] { 0, -1, 1L << 40, Long.MIN_VALUE,
+				Long.MAX_VALUE }) {
+			assertRoundTrip(KeyCodec.LONG, key);
+		}
+		// one to four bytes per code point
+		for (String key : new String[] { "", "abc", "caf\u00e9",
+				"\u20ac100", "\uD83D\uDE00 smile" }) {
+			assertRoundTrip(KeyCodec.STRING, key);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnpairedSurrogateSize() {
+		KeyCodec.STRING.encodedSize("a\uD800");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnpairedSurrogateEncode() {
+		KeyCodec.STRING.encode("\uDC00b", ByteBuffer.allocate(16));
+	}
+}
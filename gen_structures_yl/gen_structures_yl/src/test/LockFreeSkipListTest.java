@@ -0,0 +1,122 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+
+import structures.tree.LockFreeSkipList;
+
+public class LockFreeSkipListTest {
+
+	// the list prints without spaces: [1,2,3]
+	private static String toString(TreeSet<?> set) {
+		return set.toString().replace(", ", ",");
+	}
+
+	@Test
+	public void testAgainstTreeSet() {
+		Random random = new Random(27);
+		LockFreeSkipList<Integer> list = new LockFreeSkipList<>();
+		TreeSet<Integer> expected = new TreeSet<>();
+		for (int i = 0; i < 20000; i++) {
+			int key = random.nextInt(1000);
+			if (random.nextInt(3) == 0) {
+				assertEquals("Wrong remove result for " + key,
+						expected.remove(key), list.remove(key));
+			} else {
+				assertEquals("Wrong insert result for " + key,
+						expected.add(key), list.insert(key));
+			}
+			assertEquals("Wrong search result for " + key,
+					expected.contains(key), list.search(key));
+			assertEquals("Wrong size", expected.size(), list.size());
+			if (i % 100 == 0) {
+				List<Integer> greater = new ArrayList<>(expected.tailSet(key,
+						false));
+				assertEquals("Wrong keys greater than " + key,
+						greater.subList(0, Math.min(5, greater.size())),
+						list.getGreaterThan(key, 5));
+				int hi = key + random.nextInt(50);
+				assertEquals("Wrong keys in [" + key + ", " + hi + "]",
+						new ArrayList<>(expected.subSet(key, true, hi, true)),
+						list.getRange(key, hi));
+			}
+		}
+		assertEquals("Keys out of order", toString(expected), list.toString());
+	}
+
+	@Test
+	public void testConcurrentUpdates() throws InterruptedException {
+		final int threads = 4;
+		final int shared = 64;
+		final int rounds = 20000;
+		final LockFreeSkipList<Integer> list = new LockFreeSkipList<>();
+		// per shared key, successful inserts minus successful removes
+		final AtomicIntegerArray balance = new AtomicIntegerArray(shared);
+		final List<TreeSet<Integer>> owned = new ArrayList<>();
+		final List<Throwable> failures = new ArrayList<>();
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int id = t;
+			final TreeSet<Integer> mine = new TreeSet<>();
+			owned.add(mine);
+			workers[t] = new Thread(() -> {
+				Random random = new Random(id);
+				try {
+					for (int i = 0; i < rounds; i++) {
+						// keys below shared are fought over, the others each
+						// belong to one thread, which knows what they hold
+						int key = random.nextInt(shared);
+						if (random.nextBoolean()) {
+							if (list.insert(key))
+								balance.incrementAndGet(key);
+						} else if (list.remove(key)) {
+							balance.decrementAndGet(key);
+						}
+						key = shared + threads * random.nextInt(500) + id;
+						if (random.nextInt(3) == 0) {
+							assertEquals("Wrong remove result for " + key,
+									mine.remove(key), list.remove(key));
+						} else {
+							assertEquals("Wrong insert result for " + key,
+									mine.add(key), list.insert(key));
+						}
+						assertEquals("Wrong search result for " + key,
+								mine.contains(key), list.search(key));
+					}
+				} catch (Throwable e) {
+					synchronized (failures) {
+						failures.add(e);
+					}
+				}
+			});
+			workers[t].start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		assertTrue("Worker failed: " + failures, failures.isEmpty());
+		TreeSet<Integer> expected = new TreeSet<>();
+		for (int key = 0; key < shared; key++) {
+			int b = balance.get(key);
+			assertTrue("Key " + key + " inserted or removed twice", b == 0
+					|| b == 1);
+			assertEquals("Wrong search result for " + key, b == 1,
+					list.search(key));
+			if (b == 1)
+				expected.add(key);
+		}
+		for (TreeSet<Integer> mine : owned) {
+			expected.addAll(mine);
+		}
+		assertEquals("Wrong size", expected.size(), list.size());
+		assertEquals("Keys out of order", toString(expected), list.toString());
+	}
+}
@@ -0,0 +1,198 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import structures.tree.KeyCodec;
+import structures.tree.MappedBPlusTree;
+
+public class MappedBPlusTreeTest {
+
+	private static Path tempFile() throws IOException {
+		Path file = Files.createTempFile("mapped-bplus", ".tree");
+		// the tree creates the file itself when it is empty
+		Files.delete(file);
+		file.toFile().deleteOnExit();
+		return file;
+	}
+
+	// overwrites length bytes of the meta page in slot, from offset on
+	private static void damageMeta(Path file, int pageSize, int slot,
+			int offset, int length) throws IOException {
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.WRITE)) {
+			ByteBuffer junk = ByteBuffer.allocate(length);
+			for (int i = 0; i < length; i++) {
+				junk.put((byte) 0x5a);
+			}
+			junk.flip();
+			channel.write(junk, (long) slot * pageSize + offset);
+		}
+	}
+
+	private static <T extends Comparable<T>> void assertSameKeys(
+			TreeSet<T> expected, MappedBPlusTree<T> tree) {
+		assertEquals("Wrong size", expected.size(), tree.size());
+		if (expected.isEmpty())
+			return;
+		T first = expected.first();
+		ArrayList<T> keys = new ArrayList<>();
+		if (tree.search(first))
+			keys.add(first);
+		keys.addAll(tree.getGreaterThan(first, Integer.MAX_VALUE));
+		assertEquals("Wrong keys", new ArrayList<>(expected), keys);
+	}
+
+	@Test
+	public void testReopen() throws IOException {
+		Path file = tempFile();
+		try (MappedBPlusTree<Integer> tree = new MappedBPlusTree<>(file,
+				KeyCodec.INTEGER)) {
+			for (int i = 0; i < 1000; i++) {
+				tree.insert(i);
+			}
+			tree.commit();
+		}
+		try (MappedBPlusTree<Integer> tree = new MappedBPlusTree<>(file,
+				KeyCodec.INTEGER)) {
+			assertEquals("Committed keys lost", 1000, tree.size());
+			assertTrue("Present key not removed", tree.remove(500));
+			assertTrue("New key not inserted", tree.insert(5000));
+			tree.commit();
+			tree.insert(6000);
+			assertTrue("Uncommitted key not visible", tree.search(6000));
+		}
+		try (MappedBPlusTree<Integer> tree = new MappedBPlusTree<>(file,
+				KeyCodec.INTEGER)) {
+			assertEquals("Wrong size after reopening", 1000, tree.size());
+			assertFalse("Removed key came back", tree.search(500));
+			assertTrue("Committed key lost", tree.search(5000));
+			assertFalse("Uncommitted key survived close", tree.search(6000));
+			assertEquals("Wrong count below a key", 500, tree.numSmaller(501));
+		}
+	}
+
+	@Test
+	public void testSplitsAndMerges() throws IOException {
+		Random random = new Random(29);
+		for (int pageSize : new int[] { 512, 1024, 4096 }) {
+			Path file = tempFile();
+			TreeSet<Integer> expected = new TreeSet<>();
+			MappedBPlusTree<Integer> tree = new MappedBPlusTree<>(file,
+					KeyCodec.INTEGER, pageSize, 16);
+			// grow several levels, then shrink back through merges
+			for (int i = 0; i < 20000; i++) {
+				int key = random.nextInt(50000);
+				assertEquals("Wrong insert result", expected.add(key),
+						tree.insert(key));
+				if (i % 5000 == 0)
+					tree.commit();
+			}
+			assertSameKeys(expected, tree);
+			tree.commit();
+			tree.close();
+			tree = new MappedBPlusTree<>(file, KeyCodec.INTEGER);
+			assertSameKeys(expected, tree);
+			for (int i = 0; i < 60000; i++) {
+				int key = random.nextInt(50000);
+				assertEquals("Wrong remove result", expected.remove(key),
+						tree.remove(key));
+			}
+			assertSameKeys(expected, tree);
+			for (int key = -1; key < 50000; key += 997) {
+				assertEquals("Wrong count below " + key, expected.headSet(key)
+						.size(), tree.numSmaller(key));
+			}
+			tree.commit();
+			tree.close();
+			tree = new MappedBPlusTree<>(file, KeyCodec.INTEGER);
+			assertSameKeys(expected, tree);
+			tree.close();
+		}
+	}
+
+	@Test
+	public void testVariableLengthKeys() throws IOException {
+		Random random = new Random(30);
+		Path file = tempFile();
+		TreeSet<String> expected = new TreeSet<>();
+		try (MappedBPlusTree<String> tree = new MappedBPlusTree<>(file,
+				KeyCodec.STRING, 512, 16)) {
+			for (int i = 0; i < 5000; i++) {
+				StringBuilder key = new StringBuilder();
+				for (int j = random.nextInt(40); j >= 0; j--) {
+					key.append((char) ('a' + random.nextInt(26)));
+				}
+				if (random.nextInt(3) == 0) {
+					expected.remove(key.toString());
+					tree.remove(key.toString());
+				} else {
+					expected.add(key.toString());
+					tree.insert(key.toString());
+				}
+			}
+			assertSameKeys(expected, tree);
+			tree.commit();
+		}
+		try (MappedBPlusTree<String> tree = new MappedBPlusTree<>(file,
+				KeyCodec.STRING)) {
+			assertSameKeys(expected, tree);
+		}
+	}
+
+	@Test
+	public void testTornMetaPage() throws IOException {
+		int pageSize = 1024;
+		Path file = tempFile();
+		// creating the file commits transaction 1 into meta slot 1, every
+		// commit after it goes to the other slot
+		try (MappedBPlusTree<Integer> tree = new MappedBPlusTree<>(file,
+				KeyCodec.INTEGER, pageSize, 16)) {
+			tree.insert(1);
+			tree.commit(); // 2, slot 0
+			tree.insert(2);
+			tree.commit(); // 3, slot 1
+		}
+		// a bad checksum in the newest meta page
+		damageMeta(file, pageSize, 1, 48, 8);
+		try (MappedBPlusTree<Integer> tree = new MappedBPlusTree<>(file,
+				KeyCodec.INTEGER)) {
+			assertEquals("Did not fall back to the older meta page", 1,
+					tree.size());
+			assertTrue("Key of the older commit lost", tree.search(1));
+			assertFalse("Key of the damaged commit found", tree.search(2));
+			tree.insert(3);
+			tree.commit(); // 3 again, slot 1
+			tree.insert(4);
+			tree.commit(); // 4, slot 0
+		}
+		// a torn write of the newest meta page, in slot 0, whose page size
+		// must then be probed for to find slot 1
+		damageMeta(file, pageSize, 0, 20, 36);
+		try (MappedBPlusTree<Integer> tree = new MappedBPlusTree<>(file,
+				KeyCodec.INTEGER)) {
+			assertEquals("Did not fall back to the older meta page", 2,
+					tree.size());
+			assertTrue("Key of the older commit lost", tree.search(3));
+			assertFalse("Key of the torn commit found", tree.search(4));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPageSizeTooLarge() throws IOException {
+		new MappedBPlusTree<>(tempFile(), KeyCodec.INTEGER, 1 << 25, 16);
+	}
+}
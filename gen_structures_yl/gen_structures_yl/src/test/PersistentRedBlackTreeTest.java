@@ -0,0 +1,94 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import structures.tree.PersistentRedBlackTree;
+
+public class PersistentRedBlackTreeTest {
+
+	private PersistentRedBlackTree<Integer> tree;
+
+	@Before
+	public void setUp() {
+		tree = new PersistentRedBlackTree<>();
+		for (int i = 1; i <= 10; i++) {
+			tree = tree.insert(i * 10);
+		}
+	}
+
+	@Test
+	public void testInsertKeepsOldVersion() {
+		PersistentRedBlackTree<Integer> next = tree.insert(55);
+		assertEquals("Old version was modified",
+				"[10,20,30,40,50,60,70,80,90,100]", tree.toString());
+		assertEquals("New version is missing the key",
+				"[10,20,30,40,50,55,60,70,80,90,100]", next.toString());
+		assertFalse("Old version sees the new key", tree.search(55));
+		assertTrue("New version does not see the new key", next.search(55));
+	}
+
+	@Test
+	public void testRemoveKeepsOldVersion() {
+		PersistentRedBlackTree<Integer> next = tree.remove(50).remove(10);
+		assertEquals("Old version size changed", 10, tree.size());
+		assertEquals("New version has wrong size", 8, next.size());
+		assertEquals("Actual result is different from the expected result",
+				"[20,30,40,60,70,80,90,100]", next.toString());
+	}
+
+	@Test
+	public void testUnchangedVersionIsShared() {
+		assertTrue("Duplicate insert created a new version",
+				tree == tree.insert(30));
+		assertTrue("Removing a missing key created a new version",
+				tree == tree.remove(35));
+	}
+
+	@Test
+	public void testRankQueries() {
+		assertEquals("numGreater is wrong", 4, tree.numGreater(60));
+		assertEquals("numSmaller is wrong", 5, tree.numSmaller(60));
+		assertEquals("getGreaterThan is wrong", "[70, 80]", tree
+				.getGreaterThan(65, 2).toString());
+		assertEquals("getGreaterThan with maxReturned 0 is wrong", "[]", tree
+				.getGreaterThan(65, 0).toString());
+		assertEquals("getGreaterThan with a negative maxReturned is wrong",
+				"[]", tree.getGreaterThan(65, -1).toString());
+		assertEquals("getGreaterThan past the available keys is wrong",
+				"[90, 100]", tree.getGreaterThan(85, 10).toString());
+	}
+
+	@Test
+	public void testSplitJoin() {
+		PersistentRedBlackTree.Split<Integer> split = tree.split(50);
+		assertTrue("Split key not found", split.found);
+		assertEquals("Left part is wrong", "[10,20,30,40]",
+				split.left.toString());
+		assertEquals("Right part is wrong", "[60,70,80,90,100]",
+				split.right.toString());
+		assertEquals("Join did not restore the tree", tree.toString(),
+				PersistentRedBlackTree.join(split.left, 50, split.right)
+						.toString());
+	}
+
+	@Test
+	public void testSetOperations() {
+		PersistentRedBlackTree<Integer> other = new PersistentRedBlackTree<>();
+		for (int i = 0; i <= 120; i += 15) {
+			other = other.insert(i);
+		}
+		assertEquals("Union is wrong",
+				"[0,10,15,20,30,40,45,50,60,70,75,80,90,100,105,120]", tree
+						.union(other).toString());
+		assertEquals("Intersection is wrong", "[30,60,90]", tree
+				.intersection(other).toString());
+		assertEquals("Difference is wrong", "[10,20,40,50,70,80,100]", tree
+				.difference(other).toString());
+		assertEquals("Operand was modified", 10, tree.size());
+	}
+}
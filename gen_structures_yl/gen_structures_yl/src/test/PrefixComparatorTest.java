@@ -0,0 +1,79 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import structures.tree.PrefixComparator;
+import structures.tree.RedBlackTree;
+
+public class PrefixComparatorTest {
+
+	@Test
+	public void testStringCompare() {
+		PrefixComparator<String> c = PrefixComparator.STRING;
+		assertEquals("Wrong result for a smaller key", -3,
+				c.compare("abc", "abd", 0));
+		assertEquals("Wrong result starting past 0", 3,
+				c.compare("abd", "abc", 2));
+		assertEquals("Wrong result for a prefix", -3, c.compare("ab", "abc", 0));
+		assertEquals("Wrong result for an extension", 3,
+				c.compare("abc", "ab", 1));
+		assertEquals("Wrong result for equal keys", 0,
+				c.compare("abc", "abc", 3));
+		assertEquals("Wrong result for empty keys", 0, c.compare("", "", 0));
+		assertEquals("Wrong result for an empty key", -1, c.compare("", "a", 0));
+		assertEquals("Wrong result at the first char", 1,
+				c.compare("b", "abc", 0));
+		assertEquals("Wrong two-argument result", -1, c.compare("ab", "b"));
+		// chars above 0x7f compare as unsigned UTF-16, as in String
+		assertEquals("Wrong result for non-ASCII chars", 2,
+				c.compare("a\u00e9", "az", 1));
+	}
+
+	@Test
+	public void testRedBlackTree() {
+		Random random = new Random(44);
+		RedBlackTree<String> tree = new RedBlackTree<>(PrefixComparator.STRING);
+		List<String> expected = new ArrayList<>();
+		String prefix = "https://example.com/some/long/shared/path/";
+		for (int i = 0; i < 20000; i++) {
+			// short tails over two chars: many keys are prefixes of others,
+			// and many are inserted more than once
+			StringBuilder sb = new StringBuilder(prefix);
+			for (int n = random.nextInt(7); n > 0; n--) {
+				sb.append(random.nextBoolean() ? 'a' : 'b');
+			}
+			String key = sb.toString();
+			int at = Collections.binarySearch(expected, key);
+			if (random.nextInt(3) > 0) {
+				tree.insert(key);
+				expected.add(at < 0 ? -at - 1 : at, key);
+			} else {
+				assertEquals("remove disagrees for " + key, at >= 0,
+						tree.remove(key));
+				if (at >= 0)
+					expected.remove(at);
+			}
+			assertEquals("search disagrees for " + key,
+					expected.contains(key), tree.search(key) != null);
+			int less = 0;
+			while (less < expected.size()
+					&& expected.get(less).compareTo(key) < 0)
+				less++;
+			assertEquals("countLess is wrong for " + key, less,
+					tree.countLess(key));
+		}
+		tree.checkInvariants();
+		assertEquals("Keys out of order", expected,
+				tree.getGreaterThan("", expected.size()));
+		assertNull("Shared prefix found",
+				tree.search(prefix.substring(0, 10)));
+	}
+}
@@ -0,0 +1,108 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import structures.tree.IntAVLTree;
+import structures.tree.LongAVLTree;
+
+public class PrimitiveAVLTreeTest {
+
+	private static final int[] EXTREMES = { Integer.MIN_VALUE,
+			Integer.MIN_VALUE + 1, Integer.MAX_VALUE - 1, Integer.MAX_VALUE };
+
+	// the trees print without spaces: [1,2,3]
+	private static String toString(TreeSet<?> set) {
+		return set.toString().replace(", ", ",");
+	}
+
+	@Test
+	public void testIntAVLTree() {
+		Random random = new Random(43);
+		IntAVLTree tree = new IntAVLTree();
+		TreeSet<Integer> expected = new TreeSet<>();
+		for (int i = 0; i < 50000; i++) {
+			// mostly a dense range, sometimes the extremes
+			int key = random.nextInt(10) == 0 ? EXTREMES[random
+					.nextInt(EXTREMES.length)] : random.nextInt(2000) - 1000;
+			if (random.nextInt(3) == 0) {
+				assertEquals("Wrong delete result for " + key,
+						expected.remove(key), tree.delete(key));
+			} else {
+				assertEquals("Wrong insert result for " + key,
+						expected.add(key), tree.insert(key));
+			}
+			assertEquals("Wrong search result for " + key,
+					expected.contains(key), tree.search(key));
+			assertEquals("Wrong size", expected.size(), tree.size());
+			assertEquals("Wrong isEmpty", expected.isEmpty(), tree.isEmpty());
+			if (i % 1000 == 0)
+				assertEquals("Keys out of order", toString(expected),
+						tree.toString());
+		}
+		assertEquals("Keys out of order", toString(expected), tree.toString());
+	}
+
+	@Test
+	public void testLongAVLTree() {
+		Random random = new Random(44);
+		LongAVLTree tree = new LongAVLTree();
+		TreeSet<Long> expected = new TreeSet<>();
+		for (int i = 0; i < 50000; i++) {
+			long key = random.nextInt(10) == 0 ? random.nextLong()
+					: (random.nextInt(2000) - 1000) * (1L << 40);
+			if (random.nextInt(3) == 0) {
+				assertEquals("Wrong delete result for " + key,
+						expected.remove(key), tree.delete(key));
+			} else {
+				assertEquals("Wrong insert result for " + key,
+						expected.add(key), tree.insert(key));
+			}
+			assertEquals("Wrong search result for " + key,
+					expected.contains(key), tree.search(key));
+			assertEquals("Wrong size", expected.size(), tree.size());
+			if (i % 1000 == 0)
+				assertEquals("Keys out of order", toString(expected),
+						tree.toString());
+		}
+		assertEquals("Keys out of order", toString(expected), tree.toString());
+	}
+
+	@Test
+	public void testSlotReuse() {
+		IntAVLTree ints = new IntAVLTree(100);
+		LongAVLTree longs = new LongAVLTree(100);
+		for (int i = 0; i < 100; i++) {
+			ints.insert(i);
+			longs.insert(i);
+		}
+		assertEquals("Arrays grew before they were full", 100, ints.capacity());
+		assertEquals("Arrays grew before they were full", 100,
+				longs.capacity());
+		for (int i = 0; i < 100; i += 2) {
+			ints.delete(i);
+			longs.delete(i);
+		}
+		// the freed slots take the new keys
+		for (int i = 100; i < 150; i++) {
+			ints.insert(i);
+			longs.insert(i);
+		}
+		assertEquals("Freed slots not reused", 100, ints.capacity());
+		assertEquals("Freed slots not reused", 100, longs.capacity());
+		for (int i = 0; i < 150; i++) {
+			boolean present = i >= 100 || i % 2 == 1;
+			assertEquals("Wrong key in a reused slot", present, ints.search(i));
+			assertEquals("Wrong key in a reused slot", present,
+					longs.search(i));
+		}
+		ints.insert(1000);
+		assertTrue("Arrays did not grow when full", ints.capacity() > 100);
+		assertEquals("Wrong size", 101, ints.size());
+	}
+}
@@ -0,0 +1,106 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import structures.tree.IntRedBlackTree;
+import structures.tree.LongRedBlackTree;
+
+public class PrimitiveRedBlackTreeTest {
+
+	// the trees print without spaces: [1,2,3]
+	private static String toString(TreeSet<?> set) {
+		return set.toString().replace(", ", ",");
+	}
+
+	@Test
+	public void testIntRedBlackTree() {
+		Random random = new Random(30);
+		IntRedBlackTree tree = new IntRedBlackTree(4);
+		TreeSet<Integer> expected = new TreeSet<>();
+		for (int i = 0; i < 20000; i++) {
+			int key = random.nextInt(20) == 0 ? random.nextInt() : random
+					.nextInt(2000) - 1000;
+			if (random.nextInt(3) == 0) {
+				assertEquals("Wrong remove result for " + key,
+						expected.remove(key), tree.remove(key));
+			} else {
+				assertEquals("Wrong insert result for " + key,
+						expected.add(key), tree.insert(key));
+			}
+			assertEquals("Wrong search result for " + key,
+					expected.contains(key), tree.search(key));
+			assertEquals("Wrong size", expected.size(), tree.size());
+			assertEquals("Wrong numGreater for " + key, expected.tailSet(key,
+					false).size(), tree.numGreater(key));
+			assertEquals("Wrong numSmaller for " + key, expected.headSet(key)
+					.size(), tree.numSmaller(key));
+			if (i % 100 == 0) {
+				int[] greater = expected.tailSet(key, false).stream()
+						.limit(5).mapToInt(Integer::intValue).toArray();
+				assertEquals("Wrong keys greater than " + key,
+						Arrays.toString(greater),
+						Arrays.toString(tree.getGreaterThan(key, 5)));
+			}
+		}
+		assertEquals("Keys out of order", toString(expected), tree.toString());
+	}
+
+	@Test
+	public void testLongRedBlackTree() {
+		Random random = new Random(31);
+		LongRedBlackTree tree = new LongRedBlackTree(4);
+		TreeSet<Long> expected = new TreeSet<>();
+		for (int i = 0; i < 20000; i++) {
+			long key = random.nextInt(20) == 0 ? random.nextLong()
+					: (random.nextInt(2000) - 1000) * (1L << 40);
+			if (random.nextInt(3) == 0) {
+				assertEquals("Wrong remove result for " + key,
+						expected.remove(key), tree.remove(key));
+			} else {
+				assertEquals("Wrong insert result for " + key,
+						expected.add(key), tree.insert(key));
+			}
+			assertEquals("Wrong search result for " + key,
+					expected.contains(key), tree.search(key));
+			assertEquals("Wrong size", expected.size(), tree.size());
+			assertEquals("Wrong numGreater for " + key, expected.tailSet(key,
+					false).size(), tree.numGreater(key));
+			assertEquals("Wrong numSmaller for " + key, expected.headSet(key)
+					.size(), tree.numSmaller(key));
+			if (i % 100 == 0) {
+				long[] greater = expected.tailSet(key, false).stream()
+						.limit(5).mapToLong(Long::longValue).toArray();
+				assertEquals("Wrong keys greater than " + key,
+						Arrays.toString(greater),
+						Arrays.toString(tree.getGreaterThan(key, 5)));
+			}
+		}
+		assertEquals("Keys out of order", toString(expected), tree.toString());
+	}
+
+	@Test
+	public void testGetGreaterThanLimits() {
+		IntRedBlackTree ints = new IntRedBlackTree();
+		LongRedBlackTree longs = new LongRedBlackTree();
+		for (int i = 1; i <= 10; i++) {
+			ints.insert(i);
+			longs.insert(i);
+		}
+		assertEquals("Negative maximum returned keys", 0,
+				ints.getGreaterThan(0, -1).length);
+		assertEquals("Negative maximum returned keys", 0,
+				longs.getGreaterThan(0, -1).length);
+		assertEquals("Zero maximum returned keys", 0,
+				longs.getGreaterThan(0, 0).length);
+		assertEquals("Wrong keys greater", "[9, 10]",
+				Arrays.toString(longs.getGreaterThan(8, 100)));
+		assertEquals("Wrong keys greater", "[3, 4]",
+				Arrays.toString(ints.getGreaterThan(2, 2)));
+	}
+}
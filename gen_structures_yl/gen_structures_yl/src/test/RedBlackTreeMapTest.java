@@ -0,0 +1,97 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Comparator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import structures.tree.RedBlackTreeMap;
+
+public class RedBlackTreeMapTest {
+
+	private RedBlackTreeMap<Integer, String> map;
+
+	@Before
+	public void setUp() {
+		map = new RedBlackTreeMap<>();
+		for (int i = 10; i <= 100; i += 10) {
+			map.put(i, "v" + i);
+		}
+	}
+
+	@Test
+	public void testPutGetRemove() {
+		assertEquals("Wrong size", 10, map.size());
+		assertEquals("Wrong value", "v30", map.get(30));
+		assertEquals("put did not return the old value", "v30",
+				map.put(30, "thirty"));
+		assertEquals("Value not replaced", "thirty", map.get(30));
+		assertEquals("remove did not return the value", "thirty",
+				map.remove(30));
+		assertNull("Key still present after remove", map.get(30));
+		assertEquals("Wrong size after remove", 9, map.size());
+	}
+
+	@Test
+	public void testNavigation() {
+		assertEquals("floorKey is wrong", Integer.valueOf(30), map.floorKey(35));
+		assertEquals("ceilingKey is wrong", Integer.valueOf(40),
+				map.ceilingKey(35));
+		assertEquals("higherKey is wrong", Integer.valueOf(50),
+				map.higherKey(40));
+		assertEquals("lowerKey is wrong", Integer.valueOf(30), map.lowerKey(40));
+		assertNull("floorKey below the smallest key", map.floorKey(5));
+		assertNull("higherKey above the largest key", map.higherKey(100));
+		assertEquals("pollFirstEntry is wrong", Integer.valueOf(10), map
+				.pollFirstEntry().getKey());
+		assertEquals("pollLastEntry is wrong", Integer.valueOf(100), map
+				.pollLastEntry().getKey());
+		assertEquals("Wrong size after polls", 8, map.size());
+	}
+
+	@Test
+	public void testRank() {
+		assertEquals("rank is wrong", 4, map.rank(50));
+		assertEquals("rank of a missing key is wrong", 4, map.rank(45));
+		assertEquals("select is wrong", Integer.valueOf(50), map.select(4)
+				.getKey());
+	}
+
+	@Test
+	public void testViews() {
+		assertEquals("headMap is wrong", "{10=v10, 20=v20, 30=v30}", map
+				.headMap(30, true).toString());
+		assertEquals("tailMap size is wrong", 3, map.tailMap(70, false).size());
+		map.tailMap(70, false).clear();
+		assertEquals("Clearing a view did not write through", 7, map.size());
+		map.put(75, "v75");
+		assertEquals("View does not see new keys", "{75=v75}",
+				map.tailMap(70, false).toString());
+	}
+
+	@Test
+	public void testComparator() {
+		map = new RedBlackTreeMap<>(Comparator.<Integer> reverseOrder());
+		for (int i = 10; i <= 100; i += 10) {
+			map.put(i, "v" + i);
+		}
+		assertEquals("firstKey is wrong", Integer.valueOf(100), map.firstKey());
+		assertEquals("lastKey is wrong", Integer.valueOf(10), map.lastKey());
+		assertEquals("floorKey is wrong", Integer.valueOf(40),
+				map.floorKey(35));
+		assertEquals("higherKey is wrong", Integer.valueOf(30),
+				map.higherKey(35));
+		assertEquals("rank is wrong", 7, map.rank(30));
+		assertEquals("put did not return the old value", "v30",
+				map.put(30, "thirty"));
+		assertEquals("remove did not return the value", "v50",
+				map.remove(50));
+		assertEquals("Not in reverse order",
+				"{100=v100, 90=v90, 80=v80, 70=v70, 60=v60, 40=v40, "
+						+ "30=thirty, 20=v20, 10=v10}",
+				map.toString());
+	}
+}
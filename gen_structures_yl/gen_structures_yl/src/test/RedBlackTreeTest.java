@@ -0,0 +1,395 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import structures.tree.KeyCodec;
+import structures.tree.RedBlackTree;
+
+public class RedBlackTreeTest {
+
+	private RedBlackTree<Integer> rbTree;
+
+	@Before
+	public void setUp() {
+		rbTree = new RedBlackTree<>();
+	}
+
+	@Test
+	public void testCounts() {
+		assertEquals("Empty tree not at size 0", 0, rbTree.size());
+		for (int i = 10; i <= 100; i += 10) {
+			rbTree.insert(i);
+		}
+		rbTree.insert(50);
+		assertEquals("countLess is wrong", 4, rbTree.countLess(50));
+		assertEquals("countLessOrEqual is wrong", 6, rbTree.countLessOrEqual(50));
+		assertEquals("countBetween is wrong", 4, rbTree.countBetween(40, 60));
+		assertEquals("countBetween of an empty range is wrong", 0,
+				rbTree.countBetween(60, 40));
+		assertEquals("numGreater is wrong", 5, rbTree.numGreater(50));
+		assertTrue("Present key not removed", rbTree.remove(50));
+		assertFalse("Missing key removed", rbTree.remove(55));
+		assertEquals("Wrong size after remove", 10, rbTree.size());
+	}
+
+	@Test
+	public void testRandomOperations() {
+		Random random = new Random(42);
+		List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < 20000; i++) {
+			int key = random.nextInt(500);
+			if (random.nextInt(3) > 0) {
+				rbTree.insert(key);
+				int at = Collections.binarySearch(expected, key);
+				expected.add(at < 0 ? -at - 1 : at, key);
+			} else {
+				assertEquals("remove disagrees for " + key,
+						expected.remove((Integer) key), rbTree.remove(key));
+			}
+			if (i % 1000 == 0) {
+				rbTree.checkInvariants();
+			}
+			int probe = random.nextInt(502) - 1;
+			int less = 0;
+			int lessOrEqual = 0;
+			for (int k : expected) {
+				less += k < probe ? 1 : 0;
+				lessOrEqual += k <= probe ? 1 : 0;
+			}
+			assertEquals("countLess is wrong", less, rbTree.countLess(probe));
+			assertEquals("countLessOrEqual is wrong", lessOrEqual,
+					rbTree.countLessOrEqual(probe));
+		}
+		rbTree.checkInvariants();
+		assertEquals("Wrong size", expected.size(), rbTree.size());
+	}
+
+	@Test
+	public void testSaveLoad() throws IOException {
+		for (int i = 0; i < 1000; i++) {
+			rbTree.insert(i % 300);
+		}
+		Path file = Files.createTempFile("rbtree", ".tree");
+		try {
+			rbTree.save(file, KeyCodec.INTEGER);
+			RedBlackTree<Integer> loaded = RedBlackTree.load(file,
+					KeyCodec.INTEGER);
+			loaded.checkInvariants();
+			assertEquals("Wrong size after load", 1000, loaded.size());
+			assertEquals("Wrong counts after load", rbTree.countBetween(50, 99),
+					loaded.countBetween(50, 99));
+			loaded.insert(1000);
+			loaded.checkInvariants();
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	// checks rbTree against expected, which is sorted, including the counts
+	// kept in every node, which numSmaller adds up
+	private void assertSameKeys(List<Integer> expected) {
+		rbTree.checkInvariants();
+		assertEquals("Wrong size", expected.size(), rbTree.size());
+		assertEquals("Wrong keys", expected,
+				rbTree.getGreaterThan(Integer.MIN_VALUE, expected.size()));
+		for (int probe = -1; probe <= 1001; probe++) {
+			int at = Collections.binarySearch(expected, probe);
+			// the first occurrence, binarySearch may find any of them
+			if (at >= 0)
+				while (at > 0 && expected.get(at - 1) == probe)
+					at--;
+			assertEquals("numSmaller is wrong for " + probe, at < 0 ? -at - 1
+					: at, rbTree.numSmaller(probe));
+		}
+	}
+
+	private static List<Integer> randomKeys(Random random, int count, int bound) {
+		List<Integer> keys = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			keys.add(random.nextInt(bound));
+		}
+		return keys;
+	}
+
+	private static List<Integer> sorted(List<Integer> a, List<Integer> b) {
+		List<Integer> keys = new ArrayList<>(a);
+		keys.addAll(b);
+		Collections.sort(keys);
+		return keys;
+	}
+
+	@Test
+	public void testInsertAll() {
+		Random random = new Random(34);
+		List<Integer> initial = randomKeys(random, 1000, 500);
+		for (int key : initial) {
+			rbTree.insert(key);
+		}
+		List<Integer> batch = Arrays.asList(7, 7, 250, 999, 0, 7, 1000, 3);
+		rbTree.insertAll(batch);
+		List<Integer> expected = sorted(initial, batch);
+		assertSameKeys(expected);
+		// a batch larger than the tree, duplicates on both sides
+		batch = randomKeys(random, 3000, 500);
+		rbTree.insertAll(batch);
+		expected = sorted(expected, batch);
+		assertSameKeys(expected);
+		// into an empty tree
+		rbTree = new RedBlackTree<>();
+		batch = randomKeys(random, 100, 20);
+		rbTree.insertAll(batch);
+		assertSameKeys(sorted(batch, Collections.<Integer> emptyList()));
+		rbTree.insert(10);
+		rbTree.remove(3);
+		rbTree.checkInvariants();
+	}
+
+	@Test
+	public void testRemoveAll() {
+		Random random = new Random(35);
+		List<Integer> expected = randomKeys(random, 1000, 500);
+		rbTree.insertAll(expected);
+		Collections.sort(expected);
+		// 600 is absent and the second 42 takes a second occurrence only if
+		// there is one
+		List<Integer> batch = Arrays.asList(42, 600, 42, expected.get(0),
+				expected.get(999));
+		int removed = 0;
+		for (Integer key : batch) {
+			if (expected.remove(key))
+				removed++;
+		}
+		assertEquals("Wrong number of keys removed", removed,
+				rbTree.removeAll(batch));
+		assertSameKeys(expected);
+		// a batch larger than the tree; half of it is absent, and it has
+		// more copies of some keys than the tree
+		batch = randomKeys(random, 3000, 1000);
+		removed = 0;
+		for (Integer key : batch) {
+			if (expected.remove(key))
+				removed++;
+		}
+		assertEquals("Wrong number of keys removed", removed,
+				rbTree.removeAll(batch));
+		assertSameKeys(expected);
+		rbTree.insert(250);
+		rbTree.checkInvariants();
+		assertEquals("Wrong number of keys removed from an empty tree", 0,
+				new RedBlackTree<Integer>().removeAll(batch));
+	}
+
+	@Test
+	public void testBatchComparisons() {
+		// comparisons made by the trees, sorting the batches included
+		final int[] comparisons = new int[1];
+		Comparator<Integer> counting = (a, b) -> {
+			comparisons[0]++;
+			return Integer.compare(a, b);
+		};
+		rbTree = new RedBlackTree<>(counting);
+		List<Integer> even = new ArrayList<>();
+		for (int i = 0; i < 1000000; i++) {
+			even.add(2 * i);
+		}
+		rbTree.insertAll(even);
+		Random random = new Random(37);
+		for (boolean run : new boolean[] { true, false }) {
+			// sorted batches of 10000 odd keys: one contiguous run, or spread
+			// over the whole tree
+			List<List<Integer>> batches = new ArrayList<>();
+			for (int b = 0; b < 2; b++) {
+				List<Integer> batch = new ArrayList<>();
+				int start = random.nextInt(990000);
+				for (int i = 0; i < 10000; i++) {
+					int key = run ? start + i : random.nextInt(1000000);
+					batch.add(2 * key + 1);
+				}
+				Collections.sort(batch);
+				batches.add(batch);
+			}
+			comparisons[0] = 0;
+			for (int key : batches.get(0)) {
+				rbTree.insert(key);
+			}
+			int separate = comparisons[0];
+			comparisons[0] = 0;
+			rbTree.insertAll(batches.get(1));
+			int batched = comparisons[0];
+			assertTrue("insertAll made " + batched + " comparisons against "
+					+ separate + " for inserts", run ? 4 * batched < separate
+					: 3 * batched < 2 * separate);
+			comparisons[0] = 0;
+			for (int key : batches.get(0)) {
+				rbTree.remove(key);
+			}
+			separate = comparisons[0];
+			comparisons[0] = 0;
+			assertEquals("Wrong number of keys removed", 10000,
+					rbTree.removeAll(batches.get(1)));
+			batched = comparisons[0];
+			assertTrue("removeAll made " + batched + " comparisons against "
+					+ separate + " for removes", run ? 2 * batched < separate
+					: 4 * batched < 5 * separate);
+		}
+		rbTree.checkInvariants();
+		assertEquals("Wrong size", 1000000, rbTree.size());
+	}
+
+	@Test
+	public void testSetOperations() {
+		Random random = new Random(36);
+		RedBlackTree<Integer> other = new RedBlackTree<>();
+		// how often each key is in either tree, several times for most
+		int[] inTree = new int[100];
+		int[] inOther = new int[100];
+		for (int i = 0; i < 300; i++) {
+			int key = random.nextInt(100);
+			rbTree.insert(key);
+			inTree[key]++;
+			key = random.nextInt(100);
+			other.insert(key);
+			inOther[key]++;
+		}
+		// equal keys are matched pairwise
+		List<Integer> union = new ArrayList<>();
+		List<Integer> intersection = new ArrayList<>();
+		List<Integer> difference = new ArrayList<>();
+		for (int key = 0; key < 100; key++) {
+			union.addAll(Collections.nCopies(
+					Math.max(inTree[key], inOther[key]), key));
+			intersection.addAll(Collections.nCopies(
+					Math.min(inTree[key], inOther[key]), key));
+			difference.addAll(Collections.nCopies(
+					Math.max(0, inTree[key] - inOther[key]), key));
+		}
+		assertSetOperation("union", union, rbTree.union(other));
+		assertSetOperation("intersection", intersection,
+				rbTree.intersection(other));
+		assertSetOperation("difference", difference, rbTree.difference(other));
+		assertSetOperation("difference", Collections.<Integer> emptyList(),
+				rbTree.difference(rbTree));
+		assertSetOperation("intersection",
+				Collections.<Integer> emptyList(),
+				rbTree.intersection(new RedBlackTree<Integer>()));
+		// the operands are left as they were
+		rbTree.checkInvariants();
+		assertEquals("Tree changed", 300, rbTree.size());
+		assertEquals("Other tree changed", 300, other.size());
+		assertEquals("Wrong count of a key after the operations", inTree[42],
+				rbTree.countBetween(42, 42));
+	}
+
+	private static void assertSetOperation(String op, List<Integer> expected,
+			RedBlackTree<Integer> result) {
+		result.checkInvariants();
+		assertEquals("Wrong size of " + op, expected.size(), result.size());
+		assertEquals("Wrong " + op, expected,
+				result.getGreaterThan(Integer.MIN_VALUE, expected.size()));
+		int smaller = 0;
+		for (int key : expected) {
+			smaller += key < 50 ? 1 : 0;
+		}
+		assertEquals("numSmaller is wrong after " + op, smaller,
+				result.numSmaller(50));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetOperationComparators() {
+		rbTree.union(new RedBlackTree<>(Comparator.<Integer> reverseOrder()));
+	}
+
+	@Test
+	public void testBoundedQueries() {
+		// 10, 20, 20, 20, 30, ..., 100
+		for (int i = 10; i <= 100; i += 10) {
+			rbTree.insert(i);
+		}
+		rbTree.insert(20);
+		rbTree.insert(20);
+		assertEquals("Wrong keys greater", Arrays.asList(20, 20, 20, 30),
+				rbTree.getGreaterThan(10, 4));
+		assertEquals("Wrong keys greater than an absent key",
+				Arrays.asList(30, 40), rbTree.getGreaterThan(25, 2));
+		assertEquals("Wrong keys greater, fewer than maxReturned",
+				Arrays.asList(90, 100), rbTree.getGreaterThan(80, 50));
+		assertEquals("Keys greater than the largest",
+				Collections.emptyList(), rbTree.getGreaterThan(100, 5));
+		assertEquals("Keys returned for maxReturned 0",
+				Collections.emptyList(), rbTree.getGreaterThan(0, 0));
+		assertEquals("Keys returned for a negative maxReturned",
+				Collections.emptyList(), rbTree.getGreaterThan(0, -1));
+		// getLessThan returns the closest key first
+		assertEquals("Wrong keys less", Arrays.asList(20, 20, 20, 10),
+				rbTree.getLessThan(30, 4));
+		assertEquals("Wrong keys less than an absent key",
+				Arrays.asList(50, 40, 30), rbTree.getLessThan(55, 3));
+		assertEquals("Wrong keys less, fewer than maxReturned",
+				Arrays.asList(10), rbTree.getLessThan(20, 50));
+		assertEquals("Keys less than the smallest", Collections.emptyList(),
+				rbTree.getLessThan(10, 5));
+		assertEquals("Keys returned for maxReturned 0",
+				Collections.emptyList(), rbTree.getLessThan(200, 0));
+		assertEquals("Keys returned for a negative maxReturned",
+				Collections.emptyList(), rbTree.getLessThan(200, -3));
+		// the Consumer and array variants see the same keys
+		List<Integer> seen = new ArrayList<>();
+		assertEquals("Wrong count passed to action", 3,
+				rbTree.getGreaterThan(15, 3, seen::add));
+		assertEquals("Wrong keys passed to action", Arrays.asList(20, 20, 20),
+				seen);
+		seen.clear();
+		assertEquals("Wrong count passed to action", 2,
+				rbTree.getLessThan(95, 2, seen::add));
+		assertEquals("Wrong keys passed to action", Arrays.asList(90, 80),
+				seen);
+		assertEquals("Keys passed for a negative maxReturned", 0,
+				rbTree.getLessThan(95, -1, seen::add));
+		Integer[] dest = new Integer[4];
+		assertEquals("Wrong count written", 2, rbTree.getGreaterThan(85, dest));
+		assertEquals("Wrong keys written", Arrays.asList(90, 100, null, null),
+				Arrays.asList(dest));
+		assertEquals("Wrong count written", 4, rbTree.getLessThan(100, dest));
+		assertEquals("Wrong keys written", Arrays.asList(90, 80, 70, 60),
+				Arrays.asList(dest));
+	}
+
+	@Test
+	public void testComparator() {
+		rbTree = new RedBlackTree<>(Comparator.<Integer> reverseOrder());
+		for (int i = 1; i <= 10; i++) {
+			rbTree.insert(i);
+		}
+		rbTree.insert(5);
+		rbTree.checkInvariants();
+		assertTrue("Present key not found", rbTree.search(5) != null);
+		assertTrue("Absent key found", rbTree.search(11) == null);
+		assertEquals("Not in reverse order",
+				Arrays.asList(10, 9, 8, 7, 6, 5, 5, 4, 3, 2, 1),
+				rbTree.getGreaterThan(11, 20));
+		assertEquals("getGreaterThan is wrong", Arrays.asList(7, 6, 5),
+				rbTree.getGreaterThan(8, 3));
+		assertEquals("getLessThan is wrong", Arrays.asList(6, 7),
+				rbTree.getLessThan(5, 2));
+		assertEquals("countLess is wrong", 5, rbTree.countLess(5));
+		assertEquals("numGreater is wrong", 4, rbTree.numGreater(5));
+		assertTrue("Present key not removed", rbTree.remove(9));
+		rbTree.checkInvariants();
+		assertEquals("countLess after remove is wrong", 4, rbTree.countLess(5));
+	}
+}
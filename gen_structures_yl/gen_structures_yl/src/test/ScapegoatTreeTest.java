@@ -0,0 +1,62 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import structures.tree.ScapegoatTree;
+
+public class ScapegoatTreeTest {
+
+	private ScapegoatTree<Integer> tree;
+
+	@Before
+	public void setUp() {
+		tree = new ScapegoatTree<>();
+	}
+
+	@Test
+	public void testInsertDelete() {
+		for (int i = 1; i <= 10; i++) {
+			assertTrue("New key not inserted", tree.insert(i));
+		}
+		assertFalse("Duplicate key inserted", tree.insert(5));
+		assertTrue("Present key not deleted", tree.delete(5));
+		assertFalse("Missing key deleted", tree.delete(5));
+		assertTrue("Deleting the root failed", tree.delete(4) && tree.delete(8));
+		assertEquals("Actual result is different from the expected result",
+				"[1,2,3,6,7,9,10]", tree.toString());
+		assertEquals("Wrong size", 7, tree.size());
+	}
+
+	@Test
+	public void testRandomOperations() {
+		Random random = new Random(46);
+		TreeSet<Integer> expected = new TreeSet<>();
+		for (int i = 0; i < 50000; i++) {
+			int key = random.nextInt(2000);
+			switch (random.nextInt(3)) {
+			case 0:
+				assertEquals("insert disagrees for " + key,
+						expected.add(key), tree.insert(key));
+				break;
+			case 1:
+				assertEquals("delete disagrees for " + key,
+						expected.remove(key), tree.delete(key));
+				break;
+			default:
+				assertEquals("search disagrees for " + key,
+						expected.contains(key), tree.search(key));
+			}
+		}
+		assertEquals("Wrong size", expected.size(), tree.size());
+		assertEquals("Wrong keys", expected.toString().replace(" ", ""),
+				tree.toString());
+	}
+}
@@ -0,0 +1,51 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import structures.tree.SplayCache;
+
+public class SplayCacheTest {
+
+	@Test
+	public void testEviction() {
+		SplayCache<Integer, String> cache = new SplayCache<>(3);
+		for (int i = 0; i < 10; i++) {
+			assertNull("New key had a value", cache.put(i, "v" + i));
+		}
+		assertEquals("Cache above its maximum size", 3, cache.size());
+		assertEquals("Wrong eviction count", 7, cache.getEvictionCount());
+		assertEquals("Most recent key was evicted", "v9", cache.get(9));
+		assertEquals("put did not return the old value", "v9", cache.put(9, "w9"));
+		assertEquals("Value not replaced", "w9", cache.remove(9));
+		assertNull("Removed key still cached", cache.get(9));
+		assertEquals("Wrong hit count", 1, cache.getHitCount());
+		assertEquals("Wrong miss count", 1, cache.getMissCount());
+	}
+
+	@Test
+	public void testWeightAndExpiry() throws InterruptedException {
+		SplayCache<String, String> cache = new SplayCache<>(10,
+				(key, value) -> value.length(), 50, TimeUnit.MILLISECONDS);
+		cache.put("a", "12345");
+		cache.put("b", "123456");
+		assertEquals("Cache above its maximum weight", 1, cache.size());
+		assertEquals("Wrong previous value", "123456", cache.put("b", "1234"));
+		cache.put("c", "12345678901");
+		assertNull("Entry heavier than the cache was kept", cache.get("c"));
+		assertEquals("Other entries evicted by a heavy entry", "1234",
+				cache.get("b"));
+		assertEquals("Heavy entry did not drop the old value", "1234",
+				cache.put("b", "12345678901"));
+		assertNull("Old value kept beside a heavy entry", cache.get("b"));
+		assertEquals("Wrong weight", 0, cache.weight());
+		cache.put("d", "1");
+		Thread.sleep(100);
+		assertNull("Expired entry was returned", cache.get("d"));
+		assertEquals("Expired entry not removed", 0, cache.weight());
+	}
+}
@@ -5,6 +5,8 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Comparator;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -216,6 +218,37 @@ public class SplayTreeTest {
 		trace("After remove of D");
 	}
 
+	@Test
+	public void testDepthThresholdRead() {
+		SplayTree<String> tree = new SplayTree<String>(
+				SplayTree.ReadPolicy.DEPTH_THRESHOLD);
+		tree.setDepthThreshold(1);
+		tree.insert("A");
+		tree.insert("B");
+		tree.insert("C");
+		assertTrue("Can't find item", tree.contains("B"));
+		assertEquals("Shallow read restructured the tree", "C",
+				tree.getRootValue());
+		assertTrue("Can't find item", tree.contains("A"));
+		assertEquals("Deep read was not splayed", "A", tree.getRootValue());
+	}
+
+	@Test
+	public void testDeferredSplay() {
+		SplayTree<String> tree = new SplayTree<String>(
+				SplayTree.ReadPolicy.DEFERRED);
+		tree.setDepthThreshold(0);
+		tree.insert("A");
+		tree.insert("B");
+		tree.insert("C");
+		assertTrue("Can't find item", tree.contains("A"));
+		assertEquals("Read restructured the tree", "C", tree.getRootValue());
+		assertEquals("Deferred splay not applied", 1,
+				tree.applyDeferredSplays());
+		assertEquals("Deferred splay did not reach the root", "A",
+				tree.getRootValue());
+	}
+
 	/**
 	 * @param string
 	 */
@@ -226,4 +259,22 @@ public class SplayTreeTest {
 
 	}
 
+	@Test
+	public void testComparator() {
+		testTree = new SplayTree<String>(SplayTree.ReadPolicy.ALWAYS,
+				Comparator.<String> reverseOrder());
+		String[] items = { "D", "A", "F", "B", "E", "C" };
+		for (String item : items) {
+			testTree.insert(item);
+		}
+		assertEquals("findMin is not the first in reverse order", "F",
+				testTree.findMin());
+		assertEquals("findMax is not the last in reverse order", "A",
+				testTree.findMax());
+		assertTrue("Present item not found", testTree.contains("C"));
+		assertFalse("Absent item found", testTree.contains("G"));
+		assertTrue("Present item not removed", testTree.remove("F"));
+		assertEquals("findMin after remove is wrong", "E", testTree.findMin());
+		assertEquals("Wrong size", 5, testTree.size());
+	}
 }
@@ -0,0 +1,69 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+
+import structures.tree.IntSuccessorSet;
+import structures.tree.LongSuccessorSet;
+
+public class SuccessorSetTest {
+
+	@Test
+	public void testLongSuccessorSet() {
+		LongSuccessorSet set = new LongSuccessorSet();
+		long[] keys = { Long.MIN_VALUE, -64, -1, 0, 63, 64, 1L << 40,
+				Long.MAX_VALUE };
+		for (long key : keys) {
+			assertTrue("New key not inserted", set.insert(key));
+		}
+		assertFalse("Duplicate key inserted", set.insert(64));
+		assertEquals("Wrong higher", 0, set.higher(-1));
+		assertEquals("Wrong higher", 1L << 40, set.higher(64));
+		assertEquals("Wrong ceiling", 63, set.ceiling(63));
+		assertEquals("Wrong lower", -64, set.lower(-1));
+		assertEquals("Wrong floor", 64, set.floor(1000));
+		assertEquals("Wrong first", Long.MIN_VALUE, set.first());
+		assertTrue("Present key not removed", set.remove(1L << 40));
+		assertEquals("Wrong higher after remove", Long.MAX_VALUE,
+				set.higher(64));
+		assertEquals("Wrong keys greater", 3,
+				set.getGreaterThan(-1, 3).length);
+		assertEquals("Keys returned for maxReturned 0", 0,
+				set.getGreaterThan(-1, 0).length);
+		assertEquals("Keys returned for a negative maxReturned", 0,
+				set.getGreaterThan(1, -1).length);
+		assertEquals("Actual result is different from the expected result",
+				"[-9223372036854775808,-64,-1,0,63,64,9223372036854775807]",
+				set.toString());
+	}
+
+	@Test
+	public void testIntSuccessorSet() {
+		IntSuccessorSet set = new IntSuccessorSet();
+		for (int i = -1000; i < 1000; i += 3) {
+			set.insert(i);
+		}
+		assertEquals("Wrong size", 667, set.size());
+		assertEquals("Wrong higher", 2, set.higher(-1));
+		assertEquals("Wrong lower", -4, set.lower(-1));
+		assertTrue("Present key not removed", set.remove(2));
+		assertEquals("Wrong higher after remove", 5, set.higher(-1));
+		assertEquals("Wrong last", 998, set.last());
+		assertEquals("Keys returned for maxReturned 0", 0,
+				set.getGreaterThan(-1, 0).length);
+		assertEquals("Keys returned for a negative maxReturned", 0,
+				set.getGreaterThan(-1, -5).length);
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void testNoHigher() {
+		IntSuccessorSet set = new IntSuccessorSet();
+		set.insert(Integer.MAX_VALUE);
+		set.higher(Integer.MAX_VALUE);
+	}
+}
@@ -0,0 +1,60 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import structures.tree.ImplicitTreap;
+import structures.tree.Treap;
+
+public class TreapTest {
+
+	@Test
+	public void testSplitMerge() {
+		Treap<Integer> treap = new Treap<>();
+		for (int i = 1; i <= 10; i++) {
+			assertTrue("New key not inserted", treap.insert(i));
+		}
+		assertFalse("Duplicate key inserted", treap.insert(3));
+		assertEquals("Wrong rank", 4, treap.rank(5));
+		assertEquals("Wrong select", 5, (int) treap.select(4));
+		Treap<Integer> upper = treap.split(7);
+		assertEquals("Wrong lower half", "[1,2,3,4,5,6]", treap.toString());
+		assertEquals("Wrong upper half", "[7,8,9,10]", upper.toString());
+		assertEquals("Wrong range removed", 3, treap.removeRange(2, 5));
+		treap.merge(upper);
+		assertTrue("Merged treap not emptied", upper.isEmpty());
+		assertTrue("Present key not deleted", treap.delete(9));
+		assertEquals("Actual result is different from the expected result",
+				"[1,5,6,7,8,10]", treap.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMergeOverlap() {
+		Treap<Integer> lower = new Treap<>();
+		Treap<Integer> upper = new Treap<>();
+		lower.insert(5);
+		upper.insert(5);
+		lower.merge(upper);
+	}
+
+	@Test
+	public void testImplicitTreap() {
+		ImplicitTreap<String> list = new ImplicitTreap<>(Arrays.asList("a",
+				"b", "c", "d", "e"));
+		list.add(2, "x");
+		assertEquals("Wrong element removed", "b", list.remove(1));
+		assertEquals("Wrong list", Arrays.asList("a", "x", "c", "d", "e"), list);
+		ImplicitTreap<String> tail = list.split(3);
+		assertEquals("Wrong tail", Arrays.asList("d", "e"), tail);
+		list.subList(0, 2).clear();
+		list.merge(tail);
+		assertEquals("Actual result is different from the expected result",
+				Arrays.asList("c", "d", "e"), list);
+		assertTrue("Merged list not emptied", tail.isEmpty());
+	}
+}